@@ -1,6 +1,7 @@
 -- scripts/schema.sql — Script de esquema inicial para Motores-Bits (ejecución manual)
 -- DB soportadas: MariaDB/MySQL. Ejecutar con privilegios apropiados en entornos controlados.
 
+DROP TABLE IF EXISTS eventos_pedido;
 DROP TABLE IF EXISTS resenas;
 DROP TABLE IF EXISTS detalles_pedido;
 DROP TABLE IF EXISTS pedidos;
@@ -30,11 +31,15 @@ CREATE TABLE productos (
   id_categoria BIGINT NOT NULL,
   nombre VARCHAR(255) NOT NULL,
   referencia VARCHAR(255) NOT NULL UNIQUE,
+  referencia_normalizada VARCHAR(15) NOT NULL,
   precio DECIMAL(10,2) NOT NULL,
   stock INT NOT NULL DEFAULT 0,
   version INT,
   imagen VARCHAR(120),
   imagen_url VARCHAR(1000) NULL,
+  num_resenas INT NOT NULL DEFAULT 0,
+  suma_puntuaciones INT NOT NULL DEFAULT 0,
+  CONSTRAINT uk_producto_referencia_norm UNIQUE (referencia_normalizada),
   FOREIGN KEY (id_categoria) REFERENCES categorias(id_categoria)
     ON DELETE RESTRICT ON UPDATE CASCADE
 ) ENGINE=InnoDB;
@@ -75,10 +80,31 @@ CREATE TABLE resenas (
   CONSTRAINT chk_puntuacion CHECK (puntuacion >= 1 AND puntuacion <= 5)
 ) ENGINE=InnoDB;
 
-CREATE INDEX idx_producto_categoria ON productos(id_categoria);
-CREATE INDEX idx_pedido_usuario ON pedidos(id_usuario);
+-- Bandeja de salida de cambios de estado de pedidos (sin FK: el evento sobrevive al pedido)
+CREATE TABLE eventos_pedido (
+  id_evento BIGINT AUTO_INCREMENT PRIMARY KEY,
+  id_pedido BIGINT NOT NULL,
+  id_usuario BIGINT,
+  estado_anterior VARCHAR(50),
+  estado_nuevo VARCHAR(50) NOT NULL,
+  estado VARCHAR(20) NOT NULL DEFAULT 'PENDIENTE',
+  intentos INT NOT NULL DEFAULT 0,
+  creado_en DATETIME NOT NULL,
+  proximo_intento DATETIME NOT NULL,
+  procesado_en DATETIME NULL,
+  ultimo_error VARCHAR(500)
+) ENGINE=InnoDB;
+
+CREATE INDEX idx_producto_categoria_id ON productos(id_categoria, id_producto);
+CREATE INDEX idx_producto_stock ON productos(stock);
+CREATE INDEX idx_pedido_usuario_id ON pedidos(id_usuario, id_pedido);
+CREATE INDEX idx_pedido_usuario_estado ON pedidos(id_usuario, estado, fec_pedido);
+CREATE INDEX idx_pedido_estado ON pedidos(estado, id_pedido);
+CREATE INDEX idx_pedido_fecha ON pedidos(fec_pedido, id_pedido);
 CREATE INDEX idx_resena_producto ON resenas(id_producto);
 CREATE INDEX idx_resena_usuario ON resenas(id_usuario);
+CREATE INDEX idx_evento_pendiente ON eventos_pedido(estado, proximo_intento, id_evento);
+CREATE INDEX idx_evento_pedido ON eventos_pedido(id_pedido, estado, id_evento);
 
 INSERT INTO usuarios (id_usuario, nombre, email, contrasena, rol, direccion, telefono,saldo) VALUES
   (1, 'Admin', 'admin@example.com', 'admin', 'ADMIN', 'C/ Administrador 1', '600000000', 99999.99),
@@ -90,12 +116,12 @@ INSERT INTO categorias (id_categoria, nombre, descripcion) VALUES
   (3, 'Transmision', 'Embragues, cajas de cambio y piezas de transmision'),
   (4, 'Accesorios', 'Filtros, tornilleria y accesorios varios');
 
-INSERT INTO productos (id_producto, id_categoria, nombre, referencia, precio, stock, version, imagen,imagen_url) VALUES
-(1, 1, 'Motor V8 5.0L', 'MV8-001', 4999.99, 5, 1, 'Motor_V8_5_0L.jpg',NULL),
-(2, 2, 'ECU Controlador X100', 'ECU-100', 899.90, 10, 1, 'ECU_Controlador_X100.jpg',NULL),
-(3, 3, 'Kit Embrague Deportivo', 'KEM-200', 149.99, 20, 1, 'Kit_Embrague_Deportivo.jpg',NULL),
-(4, 4, 'Filtro de Aceite Premium', 'FA-300', 19.99, 50, 1, 'Filtro_de_Aceite_Premium.jpg',NULL),
-(5, 2, 'Sensor de Oxigeno Bosch', 'SOX-050', 29.50, 30, 1, 'Sensor_de_Oxigeno_Bosch.jpg',NULL);
+INSERT INTO productos (id_producto, id_categoria, nombre, referencia, referencia_normalizada, precio, stock, version, imagen,imagen_url) VALUES
+(1, 1, 'Motor V8 5.0L', 'MV8-001', 'MV8-001', 4999.99, 5, 1, 'Motor_V8_5_0L.jpg',NULL),
+(2, 2, 'ECU Controlador X100', 'ECU-100', 'ECU-100', 899.90, 10, 1, 'ECU_Controlador_X100.jpg',NULL),
+(3, 3, 'Kit Embrague Deportivo', 'KEM-200', 'KEM-200', 149.99, 20, 1, 'Kit_Embrague_Deportivo.jpg',NULL),
+(4, 4, 'Filtro de Aceite Premium', 'FA-300', 'FA-300', 19.99, 50, 1, 'Filtro_de_Aceite_Premium.jpg',NULL),
+(5, 2, 'Sensor de Oxigeno Bosch', 'SOX-050', 'SOX-050', 29.50, 30, 1, 'Sensor_de_Oxigeno_Bosch.jpg',NULL);
 
 INSERT INTO pedidos (id_pedido, id_usuario, fec_pedido, estado, total) VALUES
   (1, 2, '2025-11-29', 'PENDIENTE', 5299.97);
@@ -107,3 +133,8 @@ INSERT INTO detalles_pedido (id_pedido, id_producto, cantidad, precio) VALUES
 INSERT INTO resenas (id_resena, id_producto, id_usuario, puntuacion, comentario, creada_en) VALUES
   (1, 1, 2, 5, 'Excelente motor, potente y fiable.', '2025-11-28 10:00:00'),
   (2, 3, 2, 4, 'Buen embrague por el precio.', '2025-11-27 15:30:00');
+
+-- Resumen de valoraciones de los productos a partir de las reseñas cargadas
+UPDATE productos p SET
+  num_resenas = (SELECT COUNT(*) FROM resenas r WHERE r.id_producto = p.id_producto),
+  suma_puntuaciones = (SELECT COALESCE(SUM(r.puntuacion), 0) FROM resenas r WHERE r.id_producto = p.id_producto);
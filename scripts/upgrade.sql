@@ -0,0 +1,63 @@
+-- scripts/upgrade.sql - Puesta al dia de una BD de Motores-Bits ya existente (sin perder datos)
+-- DB soportadas: MariaDB/MySQL. Idempotente: cada paso comprueba si ya esta aplicado, se puede ejecutar
+-- tantas veces como haga falta. DatabaseInitializer lo ejecuta en cada arranque cuando la BD ya tiene datos
+-- (app.init.upgrade-path); tambien puede lanzarse a mano antes de desplegar.
+-- Las instalaciones nuevas no lo necesitan: schema.sql ya crea el esquema completo.
+
+-- Referencia normalizada (mayusculas, sin espacios alrededor) con indice unico.
+-- Se anade con un valor por defecto vacio que marca las filas pendientes de rellenar y despues se quita.
+-- Si dos referencias solo se distinguen por mayusculas/espacios (o alguna pasa de 15 caracteres) el indice
+-- no se puede crear: hay que corregirlas y volver a ejecutar el script.
+ALTER TABLE productos ADD COLUMN IF NOT EXISTS referencia_normalizada VARCHAR(15) NOT NULL DEFAULT '';
+UPDATE productos SET referencia_normalizada = UPPER(TRIM(referencia)) WHERE referencia_normalizada = '';
+ALTER TABLE productos ALTER COLUMN referencia_normalizada DROP DEFAULT;
+CREATE UNIQUE INDEX IF NOT EXISTS uk_producto_referencia_norm ON productos(referencia_normalizada);
+
+-- Resumen de valoraciones en el producto (num_resenas / suma_puntuaciones).
+-- num_resenas se crea con -1 como marca de "sin calcular": solo esas filas se rellenan desde resenas, asi que
+-- repetir el script no vuelve a recorrer las resenas. Despues queda con el valor por defecto definitivo (0).
+ALTER TABLE productos ADD COLUMN IF NOT EXISTS num_resenas INT NOT NULL DEFAULT -1;
+ALTER TABLE productos ADD COLUMN IF NOT EXISTS suma_puntuaciones INT NOT NULL DEFAULT 0;
+UPDATE productos p SET
+  num_resenas = (SELECT COUNT(*) FROM resenas r WHERE r.id_producto = p.id_producto),
+  suma_puntuaciones = (SELECT COALESCE(SUM(r.puntuacion), 0) FROM resenas r WHERE r.id_producto = p.id_producto)
+WHERE p.num_resenas = -1;
+ALTER TABLE productos ALTER COLUMN num_resenas SET DEFAULT 0;
+
+-- Bandeja de salida de cambios de estado de pedidos (sin FK: el evento sobrevive al pedido).
+-- Sin ella falla cualquier cambio de estado de un pedido (el evento se inserta en la misma transaccion).
+CREATE TABLE IF NOT EXISTS eventos_pedido (
+  id_evento BIGINT AUTO_INCREMENT PRIMARY KEY,
+  id_pedido BIGINT NOT NULL,
+  id_usuario BIGINT,
+  estado_anterior VARCHAR(50),
+  estado_nuevo VARCHAR(50) NOT NULL,
+  estado VARCHAR(20) NOT NULL DEFAULT 'PENDIENTE',
+  intentos INT NOT NULL DEFAULT 0,
+  creado_en DATETIME NOT NULL,
+  proximo_intento DATETIME NOT NULL,
+  procesado_en DATETIME NULL,
+  ultimo_error VARCHAR(500)
+) ENGINE=InnoDB;
+CREATE INDEX IF NOT EXISTS idx_evento_pendiente ON eventos_pedido(estado, proximo_intento, id_evento);
+CREATE INDEX IF NOT EXISTS idx_evento_pedido ON eventos_pedido(id_pedido, estado, id_evento);
+
+-- Listado paginado por categoria (id_categoria = ? and id_producto > ? order by id_producto): el indice de una
+-- sola columna se sustituye por idx_producto_categoria_id. El nuevo se crea antes de quitar el antiguo para que
+-- la FK de id_categoria siempre tenga indice; con otro nombre, repetir el script no reconstruye nada.
+CREATE INDEX IF NOT EXISTS idx_producto_categoria_id ON productos(id_categoria, id_producto);
+DROP INDEX IF EXISTS idx_producto_categoria ON productos;
+
+-- Recuento de productos con stock bajo del panel de administracion
+CREATE INDEX IF NOT EXISTS idx_producto_stock ON productos(stock);
+
+-- Listado de pedidos de administracion paginado por clave (id descendente) y filtrado por usuario, estado o
+-- fecha. Como en productos, el indice de usuario de una sola columna se sustituye por idx_pedido_usuario_id
+-- (creado antes de quitar el antiguo, que respalda la FK de id_usuario).
+CREATE INDEX IF NOT EXISTS idx_pedido_usuario_id ON pedidos(id_usuario, id_pedido);
+DROP INDEX IF EXISTS idx_pedido_usuario ON pedidos;
+CREATE INDEX IF NOT EXISTS idx_pedido_estado ON pedidos(estado, id_pedido);
+CREATE INDEX IF NOT EXISTS idx_pedido_fecha ON pedidos(fec_pedido, id_pedido);
+
+-- Historial de pedidos de un usuario (/mis-pedidos, /perfil) y sus recuentos por estado
+CREATE INDEX IF NOT EXISTS idx_pedido_usuario_estado ON pedidos(id_usuario, estado, fec_pedido);
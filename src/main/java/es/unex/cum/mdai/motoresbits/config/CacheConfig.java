@@ -0,0 +1,53 @@
+package es.unex.cum.mdai.motoresbits.config;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import es.unex.cum.mdai.motoresbits.service.cache.CatalogoCache;
+import es.unex.cum.mdai.motoresbits.service.cache.HistorialPedidosCache;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.cache.transaction.TransactionAwareCacheManagerProxy;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.List;
+
+// Configuración de cachés en memoria (Caffeine) para los listados del catálogo y el historial de pedidos.
+@Configuration
+@EnableCaching
+public class CacheConfig {
+
+    /*
+     * Especificación Caffeine de las cachés del catálogo (tamaño máximo, TTL y estadísticas).
+     * Puede sobreescribirse en application.properties con:
+     *   app.cache.catalogo.spec=maximumSize=500,expireAfterWrite=5m,recordStats
+     */
+    @Value("${app.cache.catalogo.spec:maximumSize=1000,expireAfterWrite=10m,recordStats}")
+    private String catalogoSpec;
+
+    /*
+     * Historial de pedidos por usuario: vida corta, se invalida además con cada escritura de pedidos.
+     *   app.cache.pedidos.spec=maximumSize=10000,expireAfterWrite=60s
+     */
+    @Value("${app.cache.pedidos.spec:maximumSize=10000,expireAfterWrite=60s}")
+    private String pedidosSpec;
+
+    @Bean
+    public CacheManager cacheManager() {
+        CaffeineCacheManager caffeine = new CaffeineCacheManager();
+        caffeine.setCaffeine(Caffeine.from(catalogoSpec));
+        caffeine.setCacheNames(List.of(
+                CatalogoCache.CATEGORIAS,
+                CatalogoCache.PRODUCTOS,
+                CatalogoCache.PRODUCTOS_POR_CATEGORIA,
+                CatalogoCache.PAGINAS,
+                CatalogoCache.DETALLES
+        ));
+        caffeine.registerCustomCache(HistorialPedidosCache.HISTORIAL, Caffeine.from(pedidosSpec).build());
+        caffeine.setAllowNullValues(false);
+
+        // Las escrituras en caché se aplazan hasta el commit: nunca se cachean datos de una transacción que haga rollback.
+        return new TransactionAwareCacheManagerProxy(caffeine);
+    }
+}
@@ -29,6 +29,14 @@ public class DatabaseInitializer implements CommandLineRunner {
     @Value("${app.init.schema-path:scripts/schema.sql}")
     private String schemaPath;
 
+    /*
+     * Script idempotente que pone al día una BD que ya tiene datos (columnas, índices y tablas añadidos
+     * después de crearla). Se ejecuta en cada arranque en el que no se ejecuta schema.sql:
+     *   app.init.upgrade-path=scripts/upgrade.sql
+     */
+    @Value("${app.init.upgrade-path:scripts/upgrade.sql}")
+    private String upgradePath;
+
     public DatabaseInitializer(DataSource dataSource) {
         this.dataSource = dataSource;
         this.jdbcTemplate = new JdbcTemplate(dataSource);
@@ -81,6 +89,7 @@ public class DatabaseInitializer implements CommandLineRunner {
 
         if (!debeInicializar) {
             System.out.println("[DB INIT] La tabla 'usuarios' existe y contiene datos. No se ejecuta schema.sql.");
+            actualizarEsquema();
             return;
         }
 
@@ -101,4 +110,15 @@ public class DatabaseInitializer implements CommandLineRunner {
 
         System.out.println("[DB INIT] Script schema.sql ejecutado correctamente.");
     }
+
+    // Si un paso falla (p. ej. referencias que chocan al normalizarlas) la excepción impide arrancar con el esquema a medias
+    private void actualizarEsquema() {
+        Path path = Paths.get(upgradePath).toAbsolutePath();
+        if (!Files.exists(path)) {
+            System.err.println("[DB INIT] No se encuentra el script de actualización en: " + path);
+            return;
+        }
+        new ResourceDatabasePopulator(new FileSystemResource(path.toFile())).execute(dataSource);
+        System.out.println("[DB INIT] Esquema actualizado con " + path);
+    }
 }
@@ -0,0 +1,39 @@
+package es.unex.cum.mdai.motoresbits.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.CacheControl;
+import org.springframework.web.servlet.config.annotation.ResourceHandlerRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.io.IOException;
+import java.time.Duration;
+
+// Imágenes de producto servidas con ETag, Last-Modified y Cache-Control para que navegadores y proxy
+// las guarden y revaliden con 304 en lugar de descargarlas de nuevo.
+@Configuration
+public class RecursosEstaticosConfig implements WebMvcConfigurer {
+
+    /*
+     * Tiempo que navegadores y proxy pueden usar una imagen sin revalidarla. Puede cambiarse en application.properties:
+     *   app.web.imagenes.max-age=1h
+     */
+    @Value("${app.web.imagenes.max-age:1h}")
+    private Duration maxAgeImagenes = Duration.ofHours(1);
+
+    @Override
+    public void addResourceHandlers(ResourceHandlerRegistry registry) {
+        registry.addResourceHandler("/images/**")
+                .addResourceLocations("classpath:/static/images/")
+                .setCacheControl(CacheControl.maxAge(maxAgeImagenes).cachePublic())
+                .setUseLastModified(true)
+                // ETag fuerte a partir de fecha y tamaño del fichero: sin leer ni hashear el contenido
+                .setEtagGenerator(recurso -> {
+                    try {
+                        return Long.toHexString(recurso.lastModified()) + "-" + Long.toHexString(recurso.contentLength());
+                    } catch (IOException ex) {
+                        return null;
+                    }
+                });
+    }
+}
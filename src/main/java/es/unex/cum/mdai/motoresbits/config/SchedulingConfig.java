@@ -0,0 +1,10 @@
+package es.unex.cum.mdai.motoresbits.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+// Activa las tareas periódicas (@Scheduled) de mantenimiento.
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+}
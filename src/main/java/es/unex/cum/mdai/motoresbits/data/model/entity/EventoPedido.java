@@ -0,0 +1,102 @@
+package es.unex.cum.mdai.motoresbits.data.model.entity;
+
+import es.unex.cum.mdai.motoresbits.data.model.enums.EstadoEventoPedido;
+import es.unex.cum.mdai.motoresbits.data.model.enums.EstadoPedido;
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+// Entidad EventoPedido: bandeja de salida (outbox) de cambios de estado de pedidos. Se inserta en la misma
+// transacción que el cambio y la procesa después el despachador en segundo plano.
+// Sin clave ajena a PEDIDOS: el evento sobrevive aunque el pedido se borre.
+@Entity
+@Table(name = "EVENTOS_PEDIDO", indexes = {
+        // Sondeo del despachador: where estado = 'PENDIENTE' and proximo_intento <= ? order by id_evento
+        @Index(name = "idx_evento_pendiente", columnList = "estado, proximo_intento, id_evento"),
+        // Orden por pedido: eventos anteriores todavía pendientes del mismo pedido
+        @Index(name = "idx_evento_pedido", columnList = "id_pedido, estado, id_evento")
+})
+public class EventoPedido {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "id_evento")
+    private Long id;
+
+    @Column(name = "id_pedido", nullable = false)
+    private Long idPedido;
+
+    @Column(name = "id_usuario")
+    private Long idUsuario;
+
+    // null cuando el pedido nace directamente en el estado nuevo (checkout)
+    @Enumerated(EnumType.STRING)
+    @Column(name = "estado_anterior", length = 50)
+    private EstadoPedido estadoAnterior;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "estado_nuevo", nullable = false, length = 50)
+    private EstadoPedido estadoNuevo;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private EstadoEventoPedido estado = EstadoEventoPedido.PENDIENTE;
+
+    @Column(nullable = false)
+    private int intentos;
+
+    @Column(name = "creado_en", nullable = false)
+    private LocalDateTime creadoEn = LocalDateTime.now();
+
+    @Column(name = "proximo_intento", nullable = false)
+    private LocalDateTime proximoIntento = creadoEn;
+
+    @Column(name = "procesado_en")
+    private LocalDateTime procesadoEn;
+
+    @Column(name = "ultimo_error", length = 500)
+    private String ultimoError;
+
+    public EventoPedido() {
+    }
+
+    public EventoPedido(Long idPedido, Long idUsuario, EstadoPedido estadoAnterior, EstadoPedido estadoNuevo) {
+        this.idPedido = idPedido;
+        this.idUsuario = idUsuario;
+        this.estadoAnterior = estadoAnterior;
+        this.estadoNuevo = estadoNuevo;
+    }
+
+    // ---- Getters / Setters ----
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+
+    public Long getIdPedido() { return idPedido; }
+    public void setIdPedido(Long idPedido) { this.idPedido = idPedido; }
+
+    public Long getIdUsuario() { return idUsuario; }
+    public void setIdUsuario(Long idUsuario) { this.idUsuario = idUsuario; }
+
+    public EstadoPedido getEstadoAnterior() { return estadoAnterior; }
+    public void setEstadoAnterior(EstadoPedido estadoAnterior) { this.estadoAnterior = estadoAnterior; }
+
+    public EstadoPedido getEstadoNuevo() { return estadoNuevo; }
+    public void setEstadoNuevo(EstadoPedido estadoNuevo) { this.estadoNuevo = estadoNuevo; }
+
+    public EstadoEventoPedido getEstado() { return estado; }
+    public void setEstado(EstadoEventoPedido estado) { this.estado = estado; }
+
+    public int getIntentos() { return intentos; }
+    public void setIntentos(int intentos) { this.intentos = intentos; }
+
+    public LocalDateTime getCreadoEn() { return creadoEn; }
+    public void setCreadoEn(LocalDateTime creadoEn) { this.creadoEn = creadoEn; }
+
+    public LocalDateTime getProximoIntento() { return proximoIntento; }
+    public void setProximoIntento(LocalDateTime proximoIntento) { this.proximoIntento = proximoIntento; }
+
+    public LocalDateTime getProcesadoEn() { return procesadoEn; }
+    public void setProcesadoEn(LocalDateTime procesadoEn) { this.procesadoEn = procesadoEn; }
+
+    public String getUltimoError() { return ultimoError; }
+    public void setUltimoError(String ultimoError) { this.ultimoError = ultimoError; }
+}
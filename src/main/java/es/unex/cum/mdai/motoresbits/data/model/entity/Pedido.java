@@ -10,7 +10,14 @@ import java.util.Set;
 
 // Entidad Pedido: cabecera del pedido y sus líneas (detalles).
 @Entity
-@Table(name = "PEDIDOS")
+@Table(name = "PEDIDOS", indexes = {
+        @Index(name = "idx_pedido_usuario_id", columnList = "id_usuario, id_pedido"),
+        // Historial de pedidos de un usuario (excluye los CREADO) y sus recuentos por estado
+        @Index(name = "idx_pedido_usuario_estado", columnList = "id_usuario, estado, fec_pedido"),
+        // Listado de administración paginado por clave (id descendente) filtrando por estado o por fecha
+        @Index(name = "idx_pedido_estado", columnList = "estado, id_pedido"),
+        @Index(name = "idx_pedido_fecha", columnList = "fec_pedido, id_pedido")
+})
 public class Pedido implements Serializable {
 
     @Id
@@ -7,11 +7,18 @@ import jakarta.validation.constraints.Size;
 import java.io.Serializable;
 import java.math.BigDecimal;
 import java.util.LinkedHashSet;
+import java.util.Locale;
 import java.util.Set;
 // Entidad Producto: datos básicos y relación con detalles de pedido.
 @Entity
 @Table(name = "PRODUCTOS", uniqueConstraints = {
-        @UniqueConstraint(name = "uk_producto_referencia", columnNames = "referencia")
+        @UniqueConstraint(name = "uk_producto_referencia", columnNames = "referencia"),
+        @UniqueConstraint(name = "uk_producto_referencia_norm", columnNames = "referencia_normalizada")
+}, indexes = {
+        // Cubre el listado paginado por categoría: where id_categoria = ? and id_producto > ? order by id_producto
+        @Index(name = "idx_producto_categoria_id", columnList = "id_categoria, id_producto"),
+        // Recuento de productos con stock bajo del panel de administración
+        @Index(name = "idx_producto_stock", columnList = "stock")
 })
 public class Producto implements Serializable {
 
@@ -34,6 +41,10 @@ public class Producto implements Serializable {
     @Size(max = 15)
     private String referencia;
 
+    // Referencia en mayúsculas y sin espacios: clave de búsqueda sin distinguir mayúsculas que sí usa índice
+    @Column(name = "referencia_normalizada", nullable = false, length = 15)
+    private String referenciaNormalizada;
+
     @Column(nullable = false, precision = 10, scale = 2)
     private BigDecimal precio;
 
@@ -47,6 +58,15 @@ public class Producto implements Serializable {
 
     @Column(name = "imagen_url", length = 1000)
     private String imagenUrl;
+
+    // Resumen de valoraciones mantenido por ResenaService al crear/editar/borrar reseñas:
+    // la media se calcula sin agregar RESENAS en cada lectura
+    @Column(name = "num_resenas", nullable = false)
+    private Integer numResenas = 0;
+
+    @Column(name = "suma_puntuaciones", nullable = false)
+    private Integer sumaPuntuaciones = 0;
+
     @Version
     private Integer version;
 
@@ -69,7 +89,16 @@ public class Producto implements Serializable {
     public void setNombre(String nombre) { this.nombre = nombre; }
 
     public String getReferencia() { return referencia; }
-    public void setReferencia(String referencia) { this.referencia = referencia; }
+    public void setReferencia(String referencia) {
+        this.referencia = referencia;
+        this.referenciaNormalizada = normalizarReferencia(referencia);
+    }
+
+    public String getReferenciaNormalizada() { return referenciaNormalizada; }
+
+    public static String normalizarReferencia(String referencia) {
+        return referencia == null ? null : referencia.trim().toUpperCase(Locale.ROOT);
+    }
 
     public BigDecimal getPrecio() { return precio; }
     public void setPrecio(BigDecimal precio) { this.precio = precio; }
@@ -88,4 +117,18 @@ public class Producto implements Serializable {
 
     public String getImagenUrl() { return imagenUrl; }
     public void setImagenUrl(String imagenUrl) { this.imagenUrl = imagenUrl; }
+
+    public Integer getNumResenas() { return numResenas; }
+
+    public Integer getSumaPuntuaciones() { return sumaPuntuaciones; }
+
+    // null si no hay reseñas
+    public Double getMediaPuntuacion() {
+        return calcularMedia(numResenas, sumaPuntuaciones);
+    }
+
+    public static Double calcularMedia(Integer numResenas, Integer sumaPuntuaciones) {
+        if (numResenas == null || numResenas <= 0 || sumaPuntuaciones == null) return null;
+        return sumaPuntuaciones / (double) numResenas;
+    }
 }
@@ -0,0 +1,8 @@
+package es.unex.cum.mdai.motoresbits.data.model.enums;
+
+// Estado de un evento de la bandeja de salida de pedidos
+public enum EstadoEventoPedido {
+    PENDIENTE,
+    PROCESADO,
+    FALLIDO
+}
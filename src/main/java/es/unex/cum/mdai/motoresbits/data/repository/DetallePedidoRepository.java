@@ -1,9 +1,12 @@
 package es.unex.cum.mdai.motoresbits.data.repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 import org.springframework.data.jpa.repository.JpaRepository;
 import es.unex.cum.mdai.motoresbits.data.model.entity.DetallePedido;
 import es.unex.cum.mdai.motoresbits.data.model.entity.DetallePedidoId;
+import es.unex.cum.mdai.motoresbits.service.dto.FacturaVista;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
@@ -15,6 +18,20 @@ public interface DetallePedidoRepository extends JpaRepository<DetallePedido, De
     Optional<DetallePedido> findByPedido_IdAndProducto_Id(Long pedidoId, Long productoId);
     boolean existsByPedido_IdAndProducto_Id(Long pedidoId, Long productoId);
 
+    // Líneas de varios pedidos en una consulta (reposición de stock de las cancelaciones en lote)
+    List<DetallePedido> findByPedido_IdIn(Collection<Long> pedidoIds);
+
+    // Líneas de factura de uno o varios pedidos, ya proyectadas (recorre la PK de DETALLES_PEDIDO y la de PRODUCTOS)
+    @Query("""
+           select new es.unex.cum.mdai.motoresbits.service.dto.FacturaVista$LineaFactura(
+               d.pedido.id, pr.id, pr.referencia, pr.nombre, d.cantidad, d.precio)
+           from DetallePedido d
+           join d.producto pr
+           where d.pedido.id in :pedidoIds
+           order by d.pedido.id, pr.id
+           """)
+    List<FacturaVista.LineaFactura> findLineasFacturaByPedidoIdIn(@Param("pedidoIds") Collection<Long> pedidoIds);
+
     @Modifying
     @Query("DELETE FROM DetallePedido d " +
             "WHERE d.pedido.id = :pedidoId AND d.producto.id = :productoId")
@@ -23,4 +40,13 @@ public interface DetallePedidoRepository extends JpaRepository<DetallePedido, De
     @Modifying
     @Transactional
     void deleteByProducto_Id(Long productoId);
+
+    // Borrado en bloque de las líneas de todos los productos de una categoría (una sola sentencia)
+    @Modifying
+    @Query("delete from DetallePedido d where d.producto.id in (select p.id from Producto p where p.categoria.id = :categoriaId)")
+    int deleteByCategoriaId(@Param("categoriaId") Long categoriaId);
+
+    @Modifying
+    @Query("delete from DetallePedido d where d.producto.id in :productoIds")
+    int deleteByProductoIdIn(@Param("productoIds") Collection<Long> productoIds);
 }
@@ -0,0 +1,61 @@
+package es.unex.cum.mdai.motoresbits.data.repository;
+
+import es.unex.cum.mdai.motoresbits.data.model.entity.EventoPedido;
+import es.unex.cum.mdai.motoresbits.data.model.enums.EstadoEventoPedido;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+public interface EventoPedidoRepository extends JpaRepository<EventoPedido, Long> {
+
+    // Siguiente lote de eventos listos para entregar, en orden de creación (usa idx_evento_pendiente).
+    // Solo el pendiente más antiguo de cada pedido: uno posterior espera a que se entregue (o se descarte) el
+    // anterior, aunque este esté aplazado por un reintento (usa idx_evento_pedido)
+    @Query("""
+           select e from EventoPedido e
+           where e.estado = es.unex.cum.mdai.motoresbits.data.model.enums.EstadoEventoPedido.PENDIENTE
+             and e.proximoIntento <= :ahora
+             and not exists (
+                 select 1 from EventoPedido a
+                 where a.idPedido = e.idPedido and a.id < e.id
+                   and a.estado = es.unex.cum.mdai.motoresbits.data.model.enums.EstadoEventoPedido.PENDIENTE)
+           order by e.id asc
+           """)
+    List<EventoPedido> findPendientes(@Param("ahora") LocalDateTime ahora, Limit limit);
+
+    List<EventoPedido> findByIdPedidoOrderByIdAsc(Long idPedido);
+
+    long countByEstado(EstadoEventoPedido estado);
+
+    // Un único UPDATE para todos los eventos entregados del lote
+    @Modifying
+    @Transactional
+    @Query("""
+           update EventoPedido e
+           set e.estado = es.unex.cum.mdai.motoresbits.data.model.enums.EstadoEventoPedido.PROCESADO,
+               e.procesadoEn = :ahora, e.intentos = e.intentos + 1, e.ultimoError = null
+           where e.id in :ids
+           """)
+    int marcarProcesados(@Param("ids") Collection<Long> ids, @Param("ahora") LocalDateTime ahora);
+
+    // Fallo de entrega: vuelve a PENDIENTE con el siguiente intento aplazado, o queda FALLIDO si se agotan
+    @Modifying
+    @Transactional
+    @Query("""
+           update EventoPedido e
+           set e.estado = :estado, e.intentos = :intentos, e.proximoIntento = :proximoIntento, e.ultimoError = :error
+           where e.id = :id
+           """)
+    int marcarFallo(@Param("id") Long id,
+                    @Param("estado") EstadoEventoPedido estado,
+                    @Param("intentos") int intentos,
+                    @Param("proximoIntento") LocalDateTime proximoIntento,
+                    @Param("error") String error);
+}
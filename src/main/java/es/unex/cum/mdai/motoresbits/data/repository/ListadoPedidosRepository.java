@@ -0,0 +1,19 @@
+package es.unex.cum.mdai.motoresbits.data.repository;
+
+import es.unex.cum.mdai.motoresbits.data.model.enums.EstadoPedido;
+import org.springframework.data.domain.Limit;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+// Listado de pedidos de administración paginado por clave (keyset). La consulta se monta solo con los filtros
+// presentes, para que el optimizador elija el índice de cada combinación en vez de un plan genérico.
+public interface ListadoPedidosRepository {
+
+    // Ids de la página que sigue al cursor (id del último pedido de la página anterior; Long.MAX_VALUE en la
+    // primera), más recientes primero: por id descendente, o por fecha y luego id si se filtra por fechas.
+    // Los filtros a null no se aplican.
+    List<Long> findIdsPaginaAntesDe(Long antesDe, EstadoPedido estado, Long idUsuario, LocalDate desde,
+                                    LocalDate hasta, BigDecimal totalMinimo, Limit limit);
+}
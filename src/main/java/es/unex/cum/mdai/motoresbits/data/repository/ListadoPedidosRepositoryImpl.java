@@ -0,0 +1,82 @@
+package es.unex.cum.mdai.motoresbits.data.repository;
+
+import es.unex.cum.mdai.motoresbits.data.model.enums.EstadoPedido;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.TypedQuery;
+import org.springframework.data.domain.Limit;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Implementación con JPQL montado por filtros. Cada página recorre un índice hacia atrás desde el cursor:
+//  - sin filtros, o con estado y/o total: la PK o idx_pedido_estado (estado, id_pedido)
+//  - con usuario: idx_pedido_usuario_id (id_usuario, id_pedido)
+//  - con rango de fechas: idx_pedido_fecha (fec_pedido, id_pedido), ordenando por fecha y id para poder
+//    continuar desde (fecha, id) del cursor sin recorrer lo ya listado
+public class ListadoPedidosRepositoryImpl implements ListadoPedidosRepository {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<Long> findIdsPaginaAntesDe(Long antesDe, EstadoPedido estado, Long idUsuario, LocalDate desde,
+                                           LocalDate hasta, BigDecimal totalMinimo, Limit limit) {
+        boolean porFecha = desde != null || hasta != null;
+        StringBuilder jpql = new StringBuilder("select p.id from Pedido p where 1 = 1");
+        Map<String, Object> parametros = new HashMap<>();
+
+        if (antesDe != null && antesDe != Long.MAX_VALUE) {
+            parametros.put("antesDe", antesDe);
+            if (porFecha) {
+                LocalDate fechaCursor = fechaDelCursor(antesDe);
+                if (fechaCursor == null) return List.of();
+                // (fecha, id) < (fechaCursor, antesDe), con la primera condición como rango sobre idx_pedido_fecha
+                jpql.append(" and p.fechaPedido <= :fechaCursor and (p.fechaPedido < :fechaCursor or p.id < :antesDe)");
+                parametros.put("fechaCursor", fechaCursor);
+            } else {
+                jpql.append(" and p.id < :antesDe");
+            }
+        }
+        if (estado != null) {
+            jpql.append(" and p.estado = :estado");
+            parametros.put("estado", estado);
+        }
+        if (idUsuario != null) {
+            jpql.append(" and p.usuario.id = :idUsuario");
+            parametros.put("idUsuario", idUsuario);
+        }
+        if (desde != null) {
+            jpql.append(" and p.fechaPedido >= :desde");
+            parametros.put("desde", desde);
+        }
+        if (hasta != null) {
+            jpql.append(" and p.fechaPedido <= :hasta");
+            parametros.put("hasta", hasta);
+        }
+        if (totalMinimo != null) {
+            jpql.append(" and p.total >= :totalMinimo");
+            parametros.put("totalMinimo", totalMinimo);
+        }
+        jpql.append(porFecha ? " order by p.fechaPedido desc, p.id desc" : " order by p.id desc");
+
+        TypedQuery<Long> consulta = entityManager.createQuery(jpql.toString(), Long.class);
+        parametros.forEach(consulta::setParameter);
+        if (limit != null && limit.isLimited()) consulta.setMaxResults(limit.max());
+        return consulta.getResultList();
+    }
+
+    // Fecha del pedido del cursor (búsqueda por PK). Si se ha borrado se usa la del anterior por id: con las
+    // fechas asignadas al crear el pedido es la misma posición en el orden por fecha. null si no queda ninguno.
+    private LocalDate fechaDelCursor(Long antesDe) {
+        List<LocalDate> fechas = entityManager.createQuery(
+                        "select p.fechaPedido from Pedido p where p.id <= :antesDe order by p.id desc", LocalDate.class)
+                .setParameter("antesDe", antesDe)
+                .setMaxResults(1)
+                .getResultList();
+        return fechas.isEmpty() ? null : fechas.get(0);
+    }
+}
@@ -1,23 +1,50 @@
 package es.unex.cum.mdai.motoresbits.data.repository;
 
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 import es.unex.cum.mdai.motoresbits.data.model.enums.EstadoPedido;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
 import es.unex.cum.mdai.motoresbits.data.model.entity.Pedido;
+import es.unex.cum.mdai.motoresbits.service.dto.FacturaVista;
+import es.unex.cum.mdai.motoresbits.service.dto.MetricasPanel;
+import es.unex.cum.mdai.motoresbits.service.dto.ResumenPedido;
 
-public interface PedidoRepository extends JpaRepository<Pedido, Long> {
+public interface PedidoRepository extends JpaRepository<Pedido, Long>, ListadoPedidosRepository {
 
     List<Pedido> findByUsuarioId(Long usuarioId);
 
-    List<Pedido> findByUsuarioIdAndEstadoNot(Long usuarioId, EstadoPedido estado);
+    long countByUsuarioIdAndEstadoNot(Long usuarioId, EstadoPedido estado);
+
     // Devuelve true si existe al menos un pedido para el usuario dado
     boolean existsByUsuarioId(Long usuarioId);
 
+    // Historial de un usuario en una consulta: cabeceras y número de líneas (recorre idx_pedido_usuario_estado
+    // y la PK de DETALLES_PEDIDO), paginado por clave con id descendente como el listado de administración
+    @Query("""
+           select new es.unex.cum.mdai.motoresbits.service.dto.ResumenPedido(
+               p.id, p.fechaPedido, p.estado, p.total, count(d))
+           from Pedido p
+           left join p.detalles d
+           where p.usuario.id = :idUsuario and p.estado <> :excluido and p.id < :antesDe
+           group by p.id, p.fechaPedido, p.estado, p.total
+           order by p.id desc
+           """)
+    List<ResumenPedido> findResumenPorUsuario(@Param("idUsuario") Long idUsuario,
+                                              @Param("excluido") EstadoPedido excluido,
+                                              @Param("antesDe") Long antesDe,
+                                              Limit limit);
+
     @Query("""
            select distinct p
            from Pedido p
@@ -27,12 +54,60 @@ public interface PedidoRepository extends JpaRepository<Pedido, Long> {
            """)
     Optional<Pedido> findConLineasYProductos(@Param("id") Long id);
 
+    // Cabecera de la factura sin cargar entidades: pedido y datos del cliente en una fila (las líneas van aparte)
+    @Query("""
+           select new es.unex.cum.mdai.motoresbits.service.dto.FacturaVista(
+               p.id, p.fechaPedido, p.total, u.id, u.nombre, u.email, u.direccion)
+           from Pedido p
+           left join p.usuario u
+           where p.id = :id
+           """)
+    Optional<FacturaVista> findFacturaById(@Param("id") Long id);
+
+    // Lo mismo para una página de pedidos (exportación de facturas); no conserva el orden de "ids"
+    @Query("""
+           select new es.unex.cum.mdai.motoresbits.service.dto.FacturaVista(
+               p.id, p.fechaPedido, p.total, u.id, u.nombre, u.email, u.direccion)
+           from Pedido p
+           left join p.usuario u
+           where p.id in :ids
+           """)
+    List<FacturaVista> findFacturasByIdIn(@Param("ids") Collection<Long> ids);
+
+    // Recuento para el panel de administración (recorre idx_pedido_estado, sin leer filas)
+    @Query("""
+           select new es.unex.cum.mdai.motoresbits.service.dto.MetricasPanel$ConteoEstado(p.estado, count(p))
+           from Pedido p
+           group by p.estado
+           """)
+    List<MetricasPanel.ConteoEstado> contarPorEstado();
+
+    @Query("""
+           select coalesce(sum(p.total), 0)
+           from Pedido p
+           where p.fechaPedido = :fecha and p.estado in :estados
+           """)
+    BigDecimal sumarTotalPorFechaYEstados(@Param("fecha") LocalDate fecha,
+                                          @Param("estados") Collection<EstadoPedido> estados);
+
+    // Segunda consulta de la página: usuario, líneas y productos solo de los pedidos que se muestran
     @Query("""
            select distinct p
            from Pedido p
            left join fetch p.usuario u
            left join fetch p.detalles d
            left join fetch d.producto pr
+           where p.id in :ids
            """)
-    List<Pedido> findAllConUsuarioYLineasYProductos();
+    List<Pedido> findConUsuarioYLineasYProductosByIdIn(@Param("ids") Collection<Long> ids);
+
+    // Cabeceras (sin líneas) bloqueadas para un cambio de estado en lote; en orden de id, como los
+    // descuentos de stock, para que dos lotes que se solapen no se bloqueen mutuamente
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select p from Pedido p where p.id in :ids order by p.id asc")
+    List<Pedido> findParaCambioDeEstado(@Param("ids") Collection<Long> ids);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update Pedido p set p.estado = :estado where p.id in :ids")
+    int actualizarEstado(@Param("ids") Collection<Long> ids, @Param("estado") EstadoPedido estado);
 }
@@ -1,29 +1,135 @@
 package es.unex.cum.mdai.motoresbits.data.repository;
 
 import es.unex.cum.mdai.motoresbits.data.model.entity.Producto;
+import es.unex.cum.mdai.motoresbits.service.dto.DetalleProducto;
+import es.unex.cum.mdai.motoresbits.service.dto.ProductoAdminDto;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
-public interface ProductoRepository extends JpaRepository<Producto, Long> {
+public interface ProductoRepository extends JpaRepository<Producto, Long>, StockProductoRepository {
 
     List<Producto> findByCategoriaId(Long categoriaId);
 
     boolean existsByCategoriaId(Long categoriaId);
 
-    boolean existsByReferencia(String referencia);
+    long countByCategoriaId(Long categoriaId);
 
-    Optional<Producto> findByReferenciaIgnoreCase(String referencia);
+    // Productos con poco stock para el panel de administración (usa idx_producto_stock)
+    long countByStockLessThanEqual(Integer stock);
 
-    @Modifying(clearAutomatically = true)
-    @Query("update Producto p set p.stock = p.stock - :cantidad where p.id = :id and p.stock >= :cantidad")
-    int descontarStock(@Param("id") Long id, @Param("cantidad") int cantidad);
+    // Ids de una categoría en orden de PK: lotes del borrado de categorías grandes (usa idx_producto_categoria_id)
+    @Query("select p.id from Producto p where p.categoria.id = :categoriaId order by p.id asc")
+    List<Long> findIdsByCategoriaId(@Param("categoriaId") Long categoriaId, Limit limit);
+
+    @Query("select p.id from Producto p where p.categoria.id = :categoriaId")
+    List<Long> findIdsByCategoriaId(@Param("categoriaId") Long categoriaId);
 
+    // Borrado en bloque; clearAutomatically para que la sesión no conserve productos ya borrados
     @Modifying(clearAutomatically = true)
-    @Query("update Producto p set p.stock = p.stock + :cantidad where p.id = :id")
-    void incrementarStock(@Param("id") Long id, @Param("cantidad") int cantidad);
+    @Query("delete from Producto p where p.categoria.id = :categoriaId")
+    int deleteByCategoriaId(@Param("categoriaId") Long categoriaId);
+
+    // Paginación por clave (keyset): la página siguiente empieza tras el último id visto,
+    // así que cualquier página cuesta lo mismo que la primera (recorrido de la PK / idx_producto_categoria_id).
+    @Query("select p from Producto p where p.id > :despuesDe order by p.id asc")
+    List<Producto> findPaginaDespuesDe(@Param("despuesDe") Long despuesDe, Limit limit);
+
+    @Query("select p from Producto p where p.categoria.id = :categoriaId and p.id > :despuesDe order by p.id asc")
+    List<Producto> findPaginaPorCategoriaDespuesDe(@Param("categoriaId") Long categoriaId,
+                                                   @Param("despuesDe") Long despuesDe,
+                                                   Limit limit);
+
+    boolean existsByReferencia(String referencia);
+
+    // Búsqueda por la columna normalizada (uk_producto_referencia_norm): la comparación sí usa el índice
+    boolean existsByReferenciaNormalizada(String referenciaNormalizada);
+
+    Optional<Producto> findByReferenciaNormalizada(String referenciaNormalizada);
+
+    @Query("select p.referenciaNormalizada as referencia, p.id as id from Producto p")
+    List<ReferenciaId> findAllReferencias();
+
+    interface ReferenciaId {
+        String getReferencia();
+        Long getId();
+    }
+
+    // Cuáles de las referencias dadas existen ya (comprobación de duplicados por lotes en la importación masiva)
+    @Query("select p.referenciaNormalizada from Producto p where p.referenciaNormalizada in :referencias")
+    List<String> findReferenciasNormalizadasExistentes(@Param("referencias") Collection<String> referencias);
+
+    // Carga completa para construir el índice de búsqueda en memoria (una sola consulta)
+    @Query("select p from Producto p left join fetch p.categoria")
+    List<Producto> findAllConCategoria();
+
+    // Listado de administración en una sola consulta: fila DTO con el nombre de la categoría ya unido
+    @Query("""
+           select new es.unex.cum.mdai.motoresbits.service.dto.ProductoAdminDto(
+               p.id, p.nombre, p.referencia, p.precio, p.stock, coalesce(c.nombre, ''), p.imagen, p.imagenUrl)
+           from Producto p
+           left join p.categoria c
+           order by p.id
+           """)
+    List<ProductoAdminDto> findAllAdminDto();
+
+    @Query("""
+           select new es.unex.cum.mdai.motoresbits.service.dto.ProductoAdminDto(
+               p.id, p.nombre, p.referencia, p.precio, p.stock, coalesce(c.nombre, ''), p.imagen, p.imagenUrl)
+           from Producto p
+           join p.categoria c
+           where c.id = :categoriaId
+           order by p.id
+           """)
+    List<ProductoAdminDto> findAdminDtoByCategoriaId(@Param("categoriaId") Long categoriaId);
+
+    // Cabecera del detalle de producto en una sola consulta: producto, categoría y resumen de valoraciones
+    @Query("""
+           select new es.unex.cum.mdai.motoresbits.service.dto.DetalleProducto(
+               p.id, p.nombre, p.referencia, p.precio, p.stock, p.imagen, p.imagenUrl, p.version,
+               c.id, c.nombre, p.numResenas, p.sumaPuntuaciones)
+           from Producto p
+           join p.categoria c
+           where p.id = :id
+           """)
+    Optional<DetalleProducto> findDetalleById(@Param("id") Long id);
+
+    // Versión actual del producto: clave barata para validar el detalle cacheado
+    @Query("select p.version from Producto p where p.id = :id")
+    Optional<Integer> findVersionById(@Param("id") Long id);
+
+    // Ajuste atómico del resumen de valoraciones (deltas de nº de reseñas y de suma de puntuaciones).
+    // También incrementa la versión: el detalle cacheado incluye media y reseñas.
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("""
+           update Producto p
+           set p.numResenas = p.numResenas + :resenas,
+               p.sumaPuntuaciones = p.sumaPuntuaciones + :puntos,
+               p.version = coalesce(p.version, 0) + 1
+           where p.id = :id
+           """)
+    int ajustarValoraciones(@Param("id") Long id, @Param("resenas") int resenas, @Param("puntos") int puntos);
+
+    // Recalcula desde RESENAS el resumen de los productos dados; solo toca (y versiona) los que no cuadran
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("""
+           update Producto p
+           set p.numResenas = (select count(r) from Resena r where r.producto.id = p.id),
+               p.sumaPuntuaciones = (select coalesce(sum(r.puntuacion), 0) from Resena r where r.producto.id = p.id),
+               p.version = coalesce(p.version, 0) + 1
+           where p.id in :ids
+             and (p.numResenas <> (select count(r) from Resena r where r.producto.id = p.id)
+                  or p.sumaPuntuaciones <> (select coalesce(sum(r.puntuacion), 0) from Resena r where r.producto.id = p.id))
+           """)
+    int recalcularValoraciones(@Param("ids") Collection<Long> ids);
+
+    // Recorrido por lotes de todos los ids (trabajo de reparación)
+    @Query("select p.id from Producto p where p.id > :despuesDe order by p.id asc")
+    List<Long> findIdsDespuesDe(@Param("despuesDe") Long despuesDe, Limit limit);
 }
@@ -1,5 +1,6 @@
 package es.unex.cum.mdai.motoresbits.data.repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -9,12 +10,25 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
 import es.unex.cum.mdai.motoresbits.data.model.entity.Resena;
+import es.unex.cum.mdai.motoresbits.service.dto.DetalleProducto;
+import org.springframework.data.domain.Limit;
 import org.springframework.transaction.annotation.Transactional;
 
 public interface ResenaRepository extends JpaRepository<Resena, Long> {
 
     List<Resena> findByProductoId(Long productoId);
 
+    // Página de reseñas del detalle de producto, más recientes primero y con el autor unido en la misma consulta
+    @Query("""
+           select new es.unex.cum.mdai.motoresbits.service.dto.DetalleProducto$ResenaDetalle(
+               r.id, r.puntuacion, r.comentario, r.creadaEn, u.id, u.nombre)
+           from Resena r
+           join r.usuario u
+           where r.producto.id = :pid
+           order by r.creadaEn desc, r.id desc
+           """)
+    List<DetalleProducto.ResenaDetalle> findDetalleByProductoId(@Param("pid") Long productoId, Limit limit);
+
     @Query("select avg(r.puntuacion) from Resena r where r.producto.id = :pid")
     Optional<Double> avgPuntuacionByProductoId(@Param("pid") Long productoId);
 
@@ -24,4 +38,13 @@ public interface ResenaRepository extends JpaRepository<Resena, Long> {
     @Modifying
     @Transactional
     void deleteByProductoId(Long productoId);
+
+    // Borrado en bloque de las reseñas de todos los productos de una categoría (una sola sentencia)
+    @Modifying
+    @Query("delete from Resena r where r.producto.id in (select p.id from Producto p where p.categoria.id = :categoriaId)")
+    int deleteByCategoriaId(@Param("categoriaId") Long categoriaId);
+
+    @Modifying
+    @Query("delete from Resena r where r.producto.id in :productoIds")
+    int deleteByProductoIdIn(@Param("productoIds") Collection<Long> productoIds);
 }
@@ -0,0 +1,15 @@
+package es.unex.cum.mdai.motoresbits.data.repository;
+
+import java.util.Map;
+
+// Cambios de stock de varias líneas a la vez (pedidos completos). Las filas se tratan siempre en orden
+// ascendente de id, así dos compras concurrentes bloquean PRODUCTOS en el mismo orden y no se interbloquean.
+public interface StockProductoRepository {
+
+    // Descuenta idProducto -> cantidad de todas las líneas o de ninguna. Devuelve las líneas sin stock
+    // suficiente (idProducto -> stock disponible, 0 si no existe); vacío si se ha aplicado el descuento.
+    Map<Long, Integer> descontarStockEnLote(Map<Long, Integer> cantidades);
+
+    // Repone idProducto -> cantidad (cancelaciones) en un único lote
+    void incrementarStockEnLote(Map<Long, Integer> cantidades);
+}
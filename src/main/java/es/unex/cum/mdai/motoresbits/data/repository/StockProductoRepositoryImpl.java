@@ -0,0 +1,78 @@
+package es.unex.cum.mdai.motoresbits.data.repository;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.*;
+
+// Implementación por JDBC: una lectura con bloqueo (SELECT ... FOR UPDATE) y un lote de UPDATE, sea cual sea
+// el número de líneas. Las versiones se incrementan a mano, igual que en los UPDATE en bloque de ProductoRepository.
+public class StockProductoRepositoryImpl implements StockProductoRepository {
+
+    private static final String SQL_DESCONTAR =
+            "update productos set stock = stock - ?, version = coalesce(version, 0) + 1 where id_producto = ? and stock >= ?";
+    private static final String SQL_INCREMENTAR =
+            "update productos set stock = stock + ?, version = coalesce(version, 0) + 1 where id_producto = ?";
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public StockProductoRepositoryImpl(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public Map<Long, Integer> descontarStockEnLote(Map<Long, Integer> cantidades) {
+        if (cantidades.isEmpty()) return Map.of();
+        SortedMap<Long, Integer> lineas = new TreeMap<>(cantidades);
+        entityManager.flush();
+
+        // Bloquea las filas en orden ascendente y lee su stock: con las filas bloqueadas la comprobación es exacta
+        // y sabemos qué líneas fallan sin depender de los contadores del lote (el driver puede no devolverlos)
+        Map<Long, Integer> stock = new HashMap<>();
+        jdbcTemplate.query("select id_producto, stock from productos where id_producto in (" + marcadores(lineas.size())
+                        + ") order by id_producto for update",
+                rs -> { stock.put(rs.getLong(1), rs.getInt(2)); },
+                lineas.keySet().toArray());
+
+        Map<Long, Integer> sinStock = new LinkedHashMap<>();
+        lineas.forEach((id, cantidad) -> {
+            int disponible = stock.getOrDefault(id, 0);
+            if (disponible < cantidad) sinStock.put(id, disponible);
+        });
+        if (!sinStock.isEmpty()) return sinStock;
+
+        jdbcTemplate.batchUpdate(SQL_DESCONTAR, new ArrayList<>(lineas.entrySet()), lineas.size(), (ps, e) -> {
+            ps.setInt(1, e.getValue());
+            ps.setLong(2, e.getKey());
+            ps.setInt(3, e.getValue());
+        });
+        limpiarContexto();
+        return Map.of();
+    }
+
+    @Override
+    public void incrementarStockEnLote(Map<Long, Integer> cantidades) {
+        if (cantidades.isEmpty()) return;
+        SortedMap<Long, Integer> lineas = new TreeMap<>(cantidades);
+        entityManager.flush();
+        jdbcTemplate.batchUpdate(SQL_INCREMENTAR, new ArrayList<>(lineas.entrySet()), lineas.size(), (ps, e) -> {
+            ps.setInt(1, e.getValue());
+            ps.setLong(2, e.getKey());
+        });
+        limpiarContexto();
+    }
+
+    // Como @Modifying(clearAutomatically = true), pero una sola vez por lote y no tras cada línea: así una
+    // lectura posterior en la misma transacción ve el stock y la versión nuevos
+    private void limpiarContexto() {
+        entityManager.clear();
+    }
+
+    private static String marcadores(int n) {
+        return String.join(",", Collections.nCopies(n, "?"));
+    }
+}
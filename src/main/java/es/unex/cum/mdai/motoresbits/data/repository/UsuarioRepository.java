@@ -2,8 +2,36 @@ package es.unex.cum.mdai.motoresbits.data.repository;
 
 import es.unex.cum.mdai.motoresbits.data.model.entity.Usuario;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.math.BigDecimal;
 import java.util.Optional;
 
 public interface UsuarioRepository extends JpaRepository<Usuario, Long> {
     Optional<Usuario> findByEmail(String email);
+
+    @Query("select u.saldo from Usuario u where u.id = :id")
+    Optional<BigDecimal> findSaldoById(@Param("id") Long id);
+
+    // Cargo atómico: un único UPDATE condicional, sin leer el saldo antes. 0 si no hay saldo suficiente
+    // (o no existe el usuario). Usuario no tiene @Version: así dos cargos/abonos concurrentes no se pisan.
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update Usuario u set u.saldo = u.saldo - :importe where u.id = :id and u.saldo >= :importe")
+    int debitarSaldo(@Param("id") Long id, @Param("importe") BigDecimal importe);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update Usuario u set u.saldo = u.saldo + :importe where u.id = :id")
+    int abonarSaldo(@Param("id") Long id, @Param("importe") BigDecimal importe);
+
+    // Cargo con el saldo resultante (leído con la fila ya bloqueada por el UPDATE); vacío si no se ha podido cargar
+    default Optional<BigDecimal> debitar(Long id, BigDecimal importe) {
+        return debitarSaldo(id, importe) > 0 ? findSaldoById(id) : Optional.empty();
+    }
+
+    // Abono con el saldo resultante; vacío si no existe el usuario
+    default Optional<BigDecimal> abonar(Long id, BigDecimal importe) {
+        return abonarSaldo(id, importe) > 0 ? findSaldoById(id) : Optional.empty();
+    }
 }
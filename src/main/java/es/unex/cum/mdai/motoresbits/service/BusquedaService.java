@@ -0,0 +1,14 @@
+package es.unex.cum.mdai.motoresbits.service;
+
+import es.unex.cum.mdai.motoresbits.data.model.entity.Producto;
+import es.unex.cum.mdai.motoresbits.service.dto.SugerenciaProducto;
+
+import java.util.List;
+
+// Servicio de búsqueda de productos por prefijos de nombre, referencia o categoría.
+public interface BusquedaService {
+
+    List<SugerenciaProducto> sugerencias(String consulta, int limite);
+
+    List<Producto> buscar(String consulta, int limite);
+}
@@ -2,6 +2,9 @@ package es.unex.cum.mdai.motoresbits.service;
 
 import es.unex.cum.mdai.motoresbits.data.model.entity.Categoria;
 import es.unex.cum.mdai.motoresbits.data.model.entity.Producto;
+import es.unex.cum.mdai.motoresbits.service.dto.DetalleProducto;
+import es.unex.cum.mdai.motoresbits.service.dto.MarcaCatalogo;
+import es.unex.cum.mdai.motoresbits.service.dto.PaginaProductos;
 import es.unex.cum.mdai.motoresbits.service.dto.ProductoAdminDto;
 
 import java.math.BigDecimal;
@@ -19,6 +22,14 @@ public interface CatalogoService {
     List<Categoria> listarCategorias();
     void eliminarCategoria(Long id);
 
+    // Modelo completo de la página de detalle (producto, categoría, valoración media y primeras reseñas)
+    DetalleProducto obtenerDetalleProducto(Long id);
+
+    DetalleProducto obtenerDetalleProductoPorReferencia(String referencia);
+
+    // Marcas de cambio actuales (sin acceso a BD), para ETag / Last-Modified de las páginas del catálogo
+    MarcaCatalogo obtenerMarcaCatalogo();
+
     Producto crearProducto(Long idCategoria, String nombre, String referencia,
                            BigDecimal precio, Integer stock, String imagenUrl);
 
@@ -31,6 +42,10 @@ public interface CatalogoService {
 
     List<Producto> listarProductos();
     List<Producto> listarPorCategoria(Long idCategoria);
+
+    // Listados paginados por keyset: despuesDe es el último id de la página anterior (null = primera página)
+    PaginaProductos listarProductosPagina(Long despuesDe, Integer tamano);
+    PaginaProductos listarPorCategoriaPagina(Long idCategoria, Long despuesDe, Integer tamano);
     void eliminarProducto(Long id);
 
     List<ProductoAdminDto> listarProductosConCategoria();
@@ -0,0 +1,17 @@
+package es.unex.cum.mdai.motoresbits.service;
+
+import es.unex.cum.mdai.motoresbits.service.dto.ProgresoEliminacion;
+
+import java.util.Optional;
+
+// Borrado de categorías con sus productos: directo para las pequeñas y por lotes en segundo plano para las grandes.
+public interface EliminacionCategoriasService {
+
+    // Borra en el momento si la categoría no supera el umbral; si lo supera lanza el borrado por lotes
+    ProgresoEliminacion eliminar(Long idCategoria);
+
+    // Fuerza el borrado por lotes en segundo plano (cada lote en su propia transacción corta)
+    ProgresoEliminacion eliminarEnSegundoPlano(Long idCategoria);
+
+    Optional<ProgresoEliminacion> progreso(Long idCategoria);
+}
@@ -0,0 +1,27 @@
+package es.unex.cum.mdai.motoresbits.service;
+
+import es.unex.cum.mdai.motoresbits.service.dto.FacturaPdf;
+import es.unex.cum.mdai.motoresbits.service.dto.FacturaVista;
+import es.unex.cum.mdai.motoresbits.service.dto.FiltroPedidos;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.CompletableFuture;
+
+// Servicio de facturas en PDF de los pedidos.
+public interface FacturaService {
+
+    // Datos de la factura del pedido (cabecera, cliente y líneas) leídos con proyecciones, sin cargar entidades.
+    // Lanza PedidoNoEncontradoException si el pedido no existe.
+    FacturaVista obtenerFactura(Long idPedido);
+
+    // PDF de la factura (tal como la devuelve obtenerFactura), ya abierto: hay que cerrarlo. Solo se vuelve a
+    // generar si ha cambiado algo de lo que aparece en ella; si no, se reutiliza el PDF ya guardado en disco y el
+    // resultado ya viene completado. La generación va a un grupo de hilos propio con cola limitada:
+    // si la cola está llena lanza GeneracionFacturasSaturadaException en lugar de esperar.
+    CompletableFuture<FacturaPdf> obtenerFacturaPdf(FacturaVista factura);
+
+    // Escribe en "salida" un ZIP con la factura de cada pedido que cumple el filtro, a medida que se generan.
+    // No cierra "salida". Devuelve el número de facturas incluidas.
+    int exportarFacturas(FiltroPedidos filtro, OutputStream salida) throws IOException;
+}
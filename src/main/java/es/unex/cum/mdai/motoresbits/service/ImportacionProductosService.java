@@ -0,0 +1,17 @@
+package es.unex.cum.mdai.motoresbits.service;
+
+import es.unex.cum.mdai.motoresbits.service.dto.ResultadoImportacion;
+
+import java.io.InputStream;
+
+// Servicio de importación masiva de productos desde los CSV de proveedores.
+public interface ImportacionProductosService {
+
+    /*
+     * Importa un CSV (UTF-8, separador ',' o ';') con cabecera:
+     *   referencia;nombre;categoria;precio;stock;imagenUrl
+     * Las columnas stock e imagenUrl son opcionales y la categoría se indica por nombre.
+     * Las filas inválidas se descartan y se informan en el resultado; el resto se insertan.
+     */
+    ResultadoImportacion importarCsv(InputStream entrada);
+}
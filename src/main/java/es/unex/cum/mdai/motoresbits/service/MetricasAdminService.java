@@ -0,0 +1,10 @@
+package es.unex.cum.mdai.motoresbits.service;
+
+import es.unex.cum.mdai.motoresbits.service.dto.MetricasPanel;
+
+// Servicio de métricas del panel de administración: recuentos y agregados calculados en la BD.
+public interface MetricasAdminService {
+
+    // Puede devolver una instantánea de hace unos segundos (ver app.admin.metricas.ttl)
+    MetricasPanel obtenerMetricas();
+}
@@ -2,8 +2,14 @@ package es.unex.cum.mdai.motoresbits.service;
 
 import es.unex.cum.mdai.motoresbits.data.model.entity.Pedido;
 import es.unex.cum.mdai.motoresbits.data.model.enums.EstadoPedido;
+import es.unex.cum.mdai.motoresbits.service.dto.FiltroPedidos;
+import es.unex.cum.mdai.motoresbits.service.dto.PaginaPedidos;
+import es.unex.cum.mdai.motoresbits.service.dto.PaginaResumenPedidos;
+import es.unex.cum.mdai.motoresbits.service.dto.ResultadoCambioEstado;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 // Servicio de pedidos: crear, modificar líneas, cambiar estado y confirmar pago.
 public interface PedidoService {
@@ -12,7 +18,11 @@ public interface PedidoService {
 
     Pedido obtenerPedido(Long idPedido);
 
-    List<Pedido> listarPedidosUsuario(Long idUsuario);
+    // Historial de pedidos del usuario (sin el carrito en estado CREADO), más recientes primero.
+    // antesDe = cursor de la página anterior (null para la primera)
+    PaginaResumenPedidos listarResumenPedidos(Long idUsuario, Long antesDe, Integer tamano);
+
+    long contarPedidosUsuario(Long idUsuario);
 
     Pedido agregarLinea(Long idPedido, Long idProducto, int cantidad);
 
@@ -22,9 +32,30 @@ public interface PedidoService {
 
     Pedido cambiarEstado(Long idPedido, EstadoPedido nuevoEstado);
 
+    // Cambio de estado de muchos pedidos a la vez (mismas reglas que cambiarEstado). Los pedidos que no
+    // pueden cambiar se informan en el resultado sin impedir que cambien los demás.
+    ResultadoCambioEstado cambiarEstadoEnLote(Collection<Long> idsPedido, EstadoPedido nuevoEstado);
+
     void eliminarPedido(Long idPedido);
 
     Pedido confirmarPedido(Long idPedido);
 
-    List<Pedido> listarTodosPedidos();
+    // Compra completa del carrito (idProducto -> cantidad) en una sola transacción:
+    // crea el pedido con sus líneas, descuenta stock y cobra el saldo. Si algo falla no queda nada a medias.
+    Pedido checkout(Long idUsuario, Map<Long, Integer> cantidades);
+
+    // Igual, convirtiendo en descuento las reservas del carrito "titularReservas" (que se liberan tras el commit)
+    Pedido checkout(Long idUsuario, Map<Long, Integer> cantidades, String titularReservas);
+
+    // Reserva temporal de stock para un carrito: fija la reserva del producto en "cantidad" y devuelve
+    // las unidades reservadas (menos si el resto del stock está retenido por otros carritos)
+    int reservarStock(String titularReservas, Long idProducto, int cantidad);
+
+    void liberarReservas(String titularReservas, Collection<Long> idsProducto);
+
+    void liberarReservas(String titularReservas);
+
+    // Listado de administración paginado por clave (más recientes primero). antesDe = cursor de la página anterior
+    // (null para la primera); las líneas se cargan solo para los pedidos de la página.
+    PaginaPedidos listarPedidosPagina(FiltroPedidos filtro, Long antesDe, Integer tamano);
 }
@@ -23,4 +23,7 @@ public interface ResenaService {
     List<Resena> listarResenasUsuario(Long idUsuario);
 
     void eliminarResenasDeProducto(Long idProducto);
+
+    // Reconstruye desde RESENAS el resumen de valoraciones de todos los productos; devuelve cuántos estaban descuadrados
+    int repararResumenValoraciones();
 }
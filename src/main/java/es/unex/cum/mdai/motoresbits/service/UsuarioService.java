@@ -23,6 +23,7 @@ public interface UsuarioService {
 
     Usuario actualizarPerfil(Long id, String direccion, String telefono);
 
-    Usuario ajustarSaldo(Long idUsuario, BigDecimal delta);
+    // Suma (delta > 0) o resta (delta < 0) saldo de forma atómica y devuelve el saldo resultante
+    BigDecimal ajustarSaldo(Long idUsuario, BigDecimal delta);
 
 }
@@ -0,0 +1,155 @@
+package es.unex.cum.mdai.motoresbits.service.cache;
+
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import es.unex.cum.mdai.motoresbits.service.dto.DetalleProducto;
+import es.unex.cum.mdai.motoresbits.util.Transacciones;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+// Acceso centralizado a las cachés de listados del catálogo: invalidación selectiva, estadísticas y
+// marca de cambios (base de los ETag / Last-Modified de las páginas públicas del catálogo).
+@Component
+public class CatalogoCache {
+
+    public static final String CATEGORIAS = "catalogo.categorias";
+    public static final String PRODUCTOS = "catalogo.productos";
+    public static final String PRODUCTOS_POR_CATEGORIA = "catalogo.productosPorCategoria";
+    public static final String PAGINAS = "catalogo.paginas";
+    public static final String DETALLES = "catalogo.detalles";
+
+    // Claves de las entradas únicas (listados completos)
+    public static final String CLAVE_TODAS = "todas";
+    public static final String CLAVE_TODOS = "todos";
+
+    // Prefijos de las claves de páginas (keyset): "todos:<cursor>:<tamaño>" y "cat:<id>:<cursor>:<tamaño>"
+    public static final String PREFIJO_PAGINAS_TODOS = "todos:";
+    public static final String PREFIJO_PAGINAS_CATEGORIA = "cat:";
+
+    private final CacheManager cacheManager;
+
+    // Marcas de cambio: parten de la hora de arranque para que no se repitan entre reinicios o instancias.
+    // "marca" sube con cualquier invalidación del catálogo; "marcaDetalles" solo con las que afectan a
+    // detalles sin tocar la versión del producto (ver evictDetalles).
+    private final AtomicLong marca = new AtomicLong(System.currentTimeMillis());
+    private final AtomicLong marcaDetalles = new AtomicLong(System.currentTimeMillis());
+    private volatile long ultimoCambio = System.currentTimeMillis();
+
+    public CatalogoCache(CacheManager cacheManager) {
+        this.cacheManager = cacheManager;
+    }
+
+    public void evictCategorias() {
+        evict(CATEGORIAS, CLAVE_TODAS);
+        registrarCambio();
+    }
+
+    public void evictProductos() {
+        evict(PRODUCTOS, CLAVE_TODOS);
+        evictPorPrefijo(PAGINAS, PREFIJO_PAGINAS_TODOS);
+        registrarCambio();
+    }
+
+    public void evictProductosDeCategoria(Long idCategoria) {
+        if (idCategoria == null) return;
+        evict(PRODUCTOS_POR_CATEGORIA, idCategoria);
+        evictPorPrefijo(PAGINAS, PREFIJO_PAGINAS_CATEGORIA + idCategoria + ":");
+        registrarCambio();
+    }
+
+    // Todos los listados de productos (general y por categoría), para cambios repartidos por muchos productos
+    public void evictListados() {
+        for (String nombre : new String[]{PRODUCTOS, PRODUCTOS_POR_CATEGORIA, PAGINAS}) {
+            Cache cache = cacheManager.getCache(nombre);
+            if (cache != null) {
+                cache.invalidate();
+                cache.clear();
+            }
+        }
+        registrarCambio();
+    }
+
+    // Detalle de producto cacheado por "id:versión": cualquier cambio que incremente la versión lo deja obsoleto
+    // sin necesidad de invalidarlo (las entradas viejas caducan por TTL/tamaño).
+    public DetalleProducto detalle(Long idProducto, Integer version, Supplier<DetalleProducto> cargar) {
+        Cache cache = cacheManager.getCache(DETALLES);
+        if (cache == null) return cargar.get();
+        return cache.get(idProducto + ":" + version, cargar::get);
+    }
+
+    // Cambios que afectan a muchos detalles sin tocar su versión (p. ej. renombrar una categoría)
+    public void evictDetalles() {
+        Cache cache = cacheManager.getCache(DETALLES);
+        if (cache == null) return;
+        cache.invalidate();
+        cache.clear();
+        Runnable subir = marcaDetalles::incrementAndGet;
+        subir.run();
+        Transacciones.despuesDelCommit(subir);
+        registrarCambio();
+    }
+
+    // Cambia cada vez que se invalida algo del catálogo (listados, categorías o detalles)
+    public long getMarca() {
+        return marca.get();
+    }
+
+    // Cambia solo con evictDetalles; el resto de cambios de un detalle ya se reflejan en la versión del producto
+    public long getMarcaDetalles() {
+        return marcaDetalles.get();
+    }
+
+    // Instante (epoch millis) del último cambio registrado en el catálogo
+    public long getUltimoCambio() {
+        return ultimoCambio;
+    }
+
+    // Estadísticas por caché (aciertos, fallos, expulsiones...). Solo disponibles con "recordStats" en la spec.
+    public Map<String, CacheStats> estadisticas() {
+        Map<String, CacheStats> stats = new LinkedHashMap<>();
+        for (String nombre : new String[]{CATEGORIAS, PRODUCTOS, PRODUCTOS_POR_CATEGORIA, PAGINAS, DETALLES}) {
+            Cache cache = cacheManager.getCache(nombre);
+            if (cache != null && cache.getNativeCache() instanceof com.github.benmanes.caffeine.cache.Cache<?, ?> nativa) {
+                stats.put(nombre, nativa.stats());
+            }
+        }
+        return stats;
+    }
+
+    // Igual que las invalidaciones: en el momento y otra vez tras el commit, para que una petición que lea
+    // la marca mientras la transacción está abierta no la asocie para siempre a los datos anteriores.
+    private void registrarCambio() {
+        Runnable subir = () -> {
+            marca.incrementAndGet();
+            ultimoCambio = System.currentTimeMillis();
+        };
+        subir.run();
+        Transacciones.despuesDelCommit(subir);
+    }
+
+    // Se invalida en el momento (para que la propia transacción no lea datos viejos) y de nuevo tras el commit
+    // (para descartar lo que otra petición haya podido volver a cachear mientras tanto).
+    private void evict(String nombreCache, Object clave) {
+        Cache cache = cacheManager.getCache(nombreCache);
+        if (cache == null) return;
+        cache.evictIfPresent(clave);
+        cache.evict(clave);
+    }
+
+    // Las páginas de un listado se invalidan todas a la vez (un alta o baja desplaza los cortes entre páginas)
+    private void evictPorPrefijo(String nombreCache, String prefijo) {
+        Cache cache = cacheManager.getCache(nombreCache);
+        if (cache == null || !(cache.getNativeCache() instanceof com.github.benmanes.caffeine.cache.Cache<?, ?> nativa)) {
+            return;
+        }
+        Runnable borrar = () -> nativa.asMap().keySet()
+                .removeIf(k -> k instanceof String s && s.startsWith(prefijo));
+        borrar.run();
+        Transacciones.despuesDelCommit(borrar);
+    }
+}
@@ -0,0 +1,227 @@
+package es.unex.cum.mdai.motoresbits.service.cache;
+
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.stream.Stream;
+
+// Caché en disco de las facturas PDF. Cada fichero se llama factura-{idPedido}-{huella}.pdf, donde la huella
+// resume todo lo que aparece en la factura: si el pedido cambia cambia el nombre y se vuelve a generar; si no,
+// se sirve el fichero tal cual. Limitada por tamaño total, expulsando primero lo menos usado (LRU).
+// El índice vive en memoria y se reconstruye al arrancar a partir de los ficheros (por fecha de modificación).
+@Component
+public class FacturasPdfCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(FacturasPdfCache.class);
+
+    private static final String PREFIJO = "factura-";
+    private static final String EXTENSION = ".pdf";
+    private static final String TEMPORAL = "tmp-";
+
+    /*
+     * Directorio de las facturas generadas y tamaño máximo que pueden ocupar entre todas.
+     * Pueden cambiarse en application.properties con:
+     *   app.facturas.cache.directorio=/var/cache/motoresbits/facturas
+     *   app.facturas.cache.tamano-maximo=256MB
+     */
+    @Value("${app.facturas.cache.directorio:${java.io.tmpdir}/motoresbits-facturas}")
+    private String directorio;
+
+    @Value("${app.facturas.cache.tamano-maximo:256MB}")
+    private DataSize tamanoMaximo = DataSize.ofMegabytes(256);
+
+    private Path raiz;
+
+    // Escribe el PDF en el stream que recibe (el fichero de la caché); no debe cerrarlo
+    @FunctionalInterface
+    public interface GeneradorPdf {
+        void escribir(OutputStream salida) throws IOException;
+    }
+
+    // Nombre de fichero -> tamaño, en orden de acceso (el primero es el menos usado). Protegido por su propio monitor.
+    private final LinkedHashMap<String, Long> indice = new LinkedHashMap<>(256, 0.75f, true);
+    private long tamanoTotal;
+
+    // Un pedido solo se genera una vez aunque lleguen varias descargas a la vez; pedidos distintos no se esperan
+    private final Object[] bloqueos = new Object[64];
+
+    public FacturasPdfCache() {
+        for (int i = 0; i < bloqueos.length; i++) bloqueos[i] = new Object();
+    }
+
+    @PostConstruct
+    public void inicializar() {
+        raiz = Path.of(directorio).toAbsolutePath();
+        try {
+            Files.createDirectories(raiz);
+            List<Path> ficheros;
+            try (Stream<Path> listado = Files.list(raiz)) {
+                ficheros = listado.filter(Files::isRegularFile).toList();
+            }
+            // Restos de escrituras interrumpidas (la aplicación se paró a mitad de generar una factura)
+            for (Path f : ficheros) {
+                if (f.getFileName().toString().startsWith(TEMPORAL)) Files.deleteIfExists(f);
+            }
+            ficheros = ficheros.stream()
+                    .filter(FacturasPdfCache::esFactura)
+                    .sorted(Comparator.comparing(FacturasPdfCache::fechaModificacion))
+                    .toList();
+            synchronized (indice) {
+                indice.clear();
+                tamanoTotal = 0;
+                for (Path f : ficheros) {
+                    long tamano = Files.size(f);
+                    indice.put(f.getFileName().toString(), tamano);
+                    tamanoTotal += tamano;
+                }
+            }
+            recortar();
+            logger.info("Caché de facturas en {}: {} ficheros, {} bytes", raiz, getNumFicheros(), getTamanoTotal());
+        } catch (IOException ex) {
+            throw new UncheckedIOException("No se pudo preparar la caché de facturas en " + raiz, ex);
+        }
+    }
+
+    // Fichero PDF de la factura con esa huella si ya está en disco; null si hay que generarlo
+    public Path buscar(Long idPedido, String huella) {
+        String nombre = nombreFichero(idPedido, huella);
+        Path fichero = raiz.resolve(nombre);
+        return acierto(nombre, fichero) ? fichero : null;
+    }
+
+    // Fichero PDF de la factura con esa huella; si no está en disco se genera (una sola vez) y se guarda,
+    // borrando las versiones anteriores de la factura del mismo pedido
+    public Path obtener(Long idPedido, String huella, GeneradorPdf generar) {
+        String nombre = nombreFichero(idPedido, huella);
+        Path fichero = raiz.resolve(nombre);
+        if (acierto(nombre, fichero)) return fichero;
+
+        synchronized (bloqueos[Math.floorMod(idPedido.hashCode(), bloqueos.length)]) {
+            if (acierto(nombre, fichero)) return fichero;
+
+            long tamano;
+            Path temporal = null;
+            try {
+                // El PDF se escribe directamente en un fichero aparte (sin pasar por memoria) y se mueve de golpe:
+                // nadie llega a servir un fichero a medio escribir
+                temporal = Files.createTempFile(raiz, TEMPORAL, EXTENSION);
+                try (OutputStream salida = new BufferedOutputStream(Files.newOutputStream(temporal))) {
+                    generar.escribir(salida);
+                }
+                tamano = Files.size(temporal);
+                Files.move(temporal, fichero, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException ex) {
+                throw new UncheckedIOException("No se pudo guardar la factura del pedido " + idPedido, ex);
+            } finally {
+                borrarTemporal(temporal);
+            }
+            synchronized (indice) {
+                Long anterior = indice.put(nombre, tamano);
+                tamanoTotal += tamano - (anterior == null ? 0 : anterior);
+            }
+            borrarVersionesAnteriores(idPedido, nombre);
+        }
+        recortar();
+        return fichero;
+    }
+
+    public long getTamanoTotal() {
+        synchronized (indice) {
+            return tamanoTotal;
+        }
+    }
+
+    public int getNumFicheros() {
+        synchronized (indice) {
+            return indice.size();
+        }
+    }
+
+    // -------- helpers --------
+
+    private static String nombreFichero(Long idPedido, String huella) {
+        return PREFIJO + idPedido + "-" + huella + EXTENSION;
+    }
+
+    // La consulta al índice lo marca como recién usado; si alguien borró el fichero a mano se da por fallo
+    private boolean acierto(String nombre, Path fichero) {
+        synchronized (indice) {
+            if (indice.get(nombre) == null) return false;
+        }
+        if (Files.exists(fichero)) return true;
+        quitar(nombre);
+        return false;
+    }
+
+    private void borrarVersionesAnteriores(Long idPedido, String vigente) {
+        String prefijo = PREFIJO + idPedido + "-";
+        List<String> obsoletos;
+        synchronized (indice) {
+            obsoletos = indice.keySet().stream()
+                    .filter(n -> n.startsWith(prefijo) && !n.equals(vigente))
+                    .toList();
+        }
+        obsoletos.forEach(this::quitar);
+    }
+
+    // Expulsa los menos usados hasta quedar por debajo del máximo (el más reciente se conserva siempre)
+    private void recortar() {
+        long maximo = tamanoMaximo.toBytes();
+        while (true) {
+            String expulsado;
+            synchronized (indice) {
+                if (tamanoTotal <= maximo || indice.size() <= 1) return;
+                expulsado = indice.keySet().iterator().next();
+            }
+            quitar(expulsado);
+        }
+    }
+
+    private void quitar(String nombre) {
+        synchronized (indice) {
+            Long tamano = indice.remove(nombre);
+            if (tamano != null) tamanoTotal -= tamano;
+        }
+        try {
+            Files.deleteIfExists(raiz.resolve(nombre));
+        } catch (IOException ex) {
+            logger.warn("No se pudo borrar la factura cacheada {}", nombre, ex);
+        }
+    }
+
+    // Si la generación falla a medias el temporal no debe quedarse ocupando disco (tras el move ya no existe)
+    private static void borrarTemporal(Path temporal) {
+        if (temporal == null) return;
+        try {
+            Files.deleteIfExists(temporal);
+        } catch (IOException ex) {
+            logger.debug("No se pudo borrar el temporal {}", temporal, ex);
+        }
+    }
+
+    private static boolean esFactura(Path f) {
+        String nombre = f.getFileName().toString();
+        return nombre.startsWith(PREFIJO) && nombre.endsWith(EXTENSION);
+    }
+
+    private static FileTime fechaModificacion(Path f) {
+        try {
+            return Files.getLastModifiedTime(f);
+        } catch (IOException ex) {
+            return FileTime.fromMillis(0);
+        }
+    }
+}
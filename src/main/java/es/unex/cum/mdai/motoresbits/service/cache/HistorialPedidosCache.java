@@ -0,0 +1,37 @@
+package es.unex.cum.mdai.motoresbits.service.cache;
+
+import es.unex.cum.mdai.motoresbits.service.dto.PaginaResumenPedidos;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Component;
+
+import java.util.function.Supplier;
+
+// Caché corta de la primera página del historial de pedidos de cada usuario (la que muestran /perfil y
+// /mis-pedidos en cada visita). Se invalida con cada escritura de PedidoService sobre pedidos del usuario.
+@Component
+public class HistorialPedidosCache {
+
+    public static final String HISTORIAL = "pedidos.historial";
+
+    private final CacheManager cacheManager;
+
+    public HistorialPedidosCache(CacheManager cacheManager) {
+        this.cacheManager = cacheManager;
+    }
+
+    public PaginaResumenPedidos primeraPagina(Long idUsuario, Supplier<PaginaResumenPedidos> cargar) {
+        Cache cache = cacheManager.getCache(HISTORIAL);
+        if (cache == null) return cargar.get();
+        return cache.get(idUsuario, cargar::get);
+    }
+
+    // Como en CatalogoCache: en el momento y de nuevo tras el commit
+    public void evictUsuario(Long idUsuario) {
+        if (idUsuario == null) return;
+        Cache cache = cacheManager.getCache(HISTORIAL);
+        if (cache == null) return;
+        cache.evictIfPresent(idUsuario);
+        cache.evict(idUsuario);
+    }
+}
@@ -0,0 +1,63 @@
+package es.unex.cum.mdai.motoresbits.service.cache;
+
+import es.unex.cum.mdai.motoresbits.data.repository.ProductoRepository;
+import es.unex.cum.mdai.motoresbits.util.Transacciones;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Mapa en memoria referencia normalizada -> id de producto, para resolver /producto/{referencia}
+// con una búsqueda O(1) seguida de un acceso por clave primaria.
+@Component
+public class ReferenciasProductos {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReferenciasProductos.class);
+
+    private final ProductoRepository productoRepository;
+    private final Map<String, Long> idPorReferencia = new ConcurrentHashMap<>();
+
+    public ReferenciasProductos(ProductoRepository productoRepository) {
+        this.productoRepository = productoRepository;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void cargar() {
+        idPorReferencia.clear();
+        for (ProductoRepository.ReferenciaId r : productoRepository.findAllReferencias()) {
+            idPorReferencia.put(r.getReferencia(), r.getId());
+        }
+        logger.info("Mapa de referencias de producto cargado: {} entradas", idPorReferencia.size());
+    }
+
+    public Optional<Long> buscarId(String referenciaNormalizada) {
+        if (referenciaNormalizada == null) return Optional.empty();
+        return Optional.ofNullable(idPorReferencia.get(referenciaNormalizada));
+    }
+
+    // Alta confirmada (o leída de BD): se aplica tras el commit para no publicar productos que hagan rollback
+    public void registrar(String referenciaNormalizada, Long idProducto) {
+        if (referenciaNormalizada == null || idProducto == null) return;
+        Transacciones.despuesDelCommit(() -> idPorReferencia.put(referenciaNormalizada, idProducto));
+    }
+
+    public void eliminar(String referenciaNormalizada) {
+        if (referenciaNormalizada == null) return;
+        Transacciones.despuesDelCommit(() -> idPorReferencia.remove(referenciaNormalizada));
+    }
+
+    // Baja por ids (cuando no se conoce la referencia, p. ej. borrados en bloque): una sola pasada por el mapa
+    public void eliminarIds(Collection<Long> idsProducto) {
+        if (idsProducto == null || idsProducto.isEmpty()) return;
+        Set<Long> ids = new HashSet<>(idsProducto);
+        Transacciones.despuesDelCommit(() -> idPorReferencia.values().removeIf(ids::contains));
+    }
+}
@@ -0,0 +1,111 @@
+package es.unex.cum.mdai.motoresbits.service.dto;
+
+import es.unex.cum.mdai.motoresbits.data.model.entity.Producto;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+// Modelo de la página de detalle de producto: producto, categoría, agregado de valoraciones y
+// la primera página de reseñas con el nombre de su autor. Inmutable una vez montado, se cachea por versión.
+public class DetalleProducto {
+
+    public static final int RESENAS_POR_PAGINA = 20;
+
+    private final Long id;
+    private final String nombre;
+    private final String referencia;
+    private final BigDecimal precio;
+    private final Integer stock;
+    private final String imagen;
+    private final String imagenUrl;
+    private final Integer version;
+    private final Long idCategoria;
+    private final String nombreCategoria;
+    private final Double mediaPuntuacion;
+    private final long numResenas;
+    private List<ResenaDetalle> resenas = List.of();
+
+    // Usado por la consulta con expresión constructora de ProductoRepository.findDetalleById
+    public DetalleProducto(Long id, String nombre, String referencia, BigDecimal precio, Integer stock,
+                           String imagen, String imagenUrl, Integer version, Long idCategoria,
+                           String nombreCategoria, Integer numResenas, Integer sumaPuntuaciones) {
+        this.id = id;
+        this.nombre = nombre;
+        this.referencia = referencia;
+        this.precio = precio;
+        this.stock = stock;
+        this.imagen = imagen;
+        this.imagenUrl = imagenUrl;
+        this.version = version;
+        this.idCategoria = idCategoria;
+        this.nombreCategoria = nombreCategoria;
+        this.mediaPuntuacion = Producto.calcularMedia(numResenas, sumaPuntuaciones);
+        this.numResenas = numResenas == null ? 0 : numResenas;
+    }
+
+    public Long getId() { return id; }
+
+    public String getNombre() { return nombre; }
+
+    public String getReferencia() { return referencia; }
+
+    public BigDecimal getPrecio() { return precio; }
+
+    public Integer getStock() { return stock; }
+
+    public String getImagen() { return imagen; }
+
+    public String getImagenUrl() { return imagenUrl; }
+
+    public Integer getVersion() { return version; }
+
+    public Long getIdCategoria() { return idCategoria; }
+
+    public String getNombreCategoria() { return nombreCategoria; }
+
+    // null si el producto no tiene reseñas
+    public Double getMediaPuntuacion() { return mediaPuntuacion; }
+
+    public long getNumResenas() { return numResenas; }
+
+    public List<ResenaDetalle> getResenas() { return resenas; }
+
+    public void setResenas(List<ResenaDetalle> resenas) { this.resenas = List.copyOf(resenas); }
+
+    // Hay más reseñas de las que se muestran en la página
+    public boolean isHayMasResenas() { return numResenas > resenas.size(); }
+
+    // Reseña lista para pintar: sin entidades, con el autor ya resuelto
+    public static class ResenaDetalle {
+        private final Long id;
+        private final Integer puntuacion;
+        private final String comentario;
+        private final LocalDateTime creadaEn;
+        private final Long idUsuario;
+        private final String nombreUsuario;
+
+        // Usado por la consulta con expresión constructora de ResenaRepository.findDetalleByProductoId
+        public ResenaDetalle(Long id, Integer puntuacion, String comentario, LocalDateTime creadaEn,
+                             Long idUsuario, String nombreUsuario) {
+            this.id = id;
+            this.puntuacion = puntuacion;
+            this.comentario = comentario;
+            this.creadaEn = creadaEn;
+            this.idUsuario = idUsuario;
+            this.nombreUsuario = nombreUsuario;
+        }
+
+        public Long getId() { return id; }
+
+        public Integer getPuntuacion() { return puntuacion; }
+
+        public String getComentario() { return comentario; }
+
+        public LocalDateTime getCreadaEn() { return creadaEn; }
+
+        public Long getIdUsuario() { return idUsuario; }
+
+        public String getNombreUsuario() { return nombreUsuario; }
+    }
+}
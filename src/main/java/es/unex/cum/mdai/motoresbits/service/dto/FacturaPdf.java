@@ -0,0 +1,46 @@
+package es.unex.cum.mdai.motoresbits.service.dto;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+
+// Factura PDF de la caché en disco ya abierta. Aunque la caché expulse o sustituya el fichero después, el
+// contenido se sigue pudiendo leer hasta cerrarla (el sistema de ficheros no lo libera mientras esté abierto).
+// Quien la recibe tiene que cerrarla: directamente o cerrando el stream de getContenido.
+public class FacturaPdf implements Closeable {
+
+    private final Path fichero;
+    private final FileChannel canal;
+    private final long tamano;
+
+    public FacturaPdf(Path fichero, FileChannel canal, long tamano) {
+        this.fichero = fichero;
+        this.canal = canal;
+        this.tamano = tamano;
+    }
+
+    // Ruta en la caché en el momento de abrirla (puede haber desaparecido ya)
+    public Path getFichero() { return fichero; }
+
+    // factura-{idPedido}-{huella}.pdf: cambia si y solo si cambia el contenido
+    public String getNombre() { return fichero.getFileName().toString(); }
+
+    public long getTamano() { return tamano; }
+
+    // Contenido desde el principio; cerrar el stream cierra también la factura
+    public InputStream getContenido() throws IOException {
+        return Channels.newInputStream(canal.position(0));
+    }
+
+    @Override
+    public void close() {
+        try {
+            canal.close();
+        } catch (IOException ignorada) {
+            // Solo se lee: no hay nada pendiente de escribir que se pueda perder
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package es.unex.cum.mdai.motoresbits.service.dto;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+// Modelo de la factura de un pedido: cabecera, datos del cliente y líneas con su subtotal ya calculado.
+// Se monta con dos consultas de proyección (sin entidades ni colecciones perezosas): la de cabeceras crea la
+// factura sin líneas y conLineas devuelve la factura completa. Inmutable: ningún método cambia una ya creada.
+public class FacturaVista {
+
+    private final Long idPedido;
+    private final LocalDate fechaPedido;
+    private final BigDecimal total;
+    private final Long idUsuario;
+    private final String clienteNombre;
+    private final String clienteEmail;
+    private final String clienteDireccion;
+    private final List<LineaFactura> lineas;
+
+    // Usado por las consultas con expresión constructora de PedidoRepository (findFacturaById, findFacturasByIdIn)
+    public FacturaVista(Long idPedido, LocalDate fechaPedido, BigDecimal total, Long idUsuario,
+                        String clienteNombre, String clienteEmail, String clienteDireccion) {
+        this(idPedido, fechaPedido, total, idUsuario, clienteNombre, clienteEmail, clienteDireccion, List.of());
+    }
+
+    private FacturaVista(Long idPedido, LocalDate fechaPedido, BigDecimal total, Long idUsuario,
+                         String clienteNombre, String clienteEmail, String clienteDireccion, List<LineaFactura> lineas) {
+        this.idPedido = idPedido;
+        this.fechaPedido = fechaPedido;
+        this.total = total;
+        this.idUsuario = idUsuario;
+        this.clienteNombre = clienteNombre == null ? "" : clienteNombre;
+        this.clienteEmail = clienteEmail == null ? "" : clienteEmail;
+        this.clienteDireccion = clienteDireccion == null ? "" : clienteDireccion;
+        this.lineas = List.copyOf(lineas);
+    }
+
+    // La misma cabecera con estas líneas (en orden de producto)
+    public FacturaVista conLineas(List<LineaFactura> lineas) {
+        return new FacturaVista(idPedido, fechaPedido, total, idUsuario, clienteNombre, clienteEmail, clienteDireccion, lineas);
+    }
+
+    public Long getIdPedido() { return idPedido; }
+
+    public LocalDate getFechaPedido() { return fechaPedido; }
+
+    public BigDecimal getTotal() { return total; }
+
+    // null si el pedido no tiene usuario
+    public Long getIdUsuario() { return idUsuario; }
+
+    public String getClienteNombre() { return clienteNombre; }
+
+    public String getClienteEmail() { return clienteEmail; }
+
+    public String getClienteDireccion() { return clienteDireccion; }
+
+    // En orden de producto: la huella de la factura no debe depender del orden en que llegan las filas
+    public List<LineaFactura> getLineas() { return lineas; }
+
+    // Línea lista para pintar: producto ya resuelto y subtotal calculado una sola vez
+    public static class LineaFactura {
+        private final Long idPedido;
+        private final Long idProducto;
+        private final String productoReferencia;
+        private final String productoNombre;
+        private final Integer cantidad;
+        private final BigDecimal precio;
+        private final BigDecimal subtotal;
+
+        // Usado por la consulta con expresión constructora de DetallePedidoRepository.findLineasFacturaByPedidoIdIn
+        public LineaFactura(Long idPedido, Long idProducto, String productoReferencia, String productoNombre,
+                            Integer cantidad, BigDecimal precio) {
+            this.idPedido = idPedido;
+            this.idProducto = idProducto;
+            this.productoReferencia = productoReferencia == null ? "" : productoReferencia;
+            this.productoNombre = productoNombre == null ? "" : productoNombre;
+            this.cantidad = cantidad;
+            this.precio = precio;
+            this.subtotal = precio == null || cantidad == null ? BigDecimal.ZERO : precio.multiply(BigDecimal.valueOf(cantidad));
+        }
+
+        public Long getIdPedido() { return idPedido; }
+
+        public Long getIdProducto() { return idProducto; }
+
+        public String getProductoReferencia() { return productoReferencia; }
+
+        public String getProductoNombre() { return productoNombre; }
+
+        public Integer getCantidad() { return cantidad; }
+
+        public BigDecimal getPrecio() { return precio; }
+
+        public BigDecimal getSubtotal() { return subtotal; }
+    }
+}
@@ -0,0 +1,42 @@
+package es.unex.cum.mdai.motoresbits.service.dto;
+
+import es.unex.cum.mdai.motoresbits.data.model.enums.EstadoPedido;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+// Filtros del listado de pedidos de administración. Cualquiera puede ser null (= sin filtrar por ese campo).
+public class FiltroPedidos {
+
+    public static final FiltroPedidos SIN_FILTROS = new FiltroPedidos(null, null, null, null, null);
+
+    private final EstadoPedido estado;
+    private final LocalDate desde;
+    private final LocalDate hasta;
+    private final String email;
+    private final BigDecimal totalMinimo;
+
+    public FiltroPedidos(EstadoPedido estado, LocalDate desde, LocalDate hasta, String email, BigDecimal totalMinimo) {
+        this.estado = estado;
+        this.desde = desde;
+        this.hasta = hasta;
+        // Mismo criterio que el alta de usuarios: los emails se guardan en minúsculas y sin espacios
+        this.email = email == null || email.isBlank() ? null : email.trim().toLowerCase();
+        this.totalMinimo = totalMinimo;
+    }
+
+    public EstadoPedido getEstado() { return estado; }
+
+    // Fechas incluidas en el rango
+    public LocalDate getDesde() { return desde; }
+
+    public LocalDate getHasta() { return hasta; }
+
+    public String getEmail() { return email; }
+
+    public BigDecimal getTotalMinimo() { return totalMinimo; }
+
+    public boolean isVacio() {
+        return estado == null && desde == null && hasta == null && email == null && totalMinimo == null;
+    }
+}
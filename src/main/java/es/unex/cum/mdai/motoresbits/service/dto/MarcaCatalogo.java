@@ -0,0 +1,24 @@
+package es.unex.cum.mdai.motoresbits.service.dto;
+
+// Marcas de cambio del catálogo en un instante dado, para validar respuestas HTTP en caché (ETag / Last-Modified).
+public class MarcaCatalogo {
+
+    private final long marca;
+    private final long marcaDetalles;
+    private final long ultimoCambio;
+
+    public MarcaCatalogo(long marca, long marcaDetalles, long ultimoCambio) {
+        this.marca = marca;
+        this.marcaDetalles = marcaDetalles;
+        this.ultimoCambio = ultimoCambio;
+    }
+
+    // Cambia con cualquier alta, baja o modificación visible en los listados o categorías
+    public long getMarca() { return marca; }
+
+    // Cambia solo con lo que afecta a los detalles sin subir la versión del producto (p. ej. renombrar una categoría)
+    public long getMarcaDetalles() { return marcaDetalles; }
+
+    // Epoch millis del último cambio registrado
+    public long getUltimoCambio() { return ultimoCambio; }
+}
@@ -0,0 +1,91 @@
+package es.unex.cum.mdai.motoresbits.service.dto;
+
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import es.unex.cum.mdai.motoresbits.data.model.enums.EstadoPedido;
+import es.unex.cum.mdai.motoresbits.util.PdfGenerator;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+// Cifras del panel de administración, calculadas con consultas de agregación (sin cargar entidades), más los
+// contadores en memoria de la generación de facturas PDF y de las cachés del catálogo.
+public class MetricasPanel {
+
+    private final long numCategorias;
+    private final long numProductos;
+    private final Map<EstadoPedido, Long> pedidosPorEstado;
+    private final long numPedidos;
+    private final BigDecimal ingresosHoy;
+    private final long productosStockBajo;
+    private final int umbralStockBajo;
+    private final PdfGenerator.Estadisticas facturasPdf;
+    private final Map<String, CacheStats> cachesCatalogo;
+    private final LocalDateTime calculadasEn;
+
+    public MetricasPanel(long numCategorias, long numProductos, List<ConteoEstado> conteos, BigDecimal ingresosHoy,
+                         long productosStockBajo, int umbralStockBajo, PdfGenerator.Estadisticas facturasPdf,
+                         Map<String, CacheStats> cachesCatalogo, LocalDateTime calculadasEn) {
+        this.numCategorias = numCategorias;
+        this.numProductos = numProductos;
+        // Todos los estados aparecen, aunque no tengan pedidos, y en el orden del enum
+        Map<EstadoPedido, Long> porEstado = new EnumMap<>(EstadoPedido.class);
+        for (EstadoPedido e : EstadoPedido.values()) porEstado.put(e, 0L);
+        long total = 0;
+        for (ConteoEstado c : conteos) {
+            porEstado.put(c.getEstado(), c.getNum());
+            total += c.getNum();
+        }
+        this.pedidosPorEstado = Collections.unmodifiableMap(porEstado);
+        this.numPedidos = total;
+        this.ingresosHoy = ingresosHoy == null ? BigDecimal.ZERO : ingresosHoy;
+        this.productosStockBajo = productosStockBajo;
+        this.umbralStockBajo = umbralStockBajo;
+        this.facturasPdf = facturasPdf == null ? new PdfGenerator.Estadisticas(0, 0, 0, 0, 0) : facturasPdf;
+        this.cachesCatalogo = cachesCatalogo == null ? Map.of() : Collections.unmodifiableMap(cachesCatalogo);
+        this.calculadasEn = calculadasEn;
+    }
+
+    public long getNumCategorias() { return numCategorias; }
+
+    public long getNumProductos() { return numProductos; }
+
+    public Map<EstadoPedido, Long> getPedidosPorEstado() { return pedidosPorEstado; }
+
+    public long getNumPedidos() { return numPedidos; }
+
+    // Suma de los pedidos cobrados (pagados, enviados o entregados) con fecha de hoy
+    public BigDecimal getIngresosHoy() { return ingresosHoy; }
+
+    // Productos con stock igual o inferior al umbral
+    public long getProductosStockBajo() { return productosStockBajo; }
+
+    public int getUmbralStockBajo() { return umbralStockBajo; }
+
+    // PDF generados (y fallidos) desde el arranque, con su tiempo medio y máximo y los bytes escritos
+    public PdfGenerator.Estadisticas getFacturasPdf() { return facturasPdf; }
+
+    // Aciertos, fallos y expulsiones de cada caché del catálogo desde el arranque, por nombre de caché
+    public Map<String, CacheStats> getCachesCatalogo() { return cachesCatalogo; }
+
+    public LocalDateTime getCalculadasEn() { return calculadasEn; }
+
+    // Fila del recuento de pedidos agrupado por estado
+    public static class ConteoEstado {
+        private final EstadoPedido estado;
+        private final long num;
+
+        // Usado por la consulta con expresión constructora de PedidoRepository.contarPorEstado
+        public ConteoEstado(EstadoPedido estado, Long num) {
+            this.estado = estado;
+            this.num = num == null ? 0 : num;
+        }
+
+        public EstadoPedido getEstado() { return estado; }
+
+        public long getNum() { return num; }
+    }
+}
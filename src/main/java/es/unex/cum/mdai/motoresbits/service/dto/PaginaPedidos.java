@@ -0,0 +1,40 @@
+package es.unex.cum.mdai.motoresbits.service.dto;
+
+import es.unex.cum.mdai.motoresbits.data.model.entity.Pedido;
+
+import java.util.List;
+
+// Página del listado de pedidos de administración (más recientes primero) obtenida por keyset:
+// el cursor es el id del último pedido de la página y la siguiente empieza justo detrás de él (por id, o por fecha
+// e id cuando se filtra por fechas).
+public class PaginaPedidos {
+
+    public static final int TAMANO_POR_DEFECTO = 20;
+    public static final int TAMANO_MAXIMO = 100;
+
+    private final List<Pedido> pedidos;
+    private final Long siguienteCursor;
+    private final int tamano;
+
+    public PaginaPedidos(List<Pedido> pedidos, Long siguienteCursor, int tamano) {
+        this.pedidos = pedidos;
+        this.siguienteCursor = siguienteCursor;
+        this.tamano = tamano;
+    }
+
+    // Ajusta el tamaño pedido por el cliente a los límites permitidos
+    public static int normalizarTamano(Integer tamano) {
+        if (tamano == null || tamano < 1) return TAMANO_POR_DEFECTO;
+        return Math.min(tamano, TAMANO_MAXIMO);
+    }
+
+    // Pedidos con usuario, líneas y productos ya cargados
+    public List<Pedido> getPedidos() { return pedidos; }
+
+    // null cuando no hay más páginas
+    public Long getSiguienteCursor() { return siguienteCursor; }
+
+    public boolean isHayMas() { return siguienteCursor != null; }
+
+    public int getTamano() { return tamano; }
+}
@@ -0,0 +1,42 @@
+package es.unex.cum.mdai.motoresbits.service.dto;
+
+import es.unex.cum.mdai.motoresbits.data.model.entity.Producto;
+
+import java.util.List;
+
+// Página de productos obtenida por keyset: incluye el cursor (último id) para pedir la siguiente.
+public class PaginaProductos {
+
+    public static final int TAMANO_POR_DEFECTO = 24;
+    public static final int TAMANO_MAXIMO = 100;
+
+    private final List<Producto> productos;
+    private final Long siguienteCursor;
+    private final int tamano;
+
+    public PaginaProductos(List<Producto> productos, Long siguienteCursor, int tamano) {
+        this.productos = productos;
+        this.siguienteCursor = siguienteCursor;
+        this.tamano = tamano;
+    }
+
+    // Ajusta el tamaño pedido por el cliente a los límites permitidos
+    public static int normalizarTamano(Integer tamano) {
+        if (tamano == null || tamano < 1) return TAMANO_POR_DEFECTO;
+        return Math.min(tamano, TAMANO_MAXIMO);
+    }
+
+    // Los ids IDENTITY empiezan en 1: sin cursor (o con uno negativo) se empieza por la primera página (cursor 0)
+    public static long normalizarCursor(Long despuesDe) {
+        return despuesDe == null || despuesDe < 0 ? 0L : despuesDe;
+    }
+
+    public List<Producto> getProductos() { return productos; }
+
+    // null cuando no hay más páginas
+    public Long getSiguienteCursor() { return siguienteCursor; }
+
+    public boolean isHayMas() { return siguienteCursor != null; }
+
+    public int getTamano() { return tamano; }
+}
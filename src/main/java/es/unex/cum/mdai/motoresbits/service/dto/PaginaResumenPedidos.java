@@ -0,0 +1,35 @@
+package es.unex.cum.mdai.motoresbits.service.dto;
+
+import java.util.List;
+
+// Página del historial de pedidos de un usuario (más recientes primero) obtenida por keyset.
+public class PaginaResumenPedidos {
+
+    public static final int TAMANO_POR_DEFECTO = 20;
+    public static final int TAMANO_MAXIMO = 100;
+
+    private final List<ResumenPedido> pedidos;
+    private final Long siguienteCursor;
+    private final int tamano;
+
+    public PaginaResumenPedidos(List<ResumenPedido> pedidos, Long siguienteCursor, int tamano) {
+        this.pedidos = pedidos;
+        this.siguienteCursor = siguienteCursor;
+        this.tamano = tamano;
+    }
+
+    // Ajusta el tamaño pedido por el cliente a los límites permitidos
+    public static int normalizarTamano(Integer tamano) {
+        if (tamano == null || tamano < 1) return TAMANO_POR_DEFECTO;
+        return Math.min(tamano, TAMANO_MAXIMO);
+    }
+
+    public List<ResumenPedido> getPedidos() { return pedidos; }
+
+    // null cuando no hay más páginas
+    public Long getSiguienteCursor() { return siguienteCursor; }
+
+    public boolean isHayMas() { return siguienteCursor != null; }
+
+    public int getTamano() { return tamano; }
+}
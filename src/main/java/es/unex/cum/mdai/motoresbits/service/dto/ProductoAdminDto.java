@@ -13,6 +13,22 @@ public class ProductoAdminDto {
     private String imagen;
     private String imagenUrl;
 
+    public ProductoAdminDto() {
+    }
+
+    // Usado por las consultas con expresión constructora de ProductoRepository
+    public ProductoAdminDto(Long id, String nombre, String referencia, BigDecimal precio, Integer stock,
+                            String nombreCategoria, String imagen, String imagenUrl) {
+        this.id = id;
+        this.nombre = nombre;
+        this.referencia = referencia;
+        this.precio = precio;
+        this.stock = stock;
+        this.nombreCategoria = nombreCategoria;
+        this.imagen = imagen;
+        this.imagenUrl = imagenUrl;
+    }
+
     public Long getId() { return id; }
     public void setId(Long id) { this.id = id; }
 
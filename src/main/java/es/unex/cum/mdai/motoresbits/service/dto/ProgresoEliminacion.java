@@ -0,0 +1,50 @@
+package es.unex.cum.mdai.motoresbits.service.dto;
+
+// Progreso del borrado de una categoría (síncrono o por lotes en segundo plano).
+public class ProgresoEliminacion {
+
+    public enum Estado { EN_CURSO, COMPLETADA, ERROR }
+
+    private final Long idCategoria;
+    private final long total;
+    private volatile long eliminados;
+    private volatile Estado estado = Estado.EN_CURSO;
+    private volatile String mensaje;
+
+    public ProgresoEliminacion(Long idCategoria, long total) {
+        this.idCategoria = idCategoria;
+        this.total = total;
+    }
+
+    // Solo lo actualiza el hilo que ejecuta el borrado
+    public void avanzar(long n) {
+        eliminados += n;
+    }
+
+    public void completar() {
+        eliminados = total;
+        estado = Estado.COMPLETADA;
+    }
+
+    public void fallar(String mensaje) {
+        this.mensaje = mensaje;
+        estado = Estado.ERROR;
+    }
+
+    public Long getIdCategoria() { return idCategoria; }
+
+    public long getTotal() { return total; }
+
+    public long getEliminados() { return eliminados; }
+
+    public Estado getEstado() { return estado; }
+
+    public String getMensaje() { return mensaje; }
+
+    public boolean isTerminada() { return estado != Estado.EN_CURSO; }
+
+    public int getPorcentaje() {
+        if (total <= 0) return estado == Estado.COMPLETADA ? 100 : 0;
+        return (int) Math.min(100, eliminados * 100 / total);
+    }
+}
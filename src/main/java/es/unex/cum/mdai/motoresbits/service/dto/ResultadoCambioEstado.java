@@ -0,0 +1,62 @@
+package es.unex.cum.mdai.motoresbits.service.dto;
+
+import es.unex.cum.mdai.motoresbits.data.model.enums.EstadoPedido;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+// Resultado de un cambio de estado en lote: qué pedidos han pasado al estado destino y por qué no el resto.
+public class ResultadoCambioEstado {
+
+    private final EstadoPedido estadoDestino;
+    private final List<ResultadoPedido> resultados = new ArrayList<>();
+    private int aplicados;
+
+    public ResultadoCambioEstado(EstadoPedido estadoDestino) {
+        this.estadoDestino = estadoDestino;
+    }
+
+    public void aplicado(Long idPedido, EstadoPedido estadoAnterior) {
+        aplicados++;
+        resultados.add(new ResultadoPedido(idPedido, estadoAnterior, true, null));
+    }
+
+    public void fallido(Long idPedido, EstadoPedido estadoAnterior, String mensaje) {
+        resultados.add(new ResultadoPedido(idPedido, estadoAnterior, false, mensaje));
+    }
+
+    public EstadoPedido getEstadoDestino() { return estadoDestino; }
+
+    // En orden de id de pedido
+    public List<ResultadoPedido> getResultados() { return Collections.unmodifiableList(resultados); }
+
+    public int getAplicados() { return aplicados; }
+
+    public int getFallidos() { return resultados.size() - aplicados; }
+
+    // Resultado de un pedido concreto del lote
+    public static class ResultadoPedido {
+        private final Long idPedido;
+        private final EstadoPedido estadoAnterior;
+        private final boolean aplicado;
+        private final String mensaje;
+
+        public ResultadoPedido(Long idPedido, EstadoPedido estadoAnterior, boolean aplicado, String mensaje) {
+            this.idPedido = idPedido;
+            this.estadoAnterior = estadoAnterior;
+            this.aplicado = aplicado;
+            this.mensaje = mensaje;
+        }
+
+        public Long getIdPedido() { return idPedido; }
+
+        // null si el pedido no existe
+        public EstadoPedido getEstadoAnterior() { return estadoAnterior; }
+
+        public boolean isAplicado() { return aplicado; }
+
+        // Motivo del fallo (null si se ha aplicado)
+        public String getMensaje() { return mensaje; }
+    }
+}
@@ -0,0 +1,61 @@
+package es.unex.cum.mdai.motoresbits.service.dto;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+// Resultado de una importación masiva de productos: contadores y errores por fila.
+public class ResultadoImportacion {
+
+    // Máximo de errores que se conservan con detalle (el resto solo se cuentan)
+    public static final int MAX_ERRORES_DETALLADOS = 1000;
+
+    private long filasLeidas;
+    private long importadas;
+    private long conErrores;
+    private final List<ErrorFila> errores = new ArrayList<>();
+
+    public void filaLeida() {
+        filasLeidas++;
+    }
+
+    public void importadas(int n) {
+        importadas += n;
+    }
+
+    public void error(long linea, String referencia, String mensaje) {
+        conErrores++;
+        if (errores.size() < MAX_ERRORES_DETALLADOS) {
+            errores.add(new ErrorFila(linea, referencia, mensaje));
+        }
+    }
+
+    public long getFilasLeidas() { return filasLeidas; }
+
+    public long getImportadas() { return importadas; }
+
+    public long getConErrores() { return conErrores; }
+
+    public List<ErrorFila> getErrores() { return Collections.unmodifiableList(errores); }
+
+    public boolean isErroresTruncados() { return conErrores > errores.size(); }
+
+    // Error de una fila concreta del fichero
+    public static class ErrorFila {
+        private final long linea;
+        private final String referencia;
+        private final String mensaje;
+
+        public ErrorFila(long linea, String referencia, String mensaje) {
+            this.linea = linea;
+            this.referencia = referencia;
+            this.mensaje = mensaje;
+        }
+
+        public long getLinea() { return linea; }
+
+        public String getReferencia() { return referencia; }
+
+        public String getMensaje() { return mensaje; }
+    }
+}
@@ -0,0 +1,35 @@
+package es.unex.cum.mdai.motoresbits.service.dto;
+
+import es.unex.cum.mdai.motoresbits.data.model.enums.EstadoPedido;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+// Fila del historial de pedidos de un usuario: cabecera y número de líneas, sin entidades ni colecciones perezosas.
+public class ResumenPedido {
+
+    private final Long id;
+    private final LocalDate fechaPedido;
+    private final EstadoPedido estado;
+    private final BigDecimal total;
+    private final long numLineas;
+
+    // Usado por la consulta con expresión constructora de PedidoRepository.findResumenPorUsuario
+    public ResumenPedido(Long id, LocalDate fechaPedido, EstadoPedido estado, BigDecimal total, Long numLineas) {
+        this.id = id;
+        this.fechaPedido = fechaPedido;
+        this.estado = estado;
+        this.total = total;
+        this.numLineas = numLineas == null ? 0 : numLineas;
+    }
+
+    public Long getId() { return id; }
+
+    public LocalDate getFechaPedido() { return fechaPedido; }
+
+    public EstadoPedido getEstado() { return estado; }
+
+    public BigDecimal getTotal() { return total; }
+
+    public long getNumLineas() { return numLineas; }
+}
@@ -0,0 +1,25 @@
+package es.unex.cum.mdai.motoresbits.service.dto;
+
+// Sugerencia de búsqueda (typeahead) servida directamente desde el índice en memoria.
+public class SugerenciaProducto {
+
+    private final Long id;
+    private final String nombre;
+    private final String referencia;
+    private final String categoria;
+
+    public SugerenciaProducto(Long id, String nombre, String referencia, String categoria) {
+        this.id = id;
+        this.nombre = nombre;
+        this.referencia = referencia;
+        this.categoria = categoria;
+    }
+
+    public Long getId() { return id; }
+
+    public String getNombre() { return nombre; }
+
+    public String getReferencia() { return referencia; }
+
+    public String getCategoria() { return categoria; }
+}
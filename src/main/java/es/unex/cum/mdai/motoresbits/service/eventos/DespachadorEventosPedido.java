@@ -0,0 +1,153 @@
+package es.unex.cum.mdai.motoresbits.service.eventos;
+
+import es.unex.cum.mdai.motoresbits.data.model.entity.EventoPedido;
+import es.unex.cum.mdai.motoresbits.data.model.enums.EstadoEventoPedido;
+import es.unex.cum.mdai.motoresbits.data.repository.EventoPedidoRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+// Despachador de la bandeja de salida de pedidos (EVENTOS_PEDIDO): toma un lote de eventos pendientes, los entrega
+// a los manejadores registrados (cada evento en su hilo virtual) y marca los entregados con un único UPDATE.
+// Si un manejador falla o no termina a tiempo, el evento se reprograma con espera creciente y, agotados los
+// intentos, queda FALLIDO.
+// Como ReservasStock, pensado para una sola instancia de la aplicación.
+@Component
+public class DespachadorEventosPedido {
+
+    private static final Logger logger = LoggerFactory.getLogger(DespachadorEventosPedido.class);
+
+    private static final int MAX_LONGITUD_ERROR = 500;
+
+    private final EventoPedidoRepository eventoPedidoRepository;
+    private final List<ManejadorEventoPedido> manejadores;
+
+    // Hilos virtuales: el trabajo de los manejadores suele ser E/S (ficheros, correo, HTTP) y no ocupa hilos de plataforma
+    private final ExecutorService ejecutor = Executors.newVirtualThreadPerTaskExecutor();
+
+    /*
+     * Eventos por lote, intentos antes de darlo por FALLIDO, espera base entre reintentos (se duplica en cada uno)
+     * y tiempo máximo de entrega de un lote. Pueden ajustarse en application.properties con:
+     *   app.eventos.pedidos.lote=100
+     *   app.eventos.pedidos.max-intentos=5
+     *   app.eventos.pedidos.reintento=PT10S
+     *   app.eventos.pedidos.espera-maxima=PT1M
+     */
+    @Value("${app.eventos.pedidos.lote:100}")
+    private int tamanoLote = 100;
+
+    @Value("${app.eventos.pedidos.max-intentos:5}")
+    private int maxIntentos = 5;
+
+    @Value("${app.eventos.pedidos.reintento:PT10S}")
+    private Duration reintento = Duration.ofSeconds(10);
+
+    @Value("${app.eventos.pedidos.espera-maxima:PT1M}")
+    private Duration esperaMaxima = Duration.ofMinutes(1);
+
+    public DespachadorEventosPedido(EventoPedidoRepository eventoPedidoRepository,
+                                    List<ManejadorEventoPedido> manejadores) {
+        this.eventoPedidoRepository = eventoPedidoRepository;
+        this.manejadores = List.copyOf(manejadores);
+    }
+
+    // Procesa un lote y devuelve los eventos entregados. synchronized: dos sondeos nunca se solapan.
+    // La consulta solo devuelve el evento pendiente más antiguo de cada pedido, así que los de un mismo
+    // pedido se entregan en orden y los de pedidos distintos en paralelo.
+    public synchronized int despachar() {
+        List<EventoPedido> lote = eventoPedidoRepository.findPendientes(LocalDateTime.now(), Limit.of(tamanoLote));
+        if (lote.isEmpty()) return 0;
+
+        // Resultado de cada evento (true = entregado). El primero que lo anota decide: la tarea al terminar o
+        // este hilo si la tarea no ha terminado a tiempo, así ningún evento cuenta dos veces
+        Map<Long, Boolean> resultados = new ConcurrentHashMap<>();
+        List<Callable<Void>> tareas = lote.stream()
+                .map(evento -> (Callable<Void>) () -> {
+                    entregar(evento, resultados);
+                    return null;
+                })
+                .toList();
+        boolean interrumpido = false;
+        try {
+            ejecutor.invokeAll(tareas, esperaMaxima.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException ex) {
+            // Parada de la aplicación: lo que quede sin terminar sigue PENDIENTE, sin gastar un intento
+            Thread.currentThread().interrupt();
+            interrumpido = true;
+        }
+
+        if (!interrumpido) {
+            // Tareas canceladas por invokeAll o manejadores interrumpidos: cuentan como intento fallido. Si no,
+            // un manejador que se cuelga se reintentaría para siempre y bloquearía los siguientes eventos del pedido
+            for (EventoPedido evento : lote) {
+                if (resultados.putIfAbsent(evento.getId(), Boolean.FALSE) == null) {
+                    registrarFallo(evento, new TimeoutException("sin terminar en " + esperaMaxima.toMillis() + " ms"));
+                }
+            }
+        }
+
+        List<Long> entregados = resultados.entrySet().stream()
+                .filter(Map.Entry::getValue)
+                .map(Map.Entry::getKey)
+                .toList();
+        if (!entregados.isEmpty()) {
+            eventoPedidoRepository.marcarProcesados(entregados, LocalDateTime.now());
+        }
+        return entregados.size();
+    }
+
+    @PreDestroy
+    public void detener() {
+        ejecutor.shutdownNow();
+    }
+
+    // -------- helpers --------
+
+    private void entregar(EventoPedido evento, Map<Long, Boolean> resultados) {
+        try {
+            for (ManejadorEventoPedido manejador : manejadores) {
+                manejador.manejar(evento);
+            }
+            resultados.putIfAbsent(evento.getId(), Boolean.TRUE);
+        } catch (InterruptedException ex) {
+            // Sin anotar: el fallo lo registra despachar (con el hilo interrumpido no se accede a la BD)
+            Thread.currentThread().interrupt();
+        } catch (Exception ex) {
+            if (resultados.putIfAbsent(evento.getId(), Boolean.FALSE) == null) {
+                registrarFallo(evento, ex);
+            }
+        }
+    }
+
+    private void registrarFallo(EventoPedido evento, Exception ex) {
+        int intentos = evento.getIntentos() + 1;
+        String error = ex.getClass().getSimpleName() + ": " + ex.getMessage();
+        if (error.length() > MAX_LONGITUD_ERROR) error = error.substring(0, MAX_LONGITUD_ERROR);
+
+        if (intentos >= maxIntentos) {
+            logger.error("Evento {} del pedido {} descartado tras {} intentos: {}",
+                    evento.getId(), evento.getIdPedido(), intentos, error);
+            eventoPedidoRepository.marcarFallo(evento.getId(), EstadoEventoPedido.FALLIDO, intentos,
+                    evento.getProximoIntento(), error);
+        } else {
+            LocalDateTime proximo = LocalDateTime.now().plus(reintento.multipliedBy(1L << (intentos - 1)));
+            logger.warn("Evento {} del pedido {} falló (intento {}), se reintentará a las {}: {}",
+                    evento.getId(), evento.getIdPedido(), intentos, proximo, error);
+            eventoPedidoRepository.marcarFallo(evento.getId(), EstadoEventoPedido.PENDIENTE, intentos, proximo, error);
+        }
+    }
+}
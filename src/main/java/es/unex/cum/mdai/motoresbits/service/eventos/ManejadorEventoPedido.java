@@ -0,0 +1,11 @@
+package es.unex.cum.mdai.motoresbits.service.eventos;
+
+import es.unex.cum.mdai.motoresbits.data.model.entity.EventoPedido;
+
+// Trabajo posterior a un cambio de estado de un pedido (facturación, avisos de stock, analítica...).
+// Basta con declararlo como bean: DespachadorEventosPedido lo invoca fuera de la petición, en un hilo virtual.
+// Si algún manejador lanza una excepción el evento se reintenta entero, así que deben ser idempotentes.
+public interface ManejadorEventoPedido {
+
+    void manejar(EventoPedido evento) throws Exception;
+}
@@ -0,0 +1,19 @@
+package es.unex.cum.mdai.motoresbits.service.eventos;
+
+import es.unex.cum.mdai.motoresbits.data.model.entity.EventoPedido;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+// Manejador básico: deja constancia en el log de cada cambio de estado entregado (trazas para analítica)
+@Component
+public class RegistroEventosPedido implements ManejadorEventoPedido {
+
+    private static final Logger logger = LoggerFactory.getLogger(RegistroEventosPedido.class);
+
+    @Override
+    public void manejar(EventoPedido evento) {
+        logger.info("Pedido {} (usuario {}): {} -> {}", evento.getIdPedido(), evento.getIdUsuario(),
+                evento.getEstadoAnterior() == null ? "nuevo" : evento.getEstadoAnterior(), evento.getEstadoNuevo());
+    }
+}
@@ -0,0 +1,18 @@
+package es.unex.cum.mdai.motoresbits.service.exception;
+
+import java.time.Duration;
+
+// La cola de generación de facturas PDF está llena: hay que volver a intentarlo pasado un rato
+public class GeneracionFacturasSaturadaException extends RuntimeException {
+
+    private final Duration reintentarTras;
+
+    public GeneracionFacturasSaturadaException(Duration reintentarTras) {
+        super("Hay demasiadas facturas generándose ahora mismo; inténtelo de nuevo en unos segundos");
+        this.reintentarTras = reintentarTras;
+    }
+
+    public Duration getReintentarTras() {
+        return reintentarTras;
+    }
+}
@@ -1,8 +1,28 @@
 package es.unex.cum.mdai.motoresbits.service.exception;
 
+import java.util.List;
+import java.util.stream.Collectors;
+
 public class StockInsuficienteException extends RuntimeException {
+
+    // Línea sin stock suficiente: producto, unidades pedidas y unidades disponibles en ese momento
+    public record LineaSinStock(Long idProducto, int solicitado, int disponible) {}
+
+    private final List<LineaSinStock> lineas;
+
     public StockInsuficienteException(Long idProducto, int solicitado, int disponible) {
-        super("Stock insuficiente para producto " + idProducto + ": solicitado=" + solicitado + ", disponible=" + disponible);
+        this(List.of(new LineaSinStock(idProducto, solicitado, disponible)));
     }
-}
 
+    public StockInsuficienteException(List<LineaSinStock> lineas) {
+        super("Stock insuficiente para " + lineas.stream()
+                .map(l -> "producto " + l.idProducto() + ": solicitado=" + l.solicitado() + ", disponible=" + l.disponible())
+                .collect(Collectors.joining("; ")));
+        this.lineas = List.copyOf(lineas);
+    }
+
+    // Todas las líneas que no se han podido servir (al menos una)
+    public List<LineaSinStock> getLineas() {
+        return lineas;
+    }
+}
@@ -0,0 +1,59 @@
+package es.unex.cum.mdai.motoresbits.service.impl;
+
+import es.unex.cum.mdai.motoresbits.data.model.entity.Producto;
+import es.unex.cum.mdai.motoresbits.data.repository.ProductoRepository;
+import es.unex.cum.mdai.motoresbits.service.BusquedaService;
+import es.unex.cum.mdai.motoresbits.service.dto.SugerenciaProducto;
+import es.unex.cum.mdai.motoresbits.service.search.IndiceProductos;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+// Implementación de la búsqueda: resuelve en el índice en memoria y solo va a BD por clave primaria.
+@Service
+@Transactional(readOnly = true)
+public class BusquedaServiceImpl implements BusquedaService {
+
+    // Por debajo de esta longitud un prefijo casa con demasiados términos para ser útil como sugerencia
+    private static final int LONGITUD_MINIMA_SUGERENCIA = 2;
+    private static final int LIMITE_MAXIMO = 50;
+
+    private final IndiceProductos indiceProductos;
+    private final ProductoRepository productoRepository;
+
+    public BusquedaServiceImpl(IndiceProductos indiceProductos, ProductoRepository productoRepository) {
+        this.indiceProductos = indiceProductos;
+        this.productoRepository = productoRepository;
+    }
+
+    @Override
+    public List<SugerenciaProducto> sugerencias(String consulta, int limite) {
+        if (consulta == null || consulta.trim().length() < LONGITUD_MINIMA_SUGERENCIA) {
+            return List.of();
+        }
+        return indiceProductos.buscar(consulta, Math.min(limite, LIMITE_MAXIMO)).stream()
+                .map(d -> new SugerenciaProducto(d.id(), d.nombre(), d.referencia(), d.nombreCategoria()))
+                .toList();
+    }
+
+    @Override
+    public List<Producto> buscar(String consulta, int limite) {
+        List<IndiceProductos.Documento> encontrados = indiceProductos.buscar(consulta, Math.min(limite, LIMITE_MAXIMO));
+        if (encontrados.isEmpty()) return List.of();
+
+        List<Long> ids = encontrados.stream().map(IndiceProductos.Documento::id).toList();
+        Map<Long, Producto> porId = productoRepository.findAllById(ids).stream()
+                .collect(Collectors.toMap(Producto::getId, Function.identity()));
+
+        // Se conserva el orden del índice; si un producto ya no existe se descarta
+        return ids.stream()
+                .map(porId::get)
+                .filter(Objects::nonNull)
+                .toList();
+    }
+}
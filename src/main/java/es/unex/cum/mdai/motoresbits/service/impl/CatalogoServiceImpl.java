@@ -7,38 +7,62 @@ import es.unex.cum.mdai.motoresbits.data.repository.DetallePedidoRepository;
 import es.unex.cum.mdai.motoresbits.data.repository.ProductoRepository;
 import es.unex.cum.mdai.motoresbits.data.repository.ResenaRepository;
 import es.unex.cum.mdai.motoresbits.service.CatalogoService;
+import es.unex.cum.mdai.motoresbits.service.cache.CatalogoCache;
+import es.unex.cum.mdai.motoresbits.service.cache.ReferenciasProductos;
+import es.unex.cum.mdai.motoresbits.service.dto.DetalleProducto;
+import es.unex.cum.mdai.motoresbits.service.dto.MarcaCatalogo;
+import es.unex.cum.mdai.motoresbits.service.dto.PaginaProductos;
 import es.unex.cum.mdai.motoresbits.service.dto.ProductoAdminDto;
 import es.unex.cum.mdai.motoresbits.service.exception.CategoriaNoEncontradaException;
+import es.unex.cum.mdai.motoresbits.service.search.IndiceProductos;
 import es.unex.cum.mdai.motoresbits.service.exception.DatosProductoInvalidosException;
 import es.unex.cum.mdai.motoresbits.service.exception.ProductoNoEncontradoException;
 import es.unex.cum.mdai.motoresbits.service.exception.ReferenciaProductoDuplicadaException;
 
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
-import java.net.URI;
 import java.util.List;
+import java.util.Optional;
 
 @Service
 @Transactional
 public class CatalogoServiceImpl implements CatalogoService {
 
+    // Parte final de la clave de una página: cursor y tamaño ya normalizados, para que "/catalogo" y
+    // "?tamano=24" (o un cursor negativo y ninguno) compartan entrada en lugar de cachear la misma página dos veces
+    private static final String CLAVE_CURSOR_Y_TAMANO =
+            "T(es.unex.cum.mdai.motoresbits.service.dto.PaginaProductos).normalizarCursor(#despuesDe) + ':' + "
+                    + "T(es.unex.cum.mdai.motoresbits.service.dto.PaginaProductos).normalizarTamano(#tamano)";
+
     private final CategoriaRepository categoriaRepository;
     private final ProductoRepository productoRepository;
     private final DetallePedidoRepository detallePedidoRepository;
     private final ResenaRepository resenaRepository;
+    private final CatalogoCache catalogoCache;
+    private final IndiceProductos indiceProductos;
+    private final ReferenciasProductos referenciasProductos;
 
     public CatalogoServiceImpl(
             CategoriaRepository categoriaRepository,
             ProductoRepository productoRepository,
             DetallePedidoRepository detallePedidoRepository,
-            ResenaRepository resenaRepository
+            ResenaRepository resenaRepository,
+            CatalogoCache catalogoCache,
+            IndiceProductos indiceProductos,
+            ReferenciasProductos referenciasProductos
     ) {
         this.categoriaRepository = categoriaRepository;
         this.productoRepository = productoRepository;
         this.detallePedidoRepository = detallePedidoRepository;
         this.resenaRepository = resenaRepository;
+        this.catalogoCache = catalogoCache;
+        this.indiceProductos = indiceProductos;
+        this.referenciasProductos = referenciasProductos;
     }
 
     // ------------------ CATEGORÍAS ------------------
@@ -54,6 +78,7 @@ public class CatalogoServiceImpl implements CatalogoService {
         Categoria c = new Categoria();
         c.setNombre(nombre);
         c.setDescripcion(descripcion);
+        catalogoCache.evictCategorias();
         return categoriaRepository.save(c);
     }
 
@@ -68,6 +93,9 @@ public class CatalogoServiceImpl implements CatalogoService {
         }
         c.setNombre(nombre);
         c.setDescripcion(descripcion);
+        catalogoCache.evictCategorias();
+        catalogoCache.evictDetalles();
+        indiceProductos.renombrarCategoria(id, nombre);
         return categoriaRepository.save(c);
     }
 
@@ -94,52 +122,29 @@ public class CatalogoServiceImpl implements CatalogoService {
 
     @Override
     @Transactional(readOnly = true)
+    @Cacheable(cacheNames = CatalogoCache.CATEGORIAS, key = "'" + CatalogoCache.CLAVE_TODAS + "'")
     public List<Categoria> listarCategorias() {
         return categoriaRepository.findAll();
     }
 
     @Override
     public void eliminarCategoria(Long id) {
-        Categoria categoria = obtenerCategoria(id);
-        List<Producto> productosDeLaCategoria = productoRepository.findByCategoriaId(id);
-
-        for (Producto p : productosDeLaCategoria) {
-            eliminarProducto(p.getId());
-        }
-
-        categoriaRepository.delete(categoria);
-    }
-
-    // Helper: clamp stock entre 0 y 100
-    private Integer clampStock(Integer stock) {
-        if (stock == null) return 0;
-        if (stock < 0) return 0;
-        if (stock > 100) return 100;
-        return stock;
-    }
-
-    // Helper: normaliza y valida URL (si viene vacía -> null)
-    private String normalizarYValidarImagenUrl(String imagenUrl) {
-        if (imagenUrl == null) return null;
-
-        String trimmed = imagenUrl.trim();
-        if (trimmed.isEmpty()) return null;
-
-        if (trimmed.length() > 1000) {
-            throw new DatosProductoInvalidosException("La URL de imagen es demasiado larga");
-        }
-
-        try {
-            URI uri = URI.create(trimmed);
-            String scheme = uri.getScheme();
-            if (scheme == null || (!scheme.equalsIgnoreCase("http") && !scheme.equalsIgnoreCase("https"))) {
-                throw new DatosProductoInvalidosException("La URL de imagen debe empezar por http:// o https://");
-            }
-        } catch (IllegalArgumentException ex) {
-            throw new DatosProductoInvalidosException("La URL de imagen no es válida");
-        }
-
-        return trimmed;
+        obtenerCategoria(id);
+
+        // Borrado por conjuntos: un número fijo de sentencias sea cual sea el tamaño de la categoría
+        // (antes eran tres DELETE por producto dentro de la misma transacción).
+        List<Long> idsProductos = productoRepository.findIdsByCategoriaId(id);
+        detallePedidoRepository.deleteByCategoriaId(id);
+        resenaRepository.deleteByCategoriaId(id);
+        productoRepository.deleteByCategoriaId(id);
+        // Sin pasar por la entidad: su cascada sobre "productos" volvería a recorrerlos uno a uno
+        categoriaRepository.deleteAllByIdInBatch(List.of(id));
+
+        referenciasProductos.eliminarIds(idsProductos);
+        catalogoCache.evictCategorias();
+        catalogoCache.evictProductos();
+        catalogoCache.evictProductosDeCategoria(id);
+        indiceProductos.eliminarCategoria(id);
     }
 
     // ------------------ PRODUCTOS ------------------
@@ -148,23 +153,13 @@ public class CatalogoServiceImpl implements CatalogoService {
     public Producto crearProducto(Long idCategoria, String nombre, String referencia,
                                   BigDecimal precio, Integer stock, String imagenUrl) {
 
-        if (productoRepository.existsByReferencia(referencia)) {
+        if (productoRepository.existsByReferenciaNormalizada(Producto.normalizarReferencia(referencia))) {
             throw new ReferenciaProductoDuplicadaException(referencia);
         }
 
-        if (nombre == null || nombre.isEmpty() || nombre.length() > 30) {
-            throw new DatosProductoInvalidosException("El nombre debe tener entre 1 y 30 caracteres");
-        }
-        if (referencia == null || referencia.isBlank() || referencia.length() > 15) {
-            throw new DatosProductoInvalidosException("La referencia es obligatoria y debe tener como máximo 15 caracteres");
-        }
-        if (precio == null || precio.compareTo(BigDecimal.ZERO) <= 0) {
-            throw new DatosProductoInvalidosException("El precio debe ser mayor que 0");
-        }
-        BigDecimal limite = new BigDecimal("1000000000");
-        if (precio.compareTo(limite) >= 0) {
-            throw new DatosProductoInvalidosException("El precio entero no puede tener más de 9 dígitos");
-        }
+        ReglasProducto.validarNombre(nombre);
+        ReglasProducto.validarReferencia(referencia);
+        ReglasProducto.validarPrecio(precio);
 
         Categoria categoria = obtenerCategoria(idCategoria);
 
@@ -173,11 +168,16 @@ public class CatalogoServiceImpl implements CatalogoService {
         p.setNombre(nombre);
         p.setReferencia(referencia);
         p.setPrecio(precio);
-        p.setStock(clampStock(stock));
+        p.setStock(ReglasProducto.clampStock(stock));
 
-        p.setImagenUrl(normalizarYValidarImagenUrl(imagenUrl));
+        p.setImagenUrl(ReglasProducto.normalizarYValidarImagenUrl(imagenUrl));
 
-        return productoRepository.save(p);
+        catalogoCache.evictProductos();
+        catalogoCache.evictProductosDeCategoria(idCategoria);
+        Producto guardado = productoRepository.save(p);
+        indiceProductos.indexar(guardado);
+        referenciasProductos.registrar(guardado.getReferenciaNormalizada(), guardado.getId());
+        return guardado;
     }
 
     @Override
@@ -187,25 +187,25 @@ public class CatalogoServiceImpl implements CatalogoService {
         Producto p = obtenerProducto(id);
         Categoria cat = obtenerCategoria(idCategoria);
 
-        if (nombre == null || nombre.isEmpty() || nombre.length() > 30) {
-            throw new DatosProductoInvalidosException("El nombre debe tener entre 1 y 30 caracteres");
-        }
-        if (precio == null || precio.compareTo(BigDecimal.ZERO) <= 0) {
-            throw new DatosProductoInvalidosException("El precio debe ser mayor que 0");
-        }
-        BigDecimal limite = new BigDecimal("1000000000");
-        if (precio.compareTo(limite) >= 0) {
-            throw new DatosProductoInvalidosException("El precio entero no puede tener más de 9 dígitos");
-        }
+        ReglasProducto.validarNombre(nombre);
+        ReglasProducto.validarPrecio(precio);
+
+        Long idCategoriaAnterior = p.getCategoria() != null ? p.getCategoria().getId() : null;
 
         p.setNombre(nombre);
         p.setPrecio(precio);
-        p.setStock(clampStock(stock));
+        p.setStock(ReglasProducto.clampStock(stock));
         p.setCategoria(cat);
 
-        p.setImagenUrl(normalizarYValidarImagenUrl(imagenUrl));
+        p.setImagenUrl(ReglasProducto.normalizarYValidarImagenUrl(imagenUrl));
 
-        return productoRepository.save(p);
+        // Si el producto cambia de categoría hay que invalidar el listado de origen y el de destino
+        catalogoCache.evictProductos();
+        catalogoCache.evictProductosDeCategoria(idCategoriaAnterior);
+        catalogoCache.evictProductosDeCategoria(idCategoria);
+        Producto guardado = productoRepository.save(p);
+        indiceProductos.indexar(guardado);
+        return guardado;
     }
 
     @Override
@@ -217,21 +217,93 @@ public class CatalogoServiceImpl implements CatalogoService {
 
     @Override
     @Transactional(readOnly = true)
+    public DetalleProducto obtenerDetalleProducto(Long id) {
+        Integer version = productoRepository.findVersionById(id)
+                .orElseThrow(() -> new ProductoNoEncontradoException(id));
+        return detalle(id, version);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public DetalleProducto obtenerDetalleProductoPorReferencia(String referencia) {
+        Producto p = obtenerProductoPorReferencia(referencia);
+        return detalle(p.getId(), p.getVersion());
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public MarcaCatalogo obtenerMarcaCatalogo() {
+        return new MarcaCatalogo(catalogoCache.getMarca(), catalogoCache.getMarcaDetalles(), catalogoCache.getUltimoCambio());
+    }
+
+    // Acierto: solo ha costado leer la versión. Fallo: cabecera con agregado + página de reseñas (dos consultas).
+    private DetalleProducto detalle(Long id, Integer version) {
+        return catalogoCache.detalle(id, version, () -> {
+            DetalleProducto d = productoRepository.findDetalleById(id)
+                    .orElseThrow(() -> new ProductoNoEncontradoException(id));
+            if (d.getNumResenas() > 0) {
+                d.setResenas(resenaRepository.findDetalleByProductoId(id, Limit.of(DetalleProducto.RESENAS_POR_PAGINA)));
+            }
+            return d;
+        });
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    @Cacheable(cacheNames = CatalogoCache.PRODUCTOS, key = "'" + CatalogoCache.CLAVE_TODOS + "'")
     public List<Producto> listarProductos() {
         return productoRepository.findAll();
     }
 
     @Override
     @Transactional(readOnly = true)
+    @Cacheable(cacheNames = CatalogoCache.PRODUCTOS_POR_CATEGORIA, key = "#idCategoria")
     public List<Producto> listarPorCategoria(Long idCategoria) {
         return productoRepository.findByCategoriaId(idCategoria);
     }
 
+    @Override
+    @Transactional(readOnly = true)
+    @Cacheable(cacheNames = CatalogoCache.PAGINAS,
+            key = "'" + CatalogoCache.PREFIJO_PAGINAS_TODOS + "' + " + CLAVE_CURSOR_Y_TAMANO)
+    public PaginaProductos listarProductosPagina(Long despuesDe, Integer tamano) {
+        int n = PaginaProductos.normalizarTamano(tamano);
+        // Se pide un elemento de más para saber si existe página siguiente sin hacer un COUNT
+        List<Producto> filas = productoRepository.findPaginaDespuesDe(PaginaProductos.normalizarCursor(despuesDe), Limit.of(n + 1));
+        return construirPagina(filas, n);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    @Cacheable(cacheNames = CatalogoCache.PAGINAS,
+            key = "'" + CatalogoCache.PREFIJO_PAGINAS_CATEGORIA + "' + #idCategoria + ':' + " + CLAVE_CURSOR_Y_TAMANO)
+    public PaginaProductos listarPorCategoriaPagina(Long idCategoria, Long despuesDe, Integer tamano) {
+        int n = PaginaProductos.normalizarTamano(tamano);
+        List<Producto> filas = productoRepository.findPaginaPorCategoriaDespuesDe(
+                idCategoria, PaginaProductos.normalizarCursor(despuesDe), Limit.of(n + 1));
+        return construirPagina(filas, n);
+    }
+
+    private PaginaProductos construirPagina(List<Producto> filas, int tamano) {
+        if (filas.size() <= tamano) {
+            return new PaginaProductos(filas, null, tamano);
+        }
+        List<Producto> pagina = List.copyOf(filas.subList(0, tamano));
+        return new PaginaProductos(pagina, pagina.get(tamano - 1).getId(), tamano);
+    }
+
     @Override
     public void eliminarProducto(Long id) {
+        productoRepository.findById(id).ifPresent(p -> {
+            catalogoCache.evictProductosDeCategoria(p.getCategoria() != null ? p.getCategoria().getId() : null);
+            referenciasProductos.eliminar(p.getReferenciaNormalizada());
+        });
+        catalogoCache.evictProductos();
+
         detallePedidoRepository.deleteByProducto_Id(id);
         resenaRepository.deleteByProductoId(id);
         productoRepository.deleteById(id);
+        indiceProductos.eliminar(id);
     }
 
     @Override
@@ -242,9 +314,19 @@ public class CatalogoServiceImpl implements CatalogoService {
         }
 
         String limpia = referencia.trim();
+        String clave = Producto.normalizarReferencia(limpia);
+
+        // Acierto en memoria: solo queda el acceso por clave primaria
+        Optional<Producto> porId = referenciasProductos.buscarId(clave).flatMap(productoRepository::findById);
+        if (porId.isPresent() && clave.equals(porId.get().getReferenciaNormalizada())) {
+            return porId.get();
+        }
 
-        return productoRepository.findByReferenciaIgnoreCase(limpia)
+        // Fallo (producto creado por otra vía o entrada obsoleta): consulta por el índice de la referencia normalizada
+        Producto p = productoRepository.findByReferenciaNormalizada(clave)
                 .orElseThrow(() -> new ProductoNoEncontradoException("No existe el producto con referencia=" + limpia));
+        referenciasProductos.registrar(clave, p.getId());
+        return p;
     }
 
     // ------------------ LISTADOS ADMIN DTO ------------------
@@ -252,48 +334,12 @@ public class CatalogoServiceImpl implements CatalogoService {
     @Override
     @Transactional(readOnly = true)
     public List<ProductoAdminDto> listarProductosConCategoria() {
-        var productos = productoRepository.findAll();
-        var result = new java.util.ArrayList<ProductoAdminDto>();
-
-        for (var p : productos) {
-            var dto = new ProductoAdminDto();
-            dto.setId(p.getId()); // si tu entidad usa getIdProducto(), cámbialo aquí
-            dto.setNombre(p.getNombre());
-            dto.setReferencia(p.getReferencia());
-            dto.setPrecio(p.getPrecio());
-            dto.setStock(p.getStock());
-            dto.setNombreCategoria(p.getCategoria() != null ? p.getCategoria().getNombre() : "");
-
-            dto.setImagen(p.getImagen());
-
-            dto.setImagenUrl(p.getImagenUrl());
-
-            result.add(dto);
-        }
-        return result;
+        return productoRepository.findAllAdminDto();
     }
 
     @Override
     @Transactional(readOnly = true)
     public List<ProductoAdminDto> listarPorCategoriaConCategoria(Long idCategoria) {
-        var productos = productoRepository.findByCategoriaId(idCategoria);
-        var result = new java.util.ArrayList<ProductoAdminDto>();
-
-        for (var p : productos) {
-            var dto = new ProductoAdminDto();
-            dto.setId(p.getId()); // si tu entidad usa getIdProducto(), cámbialo aquí
-            dto.setNombre(p.getNombre());
-            dto.setReferencia(p.getReferencia());
-            dto.setPrecio(p.getPrecio());
-            dto.setStock(p.getStock());
-            dto.setNombreCategoria(p.getCategoria() != null ? p.getCategoria().getNombre() : "");
-
-            dto.setImagen(p.getImagen());
-
-            dto.setImagenUrl(p.getImagenUrl());
-
-            result.add(dto);
-        }
-        return result;
+        return productoRepository.findAdminDtoByCategoriaId(idCategoria);
     }
 }
@@ -0,0 +1,155 @@
+package es.unex.cum.mdai.motoresbits.service.impl;
+
+import es.unex.cum.mdai.motoresbits.data.repository.DetallePedidoRepository;
+import es.unex.cum.mdai.motoresbits.data.repository.ProductoRepository;
+import es.unex.cum.mdai.motoresbits.data.repository.ResenaRepository;
+import es.unex.cum.mdai.motoresbits.service.CatalogoService;
+import es.unex.cum.mdai.motoresbits.service.EliminacionCategoriasService;
+import es.unex.cum.mdai.motoresbits.service.cache.CatalogoCache;
+import es.unex.cum.mdai.motoresbits.service.cache.ReferenciasProductos;
+import es.unex.cum.mdai.motoresbits.service.dto.ProgresoEliminacion;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Sin @Transactional a nivel de clase: el borrado por lotes abre una transacción corta por lote
+// para no mantener bloqueadas durante minutos las filas de una categoría grande.
+@Service
+public class EliminacionCategoriasServiceImpl implements EliminacionCategoriasService {
+
+    private static final Logger logger = LoggerFactory.getLogger(EliminacionCategoriasServiceImpl.class);
+
+    private final CatalogoService catalogoService;
+    private final ProductoRepository productoRepository;
+    private final DetallePedidoRepository detallePedidoRepository;
+    private final ResenaRepository resenaRepository;
+    private final CatalogoCache catalogoCache;
+    private final ReferenciasProductos referenciasProductos;
+    private final TransactionTemplate transaccion;
+
+    // Un único hilo: los borrados grandes se encolan en vez de competir entre sí por los mismos índices
+    private final ExecutorService ejecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "eliminacion-categorias");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final Map<Long, ProgresoEliminacion> progresos = new ConcurrentHashMap<>();
+
+    /*
+     * Productos a partir de los cuales el borrado pasa a segundo plano y tamaño de cada lote.
+     * Pueden ajustarse en application.properties con:
+     *   app.catalogo.eliminacion.umbral=2000
+     *   app.catalogo.eliminacion.lote=500
+     */
+    @Value("${app.catalogo.eliminacion.umbral:2000}")
+    private long umbral = 2000;
+
+    @Value("${app.catalogo.eliminacion.lote:500}")
+    private int tamanoLote = 500;
+
+    public EliminacionCategoriasServiceImpl(
+            CatalogoService catalogoService,
+            ProductoRepository productoRepository,
+            DetallePedidoRepository detallePedidoRepository,
+            ResenaRepository resenaRepository,
+            CatalogoCache catalogoCache,
+            ReferenciasProductos referenciasProductos,
+            PlatformTransactionManager transactionManager
+    ) {
+        this.catalogoService = catalogoService;
+        this.productoRepository = productoRepository;
+        this.detallePedidoRepository = detallePedidoRepository;
+        this.resenaRepository = resenaRepository;
+        this.catalogoCache = catalogoCache;
+        this.referenciasProductos = referenciasProductos;
+        this.transaccion = new TransactionTemplate(transactionManager);
+    }
+
+    @Override
+    public ProgresoEliminacion eliminar(Long idCategoria) {
+        catalogoService.obtenerCategoria(idCategoria);
+        long total = productoRepository.countByCategoriaId(idCategoria);
+        if (total > umbral) {
+            return eliminarEnSegundoPlano(idCategoria);
+        }
+
+        catalogoService.eliminarCategoria(idCategoria);
+        ProgresoEliminacion progreso = new ProgresoEliminacion(idCategoria, total);
+        progreso.completar();
+        return progreso;
+    }
+
+    @Override
+    public ProgresoEliminacion eliminarEnSegundoPlano(Long idCategoria) {
+        catalogoService.obtenerCategoria(idCategoria);
+        long total = productoRepository.countByCategoriaId(idCategoria);
+
+        // Si ya hay un borrado en curso de esa categoría se devuelve ese mismo en lugar de lanzar otro
+        ProgresoEliminacion nuevo = new ProgresoEliminacion(idCategoria, total);
+        ProgresoEliminacion progreso = progresos.compute(idCategoria, (id, actual) ->
+                actual != null && !actual.isTerminada() ? actual : nuevo);
+        if (progreso == nuevo) {
+            ejecutor.submit(() -> borrarPorLotes(progreso));
+        }
+        return progreso;
+    }
+
+    @Override
+    public Optional<ProgresoEliminacion> progreso(Long idCategoria) {
+        return Optional.ofNullable(progresos.get(idCategoria));
+    }
+
+    @PreDestroy
+    public void detener() {
+        ejecutor.shutdownNow();
+    }
+
+    // -------- helpers --------
+
+    private void borrarPorLotes(ProgresoEliminacion progreso) {
+        Long idCategoria = progreso.getIdCategoria();
+        try {
+            int borrados;
+            do {
+                borrados = transaccion.execute(status -> borrarLote(idCategoria));
+                progreso.avanzar(borrados);
+            } while (borrados > 0 && !Thread.currentThread().isInterrupted());
+
+            // Lo que quede (productos añadidos mientras tanto) y la propia categoría, por conjuntos
+            catalogoService.eliminarCategoria(idCategoria);
+            progreso.completar();
+            logger.info("Categoría {} eliminada por lotes ({} productos)", idCategoria, progreso.getTotal());
+        } catch (RuntimeException ex) {
+            logger.error("Error eliminando por lotes la categoría {}", idCategoria, ex);
+            progreso.fallar(ex.getMessage());
+        }
+    }
+
+    // Un lote: dependientes y productos de los siguientes N ids de la categoría (orden de PK)
+    private int borrarLote(Long idCategoria) {
+        List<Long> ids = productoRepository.findIdsByCategoriaId(idCategoria, Limit.of(tamanoLote));
+        if (ids.isEmpty()) return 0;
+
+        detallePedidoRepository.deleteByProductoIdIn(ids);
+        resenaRepository.deleteByProductoIdIn(ids);
+        productoRepository.deleteAllByIdInBatch(ids);
+
+        referenciasProductos.eliminarIds(ids);
+        catalogoCache.evictProductos();
+        catalogoCache.evictProductosDeCategoria(idCategoria);
+        return ids.size();
+    }
+}
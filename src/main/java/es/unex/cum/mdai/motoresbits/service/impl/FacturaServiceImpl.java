@@ -0,0 +1,416 @@
+package es.unex.cum.mdai.motoresbits.service.impl;
+
+import es.unex.cum.mdai.motoresbits.data.model.entity.Usuario;
+import es.unex.cum.mdai.motoresbits.data.repository.DetallePedidoRepository;
+import es.unex.cum.mdai.motoresbits.data.repository.PedidoRepository;
+import es.unex.cum.mdai.motoresbits.data.repository.UsuarioRepository;
+import es.unex.cum.mdai.motoresbits.service.FacturaService;
+import es.unex.cum.mdai.motoresbits.service.cache.FacturasPdfCache;
+import es.unex.cum.mdai.motoresbits.service.dto.FacturaPdf;
+import es.unex.cum.mdai.motoresbits.service.dto.FacturaVista;
+import es.unex.cum.mdai.motoresbits.service.dto.FacturaVista.LineaFactura;
+import es.unex.cum.mdai.motoresbits.service.dto.FiltroPedidos;
+import es.unex.cum.mdai.motoresbits.service.dto.PaginaPedidos;
+import es.unex.cum.mdai.motoresbits.service.exception.GeneracionFacturasSaturadaException;
+import es.unex.cum.mdai.motoresbits.service.exception.PedidoNoEncontradoException;
+import es.unex.cum.mdai.motoresbits.util.PdfGenerator;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.thymeleaf.context.Context;
+import org.thymeleaf.spring6.SpringTemplateEngine;
+import org.thymeleaf.templatemode.TemplateMode;
+import org.thymeleaf.templateresolver.ClassLoaderTemplateResolver;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+// Sin @Transactional en la clase: los datos de la factura se leen antes y el render no debe retener una conexión
+@Service
+public class FacturaServiceImpl implements FacturaService {
+
+    private static final String PLANTILLA = "invoice";
+
+    // Veces que se vuelve a pedir a la caché una factura que desaparece antes de poder abrirla
+    private static final int MAX_INTENTOS_ABRIR = 3;
+
+    // Espera de una exportación sin sitio en la cola: empieza corta y se dobla hasta el máximo
+    private static final long ESPERA_INICIAL_MS = 50;
+    private static final long ESPERA_MAXIMA_MS = 1000;
+
+    private final PdfGenerator pdfGenerator;
+    private final FacturasPdfCache facturasPdfCache;
+    private final PedidoRepository pedidoRepository;
+    private final DetallePedidoRepository detallePedidoRepository;
+    private final UsuarioRepository usuarioRepository;
+
+    // Motor propio para la factura: la plantilla se analiza una vez y queda en caché sin caducidad (aunque
+    // spring.thymeleaf.cache esté desactivada para desarrollar las vistas) y las expresiones SpEL se compilan
+    private final SpringTemplateEngine motorFacturas = motorFacturas();
+
+    // Huella de la plantilla: si se cambia el diseño de la factura, las guardadas dejan de valer
+    private final byte[] huellaPlantilla;
+
+    /*
+     * Generación de PDF fuera de los hilos de Tomcat: renders simultáneos, facturas que pueden esperar en cola
+     * y espera que se sugiere al cliente (Retry-After) cuando la cola está llena. En application.properties:
+     *   app.facturas.pdf.concurrencia=2
+     *   app.facturas.pdf.cola=50
+     *   app.facturas.pdf.reintentar-tras=PT5S
+     */
+    @Value("${app.facturas.pdf.concurrencia:2}")
+    private int concurrencia = 2;
+
+    @Value("${app.facturas.pdf.cola:50}")
+    private int tamanoCola = 50;
+
+    @Value("${app.facturas.pdf.reintentar-tras:PT5S}")
+    private Duration reintentarTras = Duration.ofSeconds(5);
+
+    /*
+     * Exportaciones ZIP: facturas que cada una puede tener en marcha (el resto espera a que se escriban en el ZIP),
+     * plazas de la cola que pueden ocupar entre todas (para que no dejen sin sitio a las descargas sueltas) y
+     * tiempo máximo esperando sitio antes de abandonar:
+     *   app.facturas.exportacion.paralelo=4
+     *   app.facturas.exportacion.cupo=10
+     *   app.facturas.exportacion.espera-maxima=PT5M
+     */
+    @Value("${app.facturas.exportacion.paralelo:4}")
+    private int paraleloExportacion = 4;
+
+    @Value("${app.facturas.exportacion.cupo:10}")
+    private int cupoExportacion = 10;
+
+    @Value("${app.facturas.exportacion.espera-maxima:PT5M}")
+    private Duration esperaMaximaExportacion = Duration.ofMinutes(5);
+
+    private ThreadPoolExecutor ejecutor;
+
+    // Facturas de exportaciones en cola o generándose ahora mismo (como mucho cupoExportacion)
+    private Semaphore plazasExportacion;
+
+    public FacturaServiceImpl(PdfGenerator pdfGenerator, FacturasPdfCache facturasPdfCache,
+                              PedidoRepository pedidoRepository, DetallePedidoRepository detallePedidoRepository,
+                              UsuarioRepository usuarioRepository) {
+        this.pdfGenerator = pdfGenerator;
+        this.facturasPdfCache = facturasPdfCache;
+        this.pedidoRepository = pedidoRepository;
+        this.detallePedidoRepository = detallePedidoRepository;
+        this.usuarioRepository = usuarioRepository;
+        this.huellaPlantilla = huellaPlantilla();
+    }
+
+    @PostConstruct
+    public void iniciar() {
+        AtomicInteger numHilo = new AtomicInteger();
+        // Hilos y cola fijos; sin sitio en la cola se rechaza (AbortPolicy) en vez de ejecutar en el hilo de la petición
+        ejecutor = new ThreadPoolExecutor(concurrencia, concurrencia, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(tamanoCola),
+                r -> {
+                    Thread t = new Thread(r, "facturas-pdf-" + numHilo.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        plazasExportacion = new Semaphore(cupoExportacion);
+
+        // La primera factura no paga el análisis de la plantilla ni la resolución de sus expresiones
+        renderizarHtml(facturaDeEjemplo());
+    }
+
+    @PreDestroy
+    public void detener() {
+        ejecutor.shutdownNow();
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public FacturaVista obtenerFactura(Long idPedido) {
+        FacturaVista cabecera = pedidoRepository.findFacturaById(idPedido)
+                .orElseThrow(() -> new PedidoNoEncontradoException(idPedido));
+        return cabecera.conLineas(detallePedidoRepository.findLineasFacturaByPedidoIdIn(List.of(idPedido)));
+    }
+
+    @Override
+    public CompletableFuture<FacturaPdf> obtenerFacturaPdf(FacturaVista factura) {
+        String huella = huella(factura);
+
+        // Acierto: el fichero ya existe, no hace falta pasar por la cola (salvo que se expulse antes de abrirlo)
+        Path guardada = facturasPdfCache.buscar(factura.getIdPedido(), huella);
+        if (guardada != null) {
+            FacturaPdf abierta = abrir(guardada);
+            if (abierta != null) return CompletableFuture.completedFuture(abierta);
+        }
+
+        CompletableFuture<FacturaPdf> resultado = new CompletableFuture<>();
+        try {
+            ejecutor.execute(() -> {
+                // Cancelada mientras esperaba en la cola (exportación abandonada): no se genera
+                if (resultado.isDone()) return;
+                try {
+                    FacturaPdf pdf = generar(factura, huella);
+                    // Nadie la espera ya (petición cancelada): se cierra en vez de dejar el fichero abierto
+                    if (!resultado.complete(pdf)) pdf.close();
+                } catch (Throwable ex) {
+                    resultado.completeExceptionally(ex);
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            throw new GeneracionFacturasSaturadaException(reintentarTras);
+        }
+        return resultado;
+    }
+
+    // Recorre los pedidos por páginas keyset (tres consultas cortas por página: ids, cabeceras y líneas, sin
+    // conexión abierta mientras se escribe al cliente) y mantiene como mucho paraleloExportacion facturas en
+    // marcha: la memoria no depende del número de pedidos. Las facturas van en el orden del listado (más recientes primero).
+    // Todas se generan en el pool: sin sitio la exportación espera (escribiendo mientras las que ya tiene en marcha).
+    @Override
+    public int exportarFacturas(FiltroPedidos filtro, OutputStream salida) throws IOException {
+        ZipOutputStream zip = new ZipOutputStream(salida);
+        // Los PDF ya van comprimidos por dentro: apenas merece la pena gastar CPU en comprimirlos otra vez
+        zip.setLevel(Deflater.BEST_SPEED);
+        FiltroPedidos f = filtro == null ? FiltroPedidos.SIN_FILTROS : filtro;
+
+        // El email se resuelve a id por su índice único, como en el listado de administración
+        Long idUsuario = null;
+        if (f.getEmail() != null) {
+            Optional<Usuario> usuario = usuarioRepository.findByEmail(f.getEmail());
+            if (usuario.isEmpty()) {
+                zip.finish();
+                return 0;
+            }
+            idUsuario = usuario.get().getId();
+        }
+
+        Deque<FacturaEnCurso> enCurso = new ArrayDeque<>();
+        int exportadas = 0;
+        try {
+            Long cursor = Long.MAX_VALUE;
+            List<Long> ids;
+            do {
+                ids = pedidoRepository.findIdsPaginaAntesDe(cursor, f.getEstado(), idUsuario, f.getDesde(),
+                        f.getHasta(), f.getTotalMinimo(), Limit.of(PaginaPedidos.TAMANO_MAXIMO));
+                for (FacturaVista factura : cargarFacturas(ids)) {
+                    if (enCurso.size() >= paraleloExportacion) escribirEnZip(zip, enCurso.removeFirst());
+                    enCurso.addLast(new FacturaEnCurso(factura, facturaParaExportar(factura, zip, enCurso)));
+                    exportadas++;
+                }
+                if (!ids.isEmpty()) cursor = ids.get(ids.size() - 1);
+            } while (ids.size() == PaginaPedidos.TAMANO_MAXIMO);
+
+            while (!enCurso.isEmpty()) escribirEnZip(zip, enCurso.removeFirst());
+        } finally {
+            // Si el cliente corta la descarga no se siguen generando facturas que nadie va a recibir,
+            // y las que ya estaban listas se cierran
+            enCurso.forEach(fc -> {
+                if (!fc.pdf().cancel(true)) fc.pdf().thenAccept(FacturaPdf::close);
+            });
+        }
+        zip.finish();
+        return exportadas;
+    }
+
+    // -------- helpers --------
+
+    private record FacturaEnCurso(FacturaVista factura, CompletableFuture<FacturaPdf> pdf) {}
+
+    // Facturas de una página de ids con dos consultas (cabeceras y líneas), en el orden de "ids"
+    private List<FacturaVista> cargarFacturas(List<Long> ids) {
+        if (ids.isEmpty()) return List.of();
+        Map<Long, FacturaVista> cabeceras = pedidoRepository.findFacturasByIdIn(ids).stream()
+                .collect(Collectors.toMap(FacturaVista::getIdPedido, Function.identity()));
+        // groupingBy conserva el orden de las filas (por producto dentro de cada pedido)
+        Map<Long, List<LineaFactura>> lineas = detallePedidoRepository.findLineasFacturaByPedidoIdIn(ids).stream()
+                .collect(Collectors.groupingBy(LineaFactura::getIdPedido));
+        List<FacturaVista> facturas = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            FacturaVista cabecera = cabeceras.get(id);
+            if (cabecera == null) continue;
+            facturas.add(cabecera.conLineas(lineas.getOrDefault(id, List.of())));
+        }
+        return facturas;
+    }
+
+    // Genera (o reutiliza) el fichero y lo abre. Si otra petición lo expulsa justo entre medias se vuelve a pedir:
+    // una vez abierto ya no importa que la caché lo borre
+    private FacturaPdf generar(FacturaVista factura, String huella) {
+        for (int intento = 1; ; intento++) {
+            Path pdf = facturasPdfCache.obtener(factura.getIdPedido(), huella,
+                    salida -> pdfGenerator.generarPdf(renderizarHtml(factura), salida));
+            FacturaPdf abierta = abrir(pdf);
+            if (abierta != null) return abierta;
+            if (intento == MAX_INTENTOS_ABRIR) {
+                throw new UncheckedIOException(new NoSuchFileException(pdf.toString(), null, "expulsada de la caché antes de abrirla"));
+            }
+        }
+    }
+
+    // null si el fichero ya no existe
+    private static FacturaPdf abrir(Path pdf) {
+        try {
+            FileChannel canal = FileChannel.open(pdf, StandardOpenOption.READ);
+            try {
+                return new FacturaPdf(pdf, canal, canal.size());
+            } catch (IOException ex) {
+                canal.close();
+                throw ex;
+            }
+        } catch (NoSuchFileException ex) {
+            return null;
+        } catch (IOException ex) {
+            throw new UncheckedIOException("No se pudo abrir la factura " + pdf, ex);
+        }
+    }
+
+    // Encola la factura en el pool dentro del cupo de las exportaciones. Sin sitio (cupo agotado o cola llena por
+    // las descargas sueltas) no se genera en el hilo de la exportación: se escribe la más antigua de las que ya
+    // tiene en marcha, que deja su plaza, o si no tiene ninguna se espera cada vez más hasta esperaMaximaExportacion
+    private CompletableFuture<FacturaPdf> facturaParaExportar(FacturaVista factura, ZipOutputStream zip,
+                                                              Deque<FacturaEnCurso> enCurso) throws IOException {
+        long limite = System.nanoTime() + esperaMaximaExportacion.toNanos();
+        long espera = ESPERA_INICIAL_MS;
+        while (true) {
+            CompletableFuture<FacturaPdf> pdf = encolarExportacion(factura);
+            if (pdf != null) return pdf;
+            if (!enCurso.isEmpty()) {
+                escribirEnZip(zip, enCurso.removeFirst());
+                continue;
+            }
+            if (System.nanoTime() - limite > 0) throw new GeneracionFacturasSaturadaException(reintentarTras);
+            try {
+                Thread.sleep(espera);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Exportación interrumpida esperando sitio para generar facturas");
+            }
+            espera = Math.min(espera * 2, ESPERA_MAXIMA_MS);
+        }
+    }
+
+    // null si no hay sitio. La plaza del cupo se devuelve al terminar la factura (al momento si ya estaba en caché)
+    private CompletableFuture<FacturaPdf> encolarExportacion(FacturaVista factura) {
+        if (!plazasExportacion.tryAcquire()) return null;
+        try {
+            CompletableFuture<FacturaPdf> pdf = obtenerFacturaPdf(factura);
+            pdf.whenComplete((p, ex) -> plazasExportacion.release());
+            return pdf;
+        } catch (RuntimeException ex) {
+            plazasExportacion.release();
+            if (ex instanceof GeneracionFacturasSaturadaException) return null;
+            throw ex;
+        }
+    }
+
+    private void escribirEnZip(ZipOutputStream zip, FacturaEnCurso enCurso) throws IOException {
+        FacturaPdf pdf;
+        try {
+            pdf = enCurso.pdf().join();
+        } catch (CompletionException ex) {
+            throw ex.getCause() instanceof RuntimeException re ? re : ex;
+        }
+        // Ya abierta: aunque la caché la expulse mientras tanto (exportación mayor que la caché) se puede copiar
+        try (InputStream contenido = pdf.getContenido()) {
+            zip.putNextEntry(new ZipEntry("factura-pedido-" + enCurso.factura().getIdPedido() + ".pdf"));
+            contenido.transferTo(zip);
+            zip.closeEntry();
+        } finally {
+            pdf.close();
+        }
+    }
+
+    private String renderizarHtml(FacturaVista factura) {
+        Context ctx = new Context();
+        ctx.setVariable("factura", factura);
+        // Una factura normal ocupa unos pocos KB: se evita ir redimensionando el buffer
+        StringWriter html = new StringWriter(4096);
+        motorFacturas.process(PLANTILLA, ctx, html);
+        return html.toString();
+    }
+
+    // SHA-256 de todo lo que se pinta en la factura (y de la plantilla), en un orden fijo.
+    // Tiene que cubrir cada propiedad de FacturaVista que use invoice.html: si falta alguna, se serviría una factura desfasada.
+    private String huella(FacturaVista factura) {
+        StringBuilder sb = new StringBuilder(256)
+                .append(factura.getIdPedido()).append('\u001f')
+                .append(factura.getFechaPedido()).append('\u001f')
+                .append(factura.getTotal()).append('\u001f')
+                .append(factura.getClienteNombre()).append('\u001f')
+                .append(factura.getClienteEmail()).append('\u001f')
+                .append(factura.getClienteDireccion()).append('\u001e');
+        for (LineaFactura l : factura.getLineas()) {
+            sb.append(l.getProductoReferencia()).append('\u001f')
+                    .append(l.getProductoNombre()).append('\u001f')
+                    .append(l.getCantidad()).append('\u001f')
+                    .append(l.getPrecio()).append('\u001e');
+        }
+        MessageDigest sha = sha256();
+        sha.update(huellaPlantilla);
+        byte[] resumen = sha.digest(sb.toString().getBytes(StandardCharsets.UTF_8));
+        // 128 bits bastan para distinguir versiones de la factura de un mismo pedido
+        return HexFormat.of().formatHex(resumen, 0, 16);
+    }
+
+    private static SpringTemplateEngine motorFacturas() {
+        ClassLoaderTemplateResolver resolver = new ClassLoaderTemplateResolver();
+        resolver.setPrefix("templates/");
+        resolver.setSuffix(".html");
+        resolver.setTemplateMode(TemplateMode.HTML);
+        resolver.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        resolver.setCacheable(true);
+        resolver.setCacheTTLMs(null);
+
+        SpringTemplateEngine motor = new SpringTemplateEngine();
+        motor.setTemplateResolver(resolver);
+        motor.setEnableSpringELCompiler(true);
+        return motor;
+    }
+
+    private static FacturaVista facturaDeEjemplo() {
+        return new FacturaVista(0L, LocalDate.now(), BigDecimal.ZERO, null, "", "", "")
+                .conLineas(List.of(new LineaFactura(0L, 0L, "", "", 1, BigDecimal.ZERO)));
+    }
+
+    private static byte[] huellaPlantilla() {
+        try (InputStream is = new ClassPathResource("templates/" + PLANTILLA + ".html").getInputStream()) {
+            return sha256().digest(is.readAllBytes());
+        } catch (IOException ex) {
+            throw new UncheckedIOException("No se encontró la plantilla de factura", ex);
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+}
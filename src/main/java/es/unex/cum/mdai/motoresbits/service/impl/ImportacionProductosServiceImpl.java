@@ -0,0 +1,250 @@
+package es.unex.cum.mdai.motoresbits.service.impl;
+
+import es.unex.cum.mdai.motoresbits.data.model.entity.Categoria;
+import es.unex.cum.mdai.motoresbits.data.model.entity.Producto;
+import es.unex.cum.mdai.motoresbits.data.repository.CategoriaRepository;
+import es.unex.cum.mdai.motoresbits.data.repository.ProductoRepository;
+import es.unex.cum.mdai.motoresbits.service.ImportacionProductosService;
+import es.unex.cum.mdai.motoresbits.service.cache.CatalogoCache;
+import es.unex.cum.mdai.motoresbits.service.cache.ReferenciasProductos;
+import es.unex.cum.mdai.motoresbits.service.dto.ResultadoImportacion;
+import es.unex.cum.mdai.motoresbits.service.exception.DatosProductoInvalidosException;
+import es.unex.cum.mdai.motoresbits.service.search.IndiceProductos;
+import es.unex.cum.mdai.motoresbits.util.LectorCsv;
+import es.unex.cum.mdai.motoresbits.util.Transacciones;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.Types;
+import java.util.*;
+
+@Service
+@Transactional
+public class ImportacionProductosServiceImpl implements ImportacionProductosService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ImportacionProductosServiceImpl.class);
+
+    // Inserción directa por JDBC: con ids IDENTITY Hibernate no puede agrupar los INSERT en lotes
+    private static final String SQL_INSERTAR = """
+            insert into productos (id_categoria, nombre, referencia, referencia_normalizada, precio, stock, imagen_url,
+                                   num_resenas, suma_puntuaciones, version)
+            values (?, ?, ?, ?, ?, ?, ?, 0, 0, 0)
+            """;
+
+    private static final String COL_REFERENCIA = "referencia";
+    private static final String COL_NOMBRE = "nombre";
+    private static final String COL_CATEGORIA = "categoria";
+    private static final String COL_PRECIO = "precio";
+    private static final String COL_STOCK = "stock";
+    private static final String COL_IMAGEN_URL = "imagenurl";
+
+    // Fila ya validada pendiente de insertar en el lote actual
+    private record FilaValida(long linea, Long idCategoria, String nombre, String referencia,
+                              String referenciaNormalizada, BigDecimal precio, int stock, String imagenUrl) {}
+
+    private final ProductoRepository productoRepository;
+    private final CategoriaRepository categoriaRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final CatalogoCache catalogoCache;
+    private final IndiceProductos indiceProductos;
+    private final ReferenciasProductos referenciasProductos;
+
+    /*
+     * Filas por lote JDBC. Puede ajustarse en application.properties con:
+     *   app.importacion.lote=1000
+     */
+    @Value("${app.importacion.lote:500}")
+    private int tamanoLote = 500;
+
+    public ImportacionProductosServiceImpl(
+            ProductoRepository productoRepository,
+            CategoriaRepository categoriaRepository,
+            JdbcTemplate jdbcTemplate,
+            CatalogoCache catalogoCache,
+            IndiceProductos indiceProductos,
+            ReferenciasProductos referenciasProductos
+    ) {
+        this.productoRepository = productoRepository;
+        this.categoriaRepository = categoriaRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.catalogoCache = catalogoCache;
+        this.indiceProductos = indiceProductos;
+        this.referenciasProductos = referenciasProductos;
+    }
+
+    // Todo el fichero va en una transacción: o entran todas las filas válidas o ninguna
+    @Override
+    public ResultadoImportacion importarCsv(InputStream entrada) {
+        ResultadoImportacion resultado = new ResultadoImportacion();
+        Map<String, Long> categoriasPorNombre = cargarCategorias();
+        Set<String> referenciasVistas = new HashSet<>();
+        Set<Long> categoriasAfectadas = new HashSet<>();
+        List<FilaValida> lote = new ArrayList<>(tamanoLote);
+
+        try (LectorCsv csv = new LectorCsv(new InputStreamReader(entrada, StandardCharsets.UTF_8))) {
+            Map<String, Integer> columnas = leerCabecera(csv.siguiente());
+
+            List<String> campos;
+            while ((campos = csv.siguiente()) != null) {
+                resultado.filaLeida();
+                long linea = csv.getLinea();
+                String referencia = campo(campos, columnas, COL_REFERENCIA);
+                try {
+                    FilaValida fila = validarFila(linea, campos, columnas, categoriasPorNombre);
+                    if (!referenciasVistas.add(fila.referenciaNormalizada())) {
+                        resultado.error(linea, referencia, "Referencia repetida en el fichero");
+                        continue;
+                    }
+                    lote.add(fila);
+                    categoriasAfectadas.add(fila.idCategoria());
+                } catch (DatosProductoInvalidosException ex) {
+                    resultado.error(linea, referencia, ex.getMessage());
+                }
+
+                if (lote.size() >= tamanoLote) {
+                    insertarLote(lote, resultado);
+                }
+            }
+            insertarLote(lote, resultado);
+        } catch (IOException ex) {
+            throw new UncheckedIOException("No se pudo leer el fichero de importación", ex);
+        }
+
+        if (resultado.getImportadas() > 0) {
+            catalogoCache.evictProductos();
+            categoriasAfectadas.forEach(catalogoCache::evictProductosDeCategoria);
+            // Los ids los asigna la BD en el INSERT por lotes: índice y mapa de referencias se recargan tras el commit
+            Transacciones.despuesDelCommit(() -> {
+                indiceProductos.reconstruir();
+                referenciasProductos.cargar();
+            });
+        }
+
+        logger.info("Importación de productos: {} filas leídas, {} importadas, {} con errores",
+                resultado.getFilasLeidas(), resultado.getImportadas(), resultado.getConErrores());
+        return resultado;
+    }
+
+    // -------- helpers --------
+
+    // Las categorías se resuelven una sola vez por nombre (sin distinguir mayúsculas)
+    private Map<String, Long> cargarCategorias() {
+        Map<String, Long> porNombre = new HashMap<>();
+        for (Categoria c : categoriaRepository.findAll()) {
+            porNombre.put(c.getNombre().trim().toLowerCase(Locale.ROOT), c.getId());
+        }
+        return porNombre;
+    }
+
+    private Map<String, Integer> leerCabecera(List<String> cabecera) {
+        if (cabecera == null) {
+            throw new DatosProductoInvalidosException("El fichero de importación está vacío");
+        }
+        Map<String, Integer> columnas = new HashMap<>();
+        for (int i = 0; i < cabecera.size(); i++) {
+            columnas.put(cabecera.get(i).toLowerCase(Locale.ROOT).replace("_", ""), i);
+        }
+        for (String obligatoria : List.of(COL_REFERENCIA, COL_NOMBRE, COL_CATEGORIA, COL_PRECIO)) {
+            if (!columnas.containsKey(obligatoria)) {
+                throw new DatosProductoInvalidosException("Falta la columna obligatoria '" + obligatoria + "' en la cabecera");
+            }
+        }
+        return columnas;
+    }
+
+    private String campo(List<String> campos, Map<String, Integer> columnas, String nombre) {
+        Integer i = columnas.get(nombre);
+        if (i == null || i >= campos.size()) return null;
+        String valor = campos.get(i);
+        return valor.isEmpty() ? null : valor;
+    }
+
+    // Mismas reglas que CatalogoService.crearProducto
+    private FilaValida validarFila(long linea, List<String> campos, Map<String, Integer> columnas,
+                                   Map<String, Long> categoriasPorNombre) {
+        String referencia = campo(campos, columnas, COL_REFERENCIA);
+        String nombre = campo(campos, columnas, COL_NOMBRE);
+        ReglasProducto.validarNombre(nombre);
+        ReglasProducto.validarReferencia(referencia);
+
+        BigDecimal precio = parsearPrecio(campo(campos, columnas, COL_PRECIO));
+        ReglasProducto.validarPrecio(precio);
+
+        String nombreCategoria = campo(campos, columnas, COL_CATEGORIA);
+        Long idCategoria = nombreCategoria == null ? null : categoriasPorNombre.get(nombreCategoria.toLowerCase(Locale.ROOT));
+        if (idCategoria == null) {
+            throw new DatosProductoInvalidosException("No existe la categoría '" + nombreCategoria + "'");
+        }
+
+        int stock = ReglasProducto.clampStock(parsearStock(campo(campos, columnas, COL_STOCK)));
+        String imagenUrl = ReglasProducto.normalizarYValidarImagenUrl(campo(campos, columnas, COL_IMAGEN_URL));
+
+        return new FilaValida(linea, idCategoria, nombre, referencia, Producto.normalizarReferencia(referencia),
+                precio, stock, imagenUrl);
+    }
+
+    // Admite "12.50" y también coma decimal ("12,50"), habitual en los CSV separados por ';'
+    private BigDecimal parsearPrecio(String valor) {
+        if (valor == null) return null;
+        String normalizado = valor.indexOf('.') < 0 ? valor.replace(',', '.') : valor;
+        try {
+            return new BigDecimal(normalizado);
+        } catch (NumberFormatException ex) {
+            throw new DatosProductoInvalidosException("El precio '" + valor + "' no es un número válido");
+        }
+    }
+
+    private Integer parsearStock(String valor) {
+        if (valor == null) return null;
+        try {
+            return Integer.valueOf(valor);
+        } catch (NumberFormatException ex) {
+            throw new DatosProductoInvalidosException("El stock '" + valor + "' no es un número entero");
+        }
+    }
+
+    // Descarta las referencias que ya existen en BD (una consulta por lote) e inserta el resto con un batch JDBC
+    private void insertarLote(List<FilaValida> lote, ResultadoImportacion resultado) {
+        if (lote.isEmpty()) return;
+
+        Set<String> existentes = new HashSet<>(productoRepository.findReferenciasNormalizadasExistentes(
+                lote.stream().map(FilaValida::referenciaNormalizada).toList()));
+
+        List<FilaValida> nuevas = new ArrayList<>(lote.size());
+        for (FilaValida f : lote) {
+            if (existentes.contains(f.referenciaNormalizada())) {
+                resultado.error(f.linea(), f.referencia(), "Ya existe un producto con la referencia " + f.referencia());
+            } else {
+                nuevas.add(f);
+            }
+        }
+
+        if (!nuevas.isEmpty()) {
+            jdbcTemplate.batchUpdate(SQL_INSERTAR, nuevas, nuevas.size(), (ps, f) -> {
+                ps.setLong(1, f.idCategoria());
+                ps.setString(2, f.nombre());
+                ps.setString(3, f.referencia());
+                ps.setString(4, f.referenciaNormalizada());
+                ps.setBigDecimal(5, f.precio());
+                ps.setInt(6, f.stock());
+                if (f.imagenUrl() != null) {
+                    ps.setString(7, f.imagenUrl());
+                } else {
+                    ps.setNull(7, Types.VARCHAR);
+                }
+            });
+            resultado.importadas(nuevas.size());
+        }
+        lote.clear();
+    }
+}
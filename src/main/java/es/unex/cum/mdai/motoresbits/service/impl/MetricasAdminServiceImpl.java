@@ -0,0 +1,92 @@
+package es.unex.cum.mdai.motoresbits.service.impl;
+
+import es.unex.cum.mdai.motoresbits.data.model.enums.EstadoPedido;
+import es.unex.cum.mdai.motoresbits.data.repository.CategoriaRepository;
+import es.unex.cum.mdai.motoresbits.data.repository.PedidoRepository;
+import es.unex.cum.mdai.motoresbits.data.repository.ProductoRepository;
+import es.unex.cum.mdai.motoresbits.service.MetricasAdminService;
+import es.unex.cum.mdai.motoresbits.service.cache.CatalogoCache;
+import es.unex.cum.mdai.motoresbits.service.dto.MetricasPanel;
+import es.unex.cum.mdai.motoresbits.util.PdfGenerator;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+
+@Service
+@Transactional(readOnly = true)
+public class MetricasAdminServiceImpl implements MetricasAdminService {
+
+    // Estados cuyo importe ya se ha cobrado al cliente
+    private static final Set<EstadoPedido> ESTADOS_COBRADOS =
+            EnumSet.of(EstadoPedido.PAGADO, EstadoPedido.ENVIADO, EstadoPedido.ENTREGADO);
+
+    private record Instantanea(MetricasPanel metricas, long caducaEnNanos) {}
+
+    private final CategoriaRepository categoriaRepository;
+    private final ProductoRepository productoRepository;
+    private final PedidoRepository pedidoRepository;
+    private final PdfGenerator pdfGenerator;
+    private final CatalogoCache catalogoCache;
+
+    private final AtomicReference<Instantanea> ultima = new AtomicReference<>();
+
+    /*
+     * Stock a partir del cual un producto cuenta como "stock bajo". Puede ajustarse en application.properties con:
+     *   app.admin.stock-bajo=5
+     */
+    @Value("${app.admin.stock-bajo:5}")
+    private int umbralStockBajo = 5;
+
+    /*
+     * Tiempo que se reutilizan las métricas ya calculadas (PT0S = recalcular siempre):
+     *   app.admin.metricas.ttl=PT30S
+     */
+    @Value("${app.admin.metricas.ttl:PT30S}")
+    private Duration ttl = Duration.ofSeconds(30);
+
+    public MetricasAdminServiceImpl(CategoriaRepository categoriaRepository,
+                                    ProductoRepository productoRepository,
+                                    PedidoRepository pedidoRepository,
+                                    PdfGenerator pdfGenerator,
+                                    CatalogoCache catalogoCache) {
+        this.categoriaRepository = categoriaRepository;
+        this.productoRepository = productoRepository;
+        this.pedidoRepository = pedidoRepository;
+        this.pdfGenerator = pdfGenerator;
+        this.catalogoCache = catalogoCache;
+    }
+
+    @Override
+    public MetricasPanel obtenerMetricas() {
+        Instantanea actual = ultima.get();
+        if (actual != null && System.nanoTime() - actual.caducaEnNanos() < 0) {
+            return actual.metricas();
+        }
+        MetricasPanel metricas = calcular();
+        ultima.set(new Instantanea(metricas, System.nanoTime() + ttl.toNanos()));
+        return metricas;
+    }
+
+    // Cinco consultas de agregación, cada una resuelta por la PK o un índice (idx_pedido_estado,
+    // idx_pedido_fecha, idx_producto_stock): el coste no depende de cargar filas en memoria. Las cifras de los PDF
+    // y de las cachés del catálogo son contadores en memoria (PdfGenerator y Caffeine con recordStats).
+    private MetricasPanel calcular() {
+        return new MetricasPanel(
+                categoriaRepository.count(),
+                productoRepository.count(),
+                pedidoRepository.contarPorEstado(),
+                pedidoRepository.sumarTotalPorFechaYEstados(LocalDate.now(), ESTADOS_COBRADOS),
+                productoRepository.countByStockLessThanEqual(umbralStockBajo),
+                umbralStockBajo,
+                pdfGenerator.estadisticas(),
+                catalogoCache.estadisticas(),
+                LocalDateTime.now());
+    }
+}
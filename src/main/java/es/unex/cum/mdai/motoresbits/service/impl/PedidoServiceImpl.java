@@ -1,24 +1,37 @@
 package es.unex.cum.mdai.motoresbits.service.impl;
 
 import es.unex.cum.mdai.motoresbits.data.model.entity.DetallePedido;
+import es.unex.cum.mdai.motoresbits.data.model.entity.EventoPedido;
 import es.unex.cum.mdai.motoresbits.data.model.entity.Pedido;
 import es.unex.cum.mdai.motoresbits.data.model.entity.Producto;
 import es.unex.cum.mdai.motoresbits.data.model.entity.Usuario;
 import es.unex.cum.mdai.motoresbits.data.model.enums.EstadoPedido;
 import es.unex.cum.mdai.motoresbits.data.repository.DetallePedidoRepository;
+import es.unex.cum.mdai.motoresbits.data.repository.EventoPedidoRepository;
 import es.unex.cum.mdai.motoresbits.data.repository.PedidoRepository;
 import es.unex.cum.mdai.motoresbits.data.repository.ProductoRepository;
 import es.unex.cum.mdai.motoresbits.data.repository.UsuarioRepository;
 import es.unex.cum.mdai.motoresbits.service.PedidoService;
+import es.unex.cum.mdai.motoresbits.service.cache.CatalogoCache;
+import es.unex.cum.mdai.motoresbits.service.cache.HistorialPedidosCache;
+import es.unex.cum.mdai.motoresbits.service.dto.FiltroPedidos;
+import es.unex.cum.mdai.motoresbits.service.dto.PaginaPedidos;
+import es.unex.cum.mdai.motoresbits.service.dto.PaginaResumenPedidos;
+import es.unex.cum.mdai.motoresbits.service.dto.ResultadoCambioEstado;
+import es.unex.cum.mdai.motoresbits.service.dto.ResumenPedido;
 import es.unex.cum.mdai.motoresbits.service.exception.*;
-import org.springframework.dao.OptimisticLockingFailureException;
+import es.unex.cum.mdai.motoresbits.service.stock.ReservasStock;
+import es.unex.cum.mdai.motoresbits.util.Transacciones;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
-import java.util.List;
-import java.util.concurrent.TimeUnit;
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
 @Transactional
@@ -28,15 +41,27 @@ public class PedidoServiceImpl implements PedidoService {
     private final UsuarioRepository usuarioRepository;
     private final ProductoRepository productoRepository;
     private final DetallePedidoRepository detallePedidoRepository;
+    private final CatalogoCache catalogoCache;
+    private final ReservasStock reservasStock;
+    private final HistorialPedidosCache historialPedidosCache;
+    private final EventoPedidoRepository eventoPedidoRepository;
 
     public PedidoServiceImpl(PedidoRepository pedidoRepository,
                              UsuarioRepository usuarioRepository,
                              ProductoRepository productoRepository,
-                             DetallePedidoRepository detallePedidoRepository) {
+                             DetallePedidoRepository detallePedidoRepository,
+                             CatalogoCache catalogoCache,
+                             ReservasStock reservasStock,
+                             HistorialPedidosCache historialPedidosCache,
+                             EventoPedidoRepository eventoPedidoRepository) {
         this.pedidoRepository = pedidoRepository;
         this.usuarioRepository = usuarioRepository;
         this.productoRepository = productoRepository;
         this.detallePedidoRepository = detallePedidoRepository;
+        this.catalogoCache = catalogoCache;
+        this.reservasStock = reservasStock;
+        this.historialPedidosCache = historialPedidosCache;
+        this.eventoPedidoRepository = eventoPedidoRepository;
     }
 
     @Override
@@ -50,6 +75,7 @@ public class PedidoServiceImpl implements PedidoService {
         pedido.setEstado(EstadoPedido.CREADO);
         pedido.setTotal(BigDecimal.ZERO);
 
+        historialPedidosCache.evictUsuario(idUsuario);
         return pedidoRepository.save(pedido);
     }
 
@@ -65,14 +91,53 @@ public class PedidoServiceImpl implements PedidoService {
 
     @Override
     @Transactional(readOnly = true)
-    public List<Pedido> listarPedidosUsuario(Long idUsuario) {
-        return pedidoRepository.findByUsuarioIdAndEstadoNot(idUsuario, EstadoPedido.CREADO);
+    public PaginaResumenPedidos listarResumenPedidos(Long idUsuario, Long antesDe, Integer tamano) {
+        int n = PaginaResumenPedidos.normalizarTamano(tamano);
+        boolean primeraPagina = antesDe == null || antesDe <= 0;
+        // Solo se cachea la página que se pide en cada visita al perfil; el resto va siempre a la BD
+        if (primeraPagina && n == PaginaResumenPedidos.TAMANO_POR_DEFECTO) {
+            return historialPedidosCache.primeraPagina(idUsuario, () -> cargarResumenPedidos(idUsuario, null, n));
+        }
+        return cargarResumenPedidos(idUsuario, antesDe, n);
     }
 
     @Override
     @Transactional(readOnly = true)
-    public List<Pedido> listarTodosPedidos() {
-        return pedidoRepository.findAllConUsuarioYLineasYProductos();
+    public long contarPedidosUsuario(Long idUsuario) {
+        return pedidoRepository.countByUsuarioIdAndEstadoNot(idUsuario, EstadoPedido.CREADO);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public PaginaPedidos listarPedidosPagina(FiltroPedidos filtro, Long antesDe, Integer tamano) {
+        int n = PaginaPedidos.normalizarTamano(tamano);
+        FiltroPedidos f = filtro == null ? FiltroPedidos.SIN_FILTROS : filtro;
+
+        // El email se resuelve a id por su índice único; así el filtro usa idx_pedido_usuario_id sin join
+        Long idUsuario = null;
+        if (f.getEmail() != null) {
+            Optional<Usuario> usuario = usuarioRepository.findByEmail(f.getEmail());
+            if (usuario.isEmpty()) return new PaginaPedidos(List.of(), null, n);
+            idUsuario = usuario.get().getId();
+        }
+
+        // Se pide un id de más para saber si existe página siguiente sin hacer un COUNT
+        Long cursor = antesDe == null || antesDe <= 0 ? Long.MAX_VALUE : antesDe;
+        List<Long> ids = pedidoRepository.findIdsPaginaAntesDe(cursor, f.getEstado(), idUsuario,
+                f.getDesde(), f.getHasta(), f.getTotalMinimo(), Limit.of(n + 1));
+
+        Long siguienteCursor = null;
+        if (ids.size() > n) {
+            ids = ids.subList(0, n);
+            siguienteCursor = ids.get(n - 1);
+        }
+        if (ids.isEmpty()) return new PaginaPedidos(List.of(), null, n);
+
+        // La consulta con fetch join no conserva el orden: se recoloca según la página de ids
+        Map<Long, Pedido> porId = pedidoRepository.findConUsuarioYLineasYProductosByIdIn(ids).stream()
+                .collect(Collectors.toMap(Pedido::getId, Function.identity()));
+        List<Pedido> pedidos = ids.stream().map(porId::get).filter(Objects::nonNull).toList();
+        return new PaginaPedidos(pedidos, siguienteCursor, n);
     }
 
     @Override
@@ -93,6 +158,7 @@ public class PedidoServiceImpl implements PedidoService {
         }
 
         recalcularTotal(pedido);
+        invalidarHistorial(pedido);
         return pedidoRepository.save(pedido);
     }
 
@@ -107,6 +173,7 @@ public class PedidoServiceImpl implements PedidoService {
 
         detalle.setCantidad(nuevaCantidad);
         recalcularTotal(pedido);
+        invalidarHistorial(pedido);
 
         return pedidoRepository.save(pedido);
     }
@@ -119,6 +186,7 @@ public class PedidoServiceImpl implements PedidoService {
 
         pedidoActual.removeLinea(detalle);
         recalcularTotal(pedidoActual);
+        invalidarHistorial(pedidoActual);
 
         return pedidoRepository.save(pedidoActual);
     }
@@ -138,121 +206,255 @@ public class PedidoServiceImpl implements PedidoService {
         Long usuarioId = pedido.getUsuario() != null ? pedido.getUsuario().getId() : null;
         if (usuarioId == null) throw new RuntimeException("El pedido no tiene usuario asociado");
 
-        Usuario usuarioDB = usuarioRepository.findById(usuarioId)
-                .orElseThrow(() -> new UsuarioNoEncontradoException(usuarioId));
-
-        BigDecimal saldoActual = usuarioDB.getSaldo() != null ? usuarioDB.getSaldo() : BigDecimal.ZERO;
         // Cobro: entra a PAGADO
         if (actual != EstadoPedido.PAGADO && nuevoEstado == EstadoPedido.PAGADO) {
-            if (saldoActual.compareTo(total) < 0) {
-                throw new SaldoInsuficienteException(saldoActual, total);
-            }
-            usuarioDB.setSaldo(saldoActual.subtract(total));
-            usuarioRepository.save(usuarioDB);
-            usuarioRepository.flush();
+            cobrar(usuarioId, total);
         }
         // Devolver dinero si se cancela desde PAGADO
         if (actual == EstadoPedido.PAGADO && nuevoEstado == EstadoPedido.CANCELADO) {
-            usuarioDB.setSaldo(saldoActual.add(total));
-            usuarioRepository.save(usuarioDB);
-            usuarioRepository.flush();
+            if (usuarioRepository.abonarSaldo(usuarioId, total) == 0) throw new UsuarioNoEncontradoException(usuarioId);
         }
 
         // Reponer stock al cancelar cuando procede
         if (nuevoEstado == EstadoPedido.CANCELADO &&
                 (actual == EstadoPedido.PENDIENTE || actual == EstadoPedido.PAGADO)) {
             if (pedido.getDetalles() != null) {
-                pedido.getDetalles().forEach(d ->
-                        productoRepository.incrementarStock(d.getProducto().getId(), d.getCantidad())
-                );
+                productoRepository.incrementarStockEnLote(cantidadesPorProducto(pedido));
+                invalidarListadosCatalogo(pedido);
             }
         }
 
         pedido.setEstado(nuevoEstado);
         pedido.setTotal(total);
+        historialPedidosCache.evictUsuario(usuarioId);
+        if (actual != nuevoEstado) registrarEvento(idPedido, usuarioId, actual, nuevoEstado);
         return pedidoRepository.save(pedido);
     }
 
+    // El total guardado ya está al día (cada cambio de líneas lo recalcula), así que aquí no se cargan líneas
+    // salvo para reponer stock. Cobros pedido a pedido (cada uno puede fallar por saldo), abonos agrupados
+    // por usuario, una reposición de stock para todo el lote y un único UPDATE del estado.
+    @Override
+    public ResultadoCambioEstado cambiarEstadoEnLote(Collection<Long> idsPedido, EstadoPedido nuevoEstado) {
+        ResultadoCambioEstado resultado = new ResultadoCambioEstado(nuevoEstado);
+        SortedSet<Long> ids = new TreeSet<>();
+        idsPedido.stream().filter(Objects::nonNull).forEach(ids::add);
+        if (ids.isEmpty()) return resultado;
+
+        Map<Long, Pedido> pedidos = pedidoRepository.findParaCambioDeEstado(ids).stream()
+                .collect(Collectors.toMap(Pedido::getId, Function.identity()));
+
+        List<Long> aCambiar = new ArrayList<>();
+        List<EventoPedido> eventos = new ArrayList<>();
+        List<Long> aReponer = new ArrayList<>();
+        Map<Long, BigDecimal> abonosPorUsuario = new HashMap<>();
+        Set<Long> usuariosAfectados = new HashSet<>();
+
+        for (Long id : ids) {
+            Pedido pedido = pedidos.get(id);
+            if (pedido == null) {
+                resultado.fallido(id, null, "No existe el pedido");
+                continue;
+            }
+            EstadoPedido actual = pedido.getEstado();
+            try {
+                validarTransicionEstado(actual, nuevoEstado);
+            } catch (EstadoPedidoInvalidoException ex) {
+                resultado.fallido(id, actual, ex.getMessage());
+                continue;
+            }
+            if (actual == nuevoEstado) {
+                resultado.aplicado(id, actual);
+                continue;
+            }
+
+            Long usuarioId = pedido.getUsuario().getId();
+            BigDecimal total = pedido.getTotal() != null ? pedido.getTotal() : BigDecimal.ZERO;
+
+            if (nuevoEstado == EstadoPedido.PAGADO && usuarioRepository.debitarSaldo(usuarioId, total) == 0) {
+                resultado.fallido(id, actual, "Saldo insuficiente para cobrar " + total + " €");
+                continue;
+            }
+            if (actual == EstadoPedido.PAGADO && nuevoEstado == EstadoPedido.CANCELADO) {
+                abonosPorUsuario.merge(usuarioId, total, BigDecimal::add);
+            }
+            if (nuevoEstado == EstadoPedido.CANCELADO &&
+                    (actual == EstadoPedido.PENDIENTE || actual == EstadoPedido.PAGADO)) {
+                aReponer.add(id);
+            }
+            aCambiar.add(id);
+            eventos.add(new EventoPedido(id, usuarioId, actual, nuevoEstado));
+            usuariosAfectados.add(usuarioId);
+            resultado.aplicado(id, actual);
+        }
+
+        abonosPorUsuario.forEach((usuarioId, importe) -> {
+            if (usuarioRepository.abonarSaldo(usuarioId, importe) == 0) throw new UsuarioNoEncontradoException(usuarioId);
+        });
+
+        if (!aReponer.isEmpty()) {
+            Map<Long, Integer> cantidades = new HashMap<>();
+            for (DetallePedido d : detallePedidoRepository.findByPedido_IdIn(aReponer)) {
+                cantidades.merge(d.getId().getProductoId(), d.getCantidad(), Integer::sum);
+            }
+            if (!cantidades.isEmpty()) {
+                productoRepository.incrementarStockEnLote(cantidades);
+                // Productos de muchas categorías: se invalidan todos los listados de una vez
+                catalogoCache.evictListados();
+            }
+        }
+
+        if (!aCambiar.isEmpty()) {
+            pedidoRepository.actualizarEstado(aCambiar, nuevoEstado);
+            eventoPedidoRepository.saveAll(eventos);
+        }
+        usuariosAfectados.forEach(historialPedidosCache::evictUsuario);
+        return resultado;
+    }
+
 
 
     @Override
     public void eliminarPedido(Long idPedido) {
         Pedido pedido = pedidoRepository.findById(idPedido)
                 .orElseThrow(() -> new PedidoNoEncontradoException(idPedido));
+        invalidarHistorial(pedido);
         pedidoRepository.delete(pedido);
     }
 
     // Confirmar pedido: comprobar stock y saldo, descontar y dejar en estado PAGADO.
+    // Sin reintentos: el descuento es un UPDATE condicional, si no hay stock falla en el acto.
     @Override
     public Pedido confirmarPedido(Long idPedido) {
-        final int MAX_RETRIES = 3;
-        int attempt = 0;
+        Pedido pedido = pedidoRepository.findConLineasYProductos(idPedido)
+                .orElseThrow(() -> new PedidoNoEncontradoException(idPedido));
 
-        while (true) {
-            attempt++;
+        recalcularTotal(pedido);
+        BigDecimal total = pedido.getTotal() != null ? pedido.getTotal() : BigDecimal.ZERO;
 
-            Pedido pedido = pedidoRepository.findConLineasYProductos(idPedido)
-                    .orElseThrow(() -> new PedidoNoEncontradoException(idPedido));
+        Long usuarioId = (pedido.getUsuario() != null) ? pedido.getUsuario().getId() : null;
+        if (usuarioId == null) throw new RuntimeException("El pedido no tiene usuario asociado");
+        historialPedidosCache.evictUsuario(usuarioId);
+        EstadoPedido anterior = pedido.getEstado();
 
-            recalcularTotal(pedido);
-            BigDecimal total = pedido.getTotal() != null ? pedido.getTotal() : BigDecimal.ZERO;
+        if (pedido.getDetalles() == null || pedido.getDetalles().isEmpty()) {
+            cobrar(usuarioId, total);
+            pedido.setEstado(EstadoPedido.PAGADO);
+            pedido.setTotal(total);
+            registrarEvento(idPedido, usuarioId, anterior, EstadoPedido.PAGADO);
+            return pedidoRepository.save(pedido);
+        }
 
-            Long usuarioId = (pedido.getUsuario() != null) ? pedido.getUsuario().getId() : null;
-            if (usuarioId == null) throw new RuntimeException("El pedido no tiene usuario asociado");
+        // validar stock (respetando lo que tienen reservado los carritos)
+        for (DetallePedido d : pedido.getDetalles()) {
+            Producto prod = d.getProducto();
+            int disponible = reservasStock.disponiblePara(null, prod.getId(), prod.getStock() == null ? 0 : prod.getStock());
+            if (disponible < d.getCantidad()) {
+                throw new StockInsuficienteException(prod.getId(), d.getCantidad(), disponible);
+            }
+        }
 
-            Usuario usuario = usuarioRepository.findById(usuarioId)
-                    .orElseThrow(() -> new UsuarioNoEncontradoException(usuarioId));
+        // descontar stock atómico (todas las líneas en un lote)
+        descontarStock(cantidadesPorProducto(pedido));
+        invalidarListadosCatalogo(pedido);
 
-            BigDecimal saldo = usuario.getSaldo() != null ? usuario.getSaldo() : BigDecimal.ZERO;
-            if (saldo.compareTo(total) < 0) throw new SaldoInsuficienteException(saldo, total);
+        // descontar saldo (si no llega, la excepción deshace también el descuento de stock)
+        cobrar(usuarioId, total);
 
-            if (pedido.getDetalles() == null || pedido.getDetalles().isEmpty()) {
-                pedido.setEstado(EstadoPedido.PAGADO);
-                pedido.setTotal(total);
-                pedido.setUsuario(usuario);
-                return pedidoRepository.save(pedido);
-            }
+        // marcar pagado (el contexto se ha limpiado: el pedido se vuelve a asociar al guardar)
+        pedido.setEstado(EstadoPedido.PAGADO);
+        pedido.setTotal(total);
+        registrarEvento(idPedido, usuarioId, anterior, EstadoPedido.PAGADO);
 
-            // validar stock
-            for (DetallePedido d : pedido.getDetalles()) {
-                Producto prod = productoRepository.findById(d.getProducto().getId())
-                        .orElseThrow(() -> new ProductoNoEncontradoException(d.getProducto().getId()));
-                int disponible = prod.getStock() == null ? 0 : prod.getStock();
-                if (disponible < d.getCantidad()) {
-                    throw new StockInsuficienteException(prod.getId(), d.getCantidad(), disponible);
-                }
-            }
+        return pedidoRepository.save(pedido);
+    }
 
-            try {
-                // descontar stock atómico
-                for (DetallePedido d : pedido.getDetalles()) {
-                    int updated = productoRepository.descontarStock(d.getProducto().getId(), d.getCantidad());
-                    if (updated == 0) {
-                        int disponible = productoRepository.findById(d.getProducto().getId())
-                                .map(p -> p.getStock() == null ? 0 : p.getStock())
-                                .orElse(0);
-                        throw new StockInsuficienteException(d.getProducto().getId(), d.getCantidad(), disponible);
-                    }
-                }
+    // Número fijo de viajes a la BD: consulta de productos, bloqueo + lote de descuento de stock, cargo del
+    // saldo y lectura del usuario, e inserciones (pedido + líneas en lote JDBC).
+    // Sin reintentos: ni el descuento de stock ni el cargo pueden dejar valores negativos.
+    @Override
+    public Pedido checkout(Long idUsuario, Map<Long, Integer> cantidades) {
+        return checkout(idUsuario, cantidades, null);
+    }
 
-                // descontar saldo
-                usuario.setSaldo(saldo.subtract(total));
-                usuarioRepository.save(usuario);
-                usuarioRepository.flush();
+    @Override
+    public Pedido checkout(Long idUsuario, Map<Long, Integer> cantidades, String titularReservas) {
+        if (cantidades == null || cantidades.isEmpty()) {
+            throw new IllegalArgumentException("No hay artículos en el carrito");
+        }
+        // Orden ascendente por id: todas las compras bloquean las filas de PRODUCTOS en el mismo orden
+        SortedMap<Long, Integer> lineas = new TreeMap<>();
+        cantidades.forEach((idProducto, cantidad) -> {
+            if (cantidad == null || cantidad <= 0) throw new IllegalArgumentException("La cantidad debe ser mayor que cero");
+            lineas.put(idProducto, cantidad);
+        });
+
+        Map<Long, Producto> productos = productoRepository.findAllById(lineas.keySet()).stream()
+                .collect(Collectors.toMap(Producto::getId, Function.identity()));
+
+        BigDecimal total = BigDecimal.ZERO;
+        for (Map.Entry<Long, Integer> linea : lineas.entrySet()) {
+            Producto p = productos.get(linea.getKey());
+            if (p == null) throw new ProductoNoEncontradoException(linea.getKey());
+            // Lo retenido por otros carritos no se puede comprar: se rechaza en memoria, sin tocar la fila
+            int disponible = reservasStock.disponiblePara(titularReservas, p.getId(), p.getStock() == null ? 0 : p.getStock());
+            if (disponible < linea.getValue()) {
+                throw new StockInsuficienteException(p.getId(), linea.getValue(), disponible);
+            }
+            total = total.add(p.getPrecio().multiply(BigDecimal.valueOf(linea.getValue())));
+        }
 
-                // marcar pagado
-                pedido.setEstado(EstadoPedido.PAGADO);
-                pedido.setTotal(total);
-                pedido.setUsuario(usuario);
+        // Descuento atómico de todas las líneas: si otra compra se ha llevado el stock entre tanto,
+        // la excepción (con todas las líneas que fallan) deshace toda la transacción
+        descontarStock(lineas);
 
-                return pedidoRepository.save(pedido);
+        // Cargo condicional; el usuario se lee después, ya con el saldo resultante
+        cobrar(idUsuario, total);
+        Usuario usuario = usuarioRepository.findById(idUsuario)
+                .orElseThrow(() -> new UsuarioNoEncontradoException(idUsuario));
 
-            } catch (OptimisticLockingFailureException | StockInsuficienteException ex) {
-                if (attempt >= MAX_RETRIES) throw ex;
-                try { TimeUnit.MILLISECONDS.sleep(50L * attempt); }
-                catch (InterruptedException ie) { Thread.currentThread().interrupt(); }
-            }
+        Pedido pedido = new Pedido();
+        pedido.setUsuario(usuario);
+        pedido.setFechaPedido(LocalDate.now());
+        pedido.setEstado(EstadoPedido.PAGADO);
+        pedido.setTotal(total);
+        pedido = pedidoRepository.save(pedido);
+
+        // Con el id del pedido ya asignado, las líneas se insertan juntas al hacer flush (hibernate.jdbc.batch_size)
+        for (Map.Entry<Long, Integer> linea : lineas.entrySet()) {
+            Producto p = productos.get(linea.getKey());
+            pedido.addLinea(productoRepository.getReferenceById(p.getId()), linea.getValue(), p.getPrecio());
         }
+        pedidoRepository.flush();
+
+        invalidarListadosCatalogo(productos.values());
+        historialPedidosCache.evictUsuario(idUsuario);
+        registrarEvento(pedido.getId(), idUsuario, null, EstadoPedido.PAGADO);
+        // Hasta el commit la reserva sigue contando: nadie puede llevarse esas unidades mientras tanto
+        if (titularReservas != null) {
+            Transacciones.despuesDelCommit(() -> reservasStock.liberar(titularReservas, lineas.keySet()));
+        }
+        return pedido;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public int reservarStock(String titularReservas, Long idProducto, int cantidad) {
+        Producto p = productoRepository.findById(idProducto)
+                .orElseThrow(() -> new ProductoNoEncontradoException(idProducto));
+        return reservasStock.reservar(titularReservas, idProducto, cantidad, p.getStock() == null ? 0 : p.getStock());
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public void liberarReservas(String titularReservas, Collection<Long> idsProducto) {
+        reservasStock.liberar(titularReservas, idsProducto);
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public void liberarReservas(String titularReservas) {
+        reservasStock.liberarTodo(titularReservas);
     }
 
     // -------- helpers --------
@@ -262,6 +464,29 @@ public class PedidoServiceImpl implements PedidoService {
                 .orElseThrow(() -> new PedidoNoEncontradoException(idPedido));
     }
 
+    private PaginaResumenPedidos cargarResumenPedidos(Long idUsuario, Long antesDe, int tamano) {
+        Long cursor = antesDe == null || antesDe <= 0 ? Long.MAX_VALUE : antesDe;
+        // Se pide una fila de más para saber si existe página siguiente sin hacer un COUNT
+        List<ResumenPedido> filas = pedidoRepository.findResumenPorUsuario(
+                idUsuario, EstadoPedido.CREADO, cursor, Limit.of(tamano + 1));
+        if (filas.size() <= tamano) {
+            return new PaginaResumenPedidos(filas, null, tamano);
+        }
+        List<ResumenPedido> pagina = List.copyOf(filas.subList(0, tamano));
+        return new PaginaResumenPedidos(pagina, pagina.get(tamano - 1).getId(), tamano);
+    }
+
+    // Cualquier cambio en un pedido (estado, total o líneas) deja obsoleto el historial cacheado de su usuario
+    private void invalidarHistorial(Pedido pedido) {
+        if (pedido.getUsuario() != null) historialPedidosCache.evictUsuario(pedido.getUsuario().getId());
+    }
+
+    // Bandeja de salida: el evento se inserta en la misma transacción que el cambio de estado, así que solo
+    // existe si el cambio se confirma; DespachadorEventosPedido lo entrega después a los manejadores
+    private void registrarEvento(Long idPedido, Long idUsuario, EstadoPedido anterior, EstadoPedido nuevo) {
+        eventoPedidoRepository.save(new EventoPedido(idPedido, idUsuario, anterior, nuevo));
+    }
+
     private DetallePedido buscarDetalleEnPedido(Pedido pedido, Long idProducto) {
         if (pedido.getDetalles() == null) return null;
         return pedido.getDetalles().stream()
@@ -270,6 +495,48 @@ public class PedidoServiceImpl implements PedidoService {
                 .orElse(null);
     }
 
+    // Cargo atómico (UPDATE condicional); si no hay saldo suficiente se informa del saldo actual
+    private void cobrar(Long idUsuario, BigDecimal importe) {
+        if (usuarioRepository.debitarSaldo(idUsuario, importe) == 0) {
+            BigDecimal saldo = usuarioRepository.findSaldoById(idUsuario)
+                    .orElseThrow(() -> new UsuarioNoEncontradoException(idUsuario));
+            throw new SaldoInsuficienteException(saldo, importe);
+        }
+    }
+
+    private Map<Long, Integer> cantidadesPorProducto(Pedido pedido) {
+        Map<Long, Integer> cantidades = new HashMap<>();
+        for (DetallePedido d : pedido.getDetalles()) {
+            cantidades.merge(d.getProducto().getId(), d.getCantidad(), Integer::sum);
+        }
+        return cantidades;
+    }
+
+    // Descuenta todas las líneas o ninguna; si falta stock informa de cada línea afectada
+    private void descontarStock(Map<Long, Integer> cantidades) {
+        Map<Long, Integer> sinStock = productoRepository.descontarStockEnLote(cantidades);
+        if (!sinStock.isEmpty()) {
+            throw new StockInsuficienteException(sinStock.entrySet().stream()
+                    .map(e -> new StockInsuficienteException.LineaSinStock(e.getKey(), cantidades.get(e.getKey()), e.getValue()))
+                    .toList());
+        }
+    }
+
+    // El stock ha cambiado: los listados cacheados de las categorías afectadas dejan de ser válidos
+    private void invalidarListadosCatalogo(Pedido pedido) {
+        invalidarListadosCatalogo(pedido.getDetalles().stream().map(DetallePedido::getProducto).toList());
+    }
+
+    private void invalidarListadosCatalogo(Collection<Producto> productos) {
+        catalogoCache.evictProductos();
+        productos.stream()
+                .map(Producto::getCategoria)
+                .filter(java.util.Objects::nonNull)
+                .map(c -> c.getId())
+                .distinct()
+                .forEach(catalogoCache::evictProductosDeCategoria);
+    }
+
     private void recalcularTotal(Pedido pedido) {
         if (pedido.getDetalles() == null || pedido.getDetalles().isEmpty()) {
             pedido.setTotal(BigDecimal.ZERO);
@@ -0,0 +1,68 @@
+package es.unex.cum.mdai.motoresbits.service.impl;
+
+import es.unex.cum.mdai.motoresbits.service.exception.DatosProductoInvalidosException;
+
+import java.math.BigDecimal;
+import java.net.URI;
+
+// Reglas de validación de productos compartidas por el alta individual y la importación masiva.
+final class ReglasProducto {
+
+    private static final BigDecimal PRECIO_LIMITE = new BigDecimal("1000000000");
+
+    private ReglasProducto() {
+    }
+
+    static void validarNombre(String nombre) {
+        if (nombre == null || nombre.isEmpty() || nombre.length() > 30) {
+            throw new DatosProductoInvalidosException("El nombre debe tener entre 1 y 30 caracteres");
+        }
+    }
+
+    static void validarReferencia(String referencia) {
+        if (referencia == null || referencia.isBlank() || referencia.length() > 15) {
+            throw new DatosProductoInvalidosException("La referencia es obligatoria y debe tener como máximo 15 caracteres");
+        }
+    }
+
+    static void validarPrecio(BigDecimal precio) {
+        if (precio == null || precio.compareTo(BigDecimal.ZERO) <= 0) {
+            throw new DatosProductoInvalidosException("El precio debe ser mayor que 0");
+        }
+        if (precio.compareTo(PRECIO_LIMITE) >= 0) {
+            throw new DatosProductoInvalidosException("El precio entero no puede tener más de 9 dígitos");
+        }
+    }
+
+    // Clamp stock entre 0 y 100
+    static Integer clampStock(Integer stock) {
+        if (stock == null) return 0;
+        if (stock < 0) return 0;
+        if (stock > 100) return 100;
+        return stock;
+    }
+
+    // Normaliza y valida URL (si viene vacía -> null)
+    static String normalizarYValidarImagenUrl(String imagenUrl) {
+        if (imagenUrl == null) return null;
+
+        String trimmed = imagenUrl.trim();
+        if (trimmed.isEmpty()) return null;
+
+        if (trimmed.length() > 1000) {
+            throw new DatosProductoInvalidosException("La URL de imagen es demasiado larga");
+        }
+
+        try {
+            URI uri = URI.create(trimmed);
+            String scheme = uri.getScheme();
+            if (scheme == null || (!scheme.equalsIgnoreCase("http") && !scheme.equalsIgnoreCase("https"))) {
+                throw new DatosProductoInvalidosException("La URL de imagen debe empezar por http:// o https://");
+            }
+        } catch (IllegalArgumentException ex) {
+            throw new DatosProductoInvalidosException("La URL de imagen no es válida");
+        }
+
+        return trimmed;
+    }
+}
@@ -7,6 +7,8 @@ import es.unex.cum.mdai.motoresbits.data.repository.ProductoRepository;
 import es.unex.cum.mdai.motoresbits.data.repository.ResenaRepository;
 import es.unex.cum.mdai.motoresbits.data.repository.UsuarioRepository;
 import es.unex.cum.mdai.motoresbits.service.ResenaService;
+import es.unex.cum.mdai.motoresbits.service.cache.CatalogoCache;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -18,16 +20,22 @@ import java.util.Optional;
 @Transactional
 public class ResenaServiceImpl implements ResenaService {
 
+    // Productos por sentencia de recálculo en la reparación
+    private static final int LOTE_REPARACION = 500;
+
     private final ResenaRepository resenaRepository;
     private final ProductoRepository productoRepository;
     private final UsuarioRepository usuarioRepository;
+    private final CatalogoCache catalogoCache;
 
     public ResenaServiceImpl(ResenaRepository resenaRepository,
                              ProductoRepository productoRepository,
-                             UsuarioRepository usuarioRepository) {
+                             UsuarioRepository usuarioRepository,
+                             CatalogoCache catalogoCache) {
         this.resenaRepository = resenaRepository;
         this.productoRepository = productoRepository;
         this.usuarioRepository = usuarioRepository;
+        this.catalogoCache = catalogoCache;
     }
 
     @Override
@@ -49,7 +57,11 @@ public class ResenaServiceImpl implements ResenaService {
         r.setPuntuacion(puntuacion);
         r.setComentario(comentario);
 
-        return resenaRepository.save(r);
+        Resena guardada = resenaRepository.save(r);
+        // Resumen de valoraciones del producto: +1 reseña, +puntuación (en la misma transacción)
+        productoRepository.ajustarValoraciones(idProducto, 1, puntuacion);
+        evictListados(p);
+        return guardada;
     }
 
     @Override
@@ -57,18 +69,28 @@ public class ResenaServiceImpl implements ResenaService {
         Resena r = resenaRepository.findById(idResena)
                 .orElseThrow(() -> new IllegalArgumentException("Reseña no encontrada"));
 
+        int puntuacionAnterior = r.getPuntuacion();
         if (puntuacion != null) {
             if (puntuacion < 1 || puntuacion > 5) throw new IllegalArgumentException("La puntuación debe estar entre 1 y 5");
             r.setPuntuacion(puntuacion);
         }
         r.setComentario(comentario);
-        return resenaRepository.save(r);
+        Resena guardada = resenaRepository.save(r);
+        // Solo cambia la suma (delta 0 si se edita únicamente el comentario; la versión sube igualmente)
+        productoRepository.ajustarValoraciones(guardada.getProducto().getId(), 0, guardada.getPuntuacion() - puntuacionAnterior);
+        evictListados(guardada.getProducto());
+        return guardada;
     }
 
     @Override
     public void eliminarResena(Long idResena) {
-        if (!resenaRepository.existsById(idResena)) throw new IllegalArgumentException("Reseña no encontrada");
-        resenaRepository.deleteById(idResena);
+        Resena r = resenaRepository.findById(idResena)
+                .orElseThrow(() -> new IllegalArgumentException("Reseña no encontrada"));
+        Producto p = r.getProducto();
+        int puntuacion = r.getPuntuacion();
+        resenaRepository.delete(r);
+        productoRepository.ajustarValoraciones(p.getId(), -1, -puntuacion);
+        evictListados(p);
     }
 
     @Override
@@ -84,8 +106,10 @@ public class ResenaServiceImpl implements ResenaService {
     }
 
     @Override
+    @Transactional(readOnly = true)
     public Optional<Double> mediaPuntuacionPorProducto(Long idProducto) {
-        return resenaRepository.avgPuntuacionByProductoId(idProducto);
+        // Del resumen mantenido en el producto, sin AVG sobre RESENAS
+        return productoRepository.findById(idProducto).map(Producto::getMediaPuntuacion);
     }
 
     @Override
@@ -97,5 +121,32 @@ public class ResenaServiceImpl implements ResenaService {
     @Transactional
     public void eliminarResenasDeProducto(Long idProducto) {
         resenaRepository.deleteByProductoId(idProducto);
+        if (productoRepository.recalcularValoraciones(List.of(idProducto)) > 0) {
+            productoRepository.findById(idProducto).ifPresent(this::evictListados);
+        }
+    }
+
+    @Override
+    public int repararResumenValoraciones() {
+        int reparados = 0;
+        Long despuesDe = 0L;
+        List<Long> ids;
+        do {
+            ids = productoRepository.findIdsDespuesDe(despuesDe, Limit.of(LOTE_REPARACION));
+            if (!ids.isEmpty()) {
+                reparados += productoRepository.recalcularValoraciones(ids);
+                despuesDe = ids.get(ids.size() - 1);
+            }
+        } while (ids.size() == LOTE_REPARACION);
+        if (reparados > 0) {
+            catalogoCache.evictListados();
+        }
+        return reparados;
+    }
+
+    // Las tarjetas de los listados muestran la media y el nº de reseñas: se invalidan los del producto
+    private void evictListados(Producto p) {
+        catalogoCache.evictProductos();
+        catalogoCache.evictProductosDeCategoria(p.getCategoria() != null ? p.getCategoria().getId() : null);
     }
 }
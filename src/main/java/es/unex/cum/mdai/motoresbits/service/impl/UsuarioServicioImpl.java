@@ -3,9 +3,11 @@ package es.unex.cum.mdai.motoresbits.service.impl;
 import es.unex.cum.mdai.motoresbits.data.model.entity.Usuario;
 import es.unex.cum.mdai.motoresbits.data.model.enums.RolUsuario;
 import es.unex.cum.mdai.motoresbits.data.repository.PedidoRepository;
+import es.unex.cum.mdai.motoresbits.data.repository.ProductoRepository;
 import es.unex.cum.mdai.motoresbits.data.repository.ResenaRepository;
 import es.unex.cum.mdai.motoresbits.data.repository.UsuarioRepository;
 import es.unex.cum.mdai.motoresbits.service.UsuarioService;
+import es.unex.cum.mdai.motoresbits.service.cache.CatalogoCache;
 import es.unex.cum.mdai.motoresbits.service.exception.CredencialesInvalidasException;
 import es.unex.cum.mdai.motoresbits.service.exception.EmailYaRegistradoException;
 import es.unex.cum.mdai.motoresbits.service.exception.UsuarioNoEncontradoException;
@@ -24,13 +26,19 @@ public class UsuarioServicioImpl implements UsuarioService {
     private final UsuarioRepository usuarioRepository;
     private final PedidoRepository pedidoRepository;
     private final ResenaRepository resenaRepository;
+    private final ProductoRepository productoRepository;
+    private final CatalogoCache catalogoCache;
 
     public UsuarioServicioImpl(UsuarioRepository usuarioRepository,
                               PedidoRepository pedidoRepository,
-                              ResenaRepository resenaRepository) {
+                              ResenaRepository resenaRepository,
+                              ProductoRepository productoRepository,
+                              CatalogoCache catalogoCache) {
         this.usuarioRepository = usuarioRepository;
         this.pedidoRepository = pedidoRepository;
         this.resenaRepository = resenaRepository;
+        this.productoRepository = productoRepository;
+        this.catalogoCache = catalogoCache;
     }
 
     @Override
@@ -110,6 +118,9 @@ public class UsuarioServicioImpl implements UsuarioService {
             var resenas = resenaRepository.findByUsuarioId(id);
             if (resenas != null && !resenas.isEmpty()) {
                 resenaRepository.deleteAll(resenas);
+                // Los productos reseñados pierden esas reseñas: se recalcula su resumen de valoraciones
+                productoRepository.recalcularValoraciones(resenas.stream().map(r -> r.getProducto().getId()).distinct().toList());
+                catalogoCache.evictListados();
             }
         } catch (Exception ignore) {
             // En algunos contextos resenaRepository puede no estar inyectado aún; fallback a no-op
@@ -138,24 +149,21 @@ public class UsuarioServicioImpl implements UsuarioService {
 
     @Override
     @Transactional
-    public Usuario ajustarSaldo(Long idUsuario, BigDecimal delta) {
+    public BigDecimal ajustarSaldo(Long idUsuario, BigDecimal delta) {
 
         if (delta == null || delta.compareTo(BigDecimal.ZERO) == 0) {
             throw new IllegalArgumentException("La cantidad debe ser distinta de 0");
         }
 
-        Usuario usuario = usuarioRepository.findById(idUsuario)
-                .orElseThrow(() -> new RuntimeException("Usuario no encontrado"));
-
-        BigDecimal saldoActual = usuario.getSaldo() == null ? BigDecimal.ZERO : usuario.getSaldo();
-        BigDecimal nuevoSaldo = saldoActual.add(delta);
-
-        if (nuevoSaldo.compareTo(BigDecimal.ZERO) < 0) {
-            throw new IllegalArgumentException("No se puede dejar el saldo en negativo");
+        // Un UPDATE condicional: recargas del cliente y ajustes del administrador concurrentes no se pisan
+        if (delta.signum() > 0) {
+            return usuarioRepository.abonar(idUsuario, delta)
+                    .orElseThrow(() -> new UsuarioNoEncontradoException(idUsuario));
         }
-
-        usuario.setSaldo(nuevoSaldo);
-        return usuarioRepository.save(usuario);
+        return usuarioRepository.debitar(idUsuario, delta.negate())
+                .orElseThrow(() -> usuarioRepository.existsById(idUsuario)
+                        ? new IllegalArgumentException("No se puede dejar el saldo en negativo")
+                        : new UsuarioNoEncontradoException(idUsuario));
     }
 
 }
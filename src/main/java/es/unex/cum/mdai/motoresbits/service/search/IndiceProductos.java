@@ -0,0 +1,213 @@
+package es.unex.cum.mdai.motoresbits.service.search;
+
+import es.unex.cum.mdai.motoresbits.data.model.entity.Categoria;
+import es.unex.cum.mdai.motoresbits.data.model.entity.Producto;
+import es.unex.cum.mdai.motoresbits.data.repository.ProductoRepository;
+import es.unex.cum.mdai.motoresbits.util.Transacciones;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.text.Normalizer;
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Índice invertido en memoria sobre nombre, referencia y categoría de los productos.
+// Se construye al arrancar y se mantiene con las altas/bajas/ediciones de CatalogoService,
+// de modo que la búsqueda nunca lanza LIKE '%x%' contra PRODUCTOS.
+@Component
+public class IndiceProductos {
+
+    private static final Logger logger = LoggerFactory.getLogger(IndiceProductos.class);
+
+    // Documento indexado: lo justo para responder sugerencias sin ir a BD
+    public record Documento(Long id, String nombre, String referencia, Long idCategoria, String nombreCategoria) {}
+
+    private final ProductoRepository productoRepository;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    // término -> ids de producto (ordenado para resolver prefijos con un subMap)
+    private final NavigableMap<String, Set<Long>> terminos = new TreeMap<>();
+    private final Map<Long, Documento> documentos = new HashMap<>();
+    private final Map<Long, Set<String>> terminosPorProducto = new HashMap<>();
+
+    public IndiceProductos(ProductoRepository productoRepository) {
+        this.productoRepository = productoRepository;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void reconstruir() {
+        List<Producto> productos = productoRepository.findAllConCategoria();
+        lock.writeLock().lock();
+        try {
+            terminos.clear();
+            documentos.clear();
+            terminosPorProducto.clear();
+            for (Producto p : productos) {
+                indexarSinBloqueo(aDocumento(p));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        logger.info("Índice de búsqueda de productos construido: {} productos, {} términos", documentos.size(), terminos.size());
+    }
+
+    // ------------------ MANTENIMIENTO INCREMENTAL ------------------
+    // Los cambios se aplican tras el commit de la transacción en curso (si la hay) para no indexar datos que hagan rollback.
+
+    public void indexar(Producto producto) {
+        Documento doc = aDocumento(producto);
+        Transacciones.despuesDelCommit(() -> {
+            lock.writeLock().lock();
+            try {
+                eliminarSinBloqueo(doc.id());
+                indexarSinBloqueo(doc);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        });
+    }
+
+    public void eliminar(Long idProducto) {
+        Transacciones.despuesDelCommit(() -> {
+            lock.writeLock().lock();
+            try {
+                eliminarSinBloqueo(idProducto);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        });
+    }
+
+    public void renombrarCategoria(Long idCategoria, String nuevoNombre) {
+        Transacciones.despuesDelCommit(() -> {
+            lock.writeLock().lock();
+            try {
+                List<Documento> afectados = documentos.values().stream()
+                        .filter(d -> Objects.equals(d.idCategoria(), idCategoria))
+                        .toList();
+                for (Documento d : afectados) {
+                    eliminarSinBloqueo(d.id());
+                    indexarSinBloqueo(new Documento(d.id(), d.nombre(), d.referencia(), idCategoria, nuevoNombre));
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        });
+    }
+
+    public void eliminarCategoria(Long idCategoria) {
+        Transacciones.despuesDelCommit(() -> {
+            lock.writeLock().lock();
+            try {
+                List<Long> afectados = documentos.values().stream()
+                        .filter(d -> Objects.equals(d.idCategoria(), idCategoria))
+                        .map(Documento::id)
+                        .toList();
+                afectados.forEach(this::eliminarSinBloqueo);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        });
+    }
+
+    // ------------------ CONSULTA ------------------
+
+    // Cada término de la consulta se trata como prefijo; el resultado es la intersección de todos ellos.
+    public List<Documento> buscar(String consulta, int limite) {
+        List<String> tokens = tokenizar(consulta);
+        if (tokens.isEmpty() || limite <= 0) return List.of();
+
+        lock.readLock().lock();
+        try {
+            Set<Long> resultado = null;
+            for (String token : tokens) {
+                Set<Long> coincidencias = new HashSet<>();
+                for (Set<Long> ids : terminos.subMap(token, true, token + Character.MAX_VALUE, false).values()) {
+                    coincidencias.addAll(ids);
+                }
+                if (resultado == null) {
+                    resultado = coincidencias;
+                } else {
+                    resultado.retainAll(coincidencias);
+                }
+                if (resultado.isEmpty()) return List.of();
+            }
+
+            return resultado.stream()
+                    .map(documentos::get)
+                    .sorted(Comparator.comparing(Documento::nombre, String.CASE_INSENSITIVE_ORDER)
+                            .thenComparing(Documento::id))
+                    .limit(limite)
+                    .toList();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int tamano() {
+        lock.readLock().lock();
+        try {
+            return documentos.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Minúsculas, sin tildes ni diacríticos y partido por cualquier carácter no alfanumérico
+    static List<String> tokenizar(String texto) {
+        if (texto == null || texto.isBlank()) return List.of();
+        String normalizado = Normalizer.normalize(texto, Normalizer.Form.NFD)
+                .replaceAll("\\p{M}+", "")
+                .toLowerCase(Locale.ROOT);
+        List<String> tokens = new ArrayList<>();
+        for (String t : normalizado.split("[^\\p{Alnum}]+")) {
+            if (!t.isEmpty()) tokens.add(t);
+        }
+        return tokens;
+    }
+
+    // -------- helpers --------
+
+    private Documento aDocumento(Producto p) {
+        Categoria c = p.getCategoria();
+        return new Documento(
+                p.getId(),
+                p.getNombre(),
+                p.getReferencia(),
+                c != null ? c.getId() : null,
+                c != null ? c.getNombre() : null
+        );
+    }
+
+    private void indexarSinBloqueo(Documento doc) {
+        Set<String> claves = new HashSet<>();
+        claves.addAll(tokenizar(doc.nombre()));
+        List<String> tokensReferencia = tokenizar(doc.referencia());
+        claves.addAll(tokensReferencia);
+        // La referencia también se indexa compacta ("MV8-001" -> "mv8001") para encontrarla sin separadores
+        if (tokensReferencia.size() > 1) claves.add(String.join("", tokensReferencia));
+        claves.addAll(tokenizar(doc.nombreCategoria()));
+
+        documentos.put(doc.id(), doc);
+        terminosPorProducto.put(doc.id(), claves);
+        for (String clave : claves) {
+            terminos.computeIfAbsent(clave, k -> new HashSet<>()).add(doc.id());
+        }
+    }
+
+    private void eliminarSinBloqueo(Long idProducto) {
+        documentos.remove(idProducto);
+        Set<String> claves = terminosPorProducto.remove(idProducto);
+        if (claves == null) return;
+        for (String clave : claves) {
+            Set<Long> ids = terminos.get(clave);
+            if (ids == null) continue;
+            ids.remove(idProducto);
+            if (ids.isEmpty()) terminos.remove(clave);
+        }
+    }
+}
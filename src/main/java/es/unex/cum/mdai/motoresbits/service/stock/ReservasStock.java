@@ -0,0 +1,130 @@
+package es.unex.cum.mdai.motoresbits.service.stock;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Libro de reservas de stock en memoria: los carritos retienen unidades durante un tiempo limitado y la
+// compra las convierte en descuento real (ProductoRepository.descontarStockEnLote). La BD sigue siendo la fuente
+// de verdad: aquí solo se reparte en memoria lo que queda libre, para rechazar pronto a quien no lo tiene
+// en vez de pelearse por las filas de PRODUCTOS. Cada instancia de la aplicación tiene su propio libro.
+@Component
+public class ReservasStock {
+
+    /*
+     * Tiempo que se mantiene una reserva sin que el carrito se toque. Puede cambiarse en application.properties:
+     *   app.stock.reservas.ttl=15m
+     */
+    @Value("${app.stock.reservas.ttl:15m}")
+    private Duration ttl = Duration.ofMinutes(15);
+
+    private record Reserva(int cantidad, long caducaEn) {}
+
+    // Unidades retenidas por producto. Se ajustan con CAS, sin bloqueos entre carritos distintos.
+    // Los contadores no se eliminan nunca (uno por producto reservado alguna vez) para no perder ajustes concurrentes.
+    private final ConcurrentHashMap<Long, AtomicInteger> retenidas = new ConcurrentHashMap<>();
+
+    // Reservas por titular (carrito). Todo cambio de un titular va dentro de compute() sobre su entrada,
+    // así que los de un mismo carrito se serializan y los de carritos distintos no se esperan entre sí.
+    private final ConcurrentHashMap<String, Map<Long, Reserva>> reservas = new ConcurrentHashMap<>();
+
+    // Fija la reserva del titular sobre el producto en "cantidad" (0 = liberarla) y renueva la caducidad de
+    // todas sus reservas. Devuelve las unidades reservadas: menos de las pedidas si el resto está retenido.
+    public int reservar(String titular, Long idProducto, int cantidad, int stock) {
+        int[] concedidas = new int[1];
+        long caducaEn = System.currentTimeMillis() + ttl.toMillis();
+        reservas.compute(titular, (k, propias) -> {
+            Map<Long, Reserva> mapa = propias != null ? propias : new ConcurrentHashMap<>();
+            Reserva actual = mapa.get(idProducto);
+            int objetivo = ajustar(idProducto, actual == null ? 0 : actual.cantidad(), Math.max(0, cantidad), stock);
+            concedidas[0] = objetivo;
+            if (objetivo == 0) {
+                mapa.remove(idProducto);
+            } else {
+                mapa.put(idProducto, new Reserva(objetivo, caducaEn));
+            }
+            mapa.replaceAll((id, r) -> new Reserva(r.cantidad(), caducaEn));
+            return mapa.isEmpty() ? null : mapa;
+        });
+        return concedidas[0];
+    }
+
+    // Unidades que el titular puede comprar: el stock menos lo retenido por otros (lo suyo cuenta como propio).
+    // Con titular null solo cuenta lo que retienen los demás.
+    public int disponiblePara(String titular, Long idProducto, int stock) {
+        AtomicInteger contador = retenidas.get(idProducto);
+        int total = contador == null ? 0 : contador.get();
+        return Math.max(0, stock - (total - propia(titular, idProducto)));
+    }
+
+    public void liberar(String titular, Collection<Long> idsProducto) {
+        if (titular == null) return;
+        reservas.computeIfPresent(titular, (k, propias) -> {
+            for (Long id : idsProducto) {
+                Reserva r = propias.remove(id);
+                if (r != null) retenidas.get(id).addAndGet(-r.cantidad());
+            }
+            return propias.isEmpty() ? null : propias;
+        });
+    }
+
+    public void liberarTodo(String titular) {
+        if (titular == null) return;
+        reservas.computeIfPresent(titular, (k, propias) -> {
+            propias.forEach((id, r) -> retenidas.get(id).addAndGet(-r.cantidad()));
+            return null;
+        });
+    }
+
+    // Libera las reservas caducadas. Devuelve cuántas se han liberado.
+    public int purgarCaducadas() {
+        long ahora = System.currentTimeMillis();
+        int[] liberadas = new int[1];
+        for (String titular : reservas.keySet()) {
+            reservas.computeIfPresent(titular, (k, propias) -> {
+                propias.entrySet().removeIf(e -> {
+                    if (e.getValue().caducaEn() > ahora) return false;
+                    retenidas.get(e.getKey()).addAndGet(-e.getValue().cantidad());
+                    liberadas[0]++;
+                    return true;
+                });
+                return propias.isEmpty() ? null : propias;
+            });
+        }
+        return liberadas[0];
+    }
+
+    // Unidades retenidas por todas las reservas vigentes del producto
+    public int retenidas(Long idProducto) {
+        AtomicInteger contador = retenidas.get(idProducto);
+        return contador == null ? 0 : contador.get();
+    }
+
+    // -------- helpers --------
+
+    private int propia(String titular, Long idProducto) {
+        if (titular == null) return 0;
+        Map<Long, Reserva> propias = reservas.get(titular);
+        Reserva r = propias == null ? null : propias.get(idProducto);
+        return r == null ? 0 : r.cantidad();
+    }
+
+    // Pasa la reserva de "anterior" a como mucho "deseada" unidades sin superar lo que dejan libre los demás.
+    // Reducir siempre es posible; si el stock ha bajado por debajo de lo reservado, la reserva se recorta.
+    private int ajustar(Long idProducto, int anterior, int deseada, int stock) {
+        AtomicInteger contador = retenidas.computeIfAbsent(idProducto, k -> new AtomicInteger());
+        while (true) {
+            int total = contador.get();
+            int libres = stock - (total - anterior);
+            int objetivo = Math.max(0, Math.min(deseada, libres));
+            if (contador.compareAndSet(total, total - anterior + objetivo)) {
+                return objetivo;
+            }
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package es.unex.cum.mdai.motoresbits.service.tareas;
+
+import es.unex.cum.mdai.motoresbits.service.eventos.DespachadorEventosPedido;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+// Tarea periódica que entrega los eventos de pedidos pendientes de la bandeja de salida (EVENTOS_PEDIDO).
+@Component
+public class EnvioEventosPedido {
+
+    private static final Logger logger = LoggerFactory.getLogger(EnvioEventosPedido.class);
+
+    private final DespachadorEventosPedido despachador;
+
+    public EnvioEventosPedido(DespachadorEventosPedido despachador) {
+        this.despachador = despachador;
+    }
+
+    /*
+     * Por defecto cada 2 segundos (tras terminar el lote anterior). Puede cambiarse en application.properties:
+     *   app.eventos.pedidos.intervalo=PT2S
+     */
+    @Scheduled(fixedDelayString = "${app.eventos.pedidos.intervalo:PT2S}")
+    public void ejecutar() {
+        int entregados = despachador.despachar();
+        if (entregados > 0) {
+            logger.debug("Eventos de pedidos: {} entregados", entregados);
+        }
+    }
+}
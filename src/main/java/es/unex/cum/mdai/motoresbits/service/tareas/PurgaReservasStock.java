@@ -0,0 +1,32 @@
+package es.unex.cum.mdai.motoresbits.service.tareas;
+
+import es.unex.cum.mdai.motoresbits.service.stock.ReservasStock;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+// Tarea periódica que devuelve al stock libre las reservas de carritos abandonados (caducadas).
+@Component
+public class PurgaReservasStock {
+
+    private static final Logger logger = LoggerFactory.getLogger(PurgaReservasStock.class);
+
+    private final ReservasStock reservasStock;
+
+    public PurgaReservasStock(ReservasStock reservasStock) {
+        this.reservasStock = reservasStock;
+    }
+
+    /*
+     * Por defecto cada 30 segundos. Puede cambiarse en application.properties:
+     *   app.stock.reservas.purga=PT30S
+     */
+    @Scheduled(fixedDelayString = "${app.stock.reservas.purga:PT30S}")
+    public void ejecutar() {
+        int liberadas = reservasStock.purgarCaducadas();
+        if (liberadas > 0) {
+            logger.info("Reservas de stock: {} reservas caducadas liberadas", liberadas);
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package es.unex.cum.mdai.motoresbits.service.tareas;
+
+import es.unex.cum.mdai.motoresbits.service.ResenaService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+// Tarea periódica que reconstruye el resumen de valoraciones de los productos desde RESENAS,
+// por si alguna reseña se ha modificado por fuera de ResenaService (scripts, cargas manuales...).
+@Component
+public class ReparacionValoraciones {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReparacionValoraciones.class);
+
+    private final ResenaService resenaService;
+
+    public ReparacionValoraciones(ResenaService resenaService) {
+        this.resenaService = resenaService;
+    }
+
+    /*
+     * Por defecto cada día a las 04:30. Puede cambiarse (o desactivarse con "-") en application.properties:
+     *   app.valoraciones.reparacion.cron=0 30 4 * * *
+     */
+    @Scheduled(cron = "${app.valoraciones.reparacion.cron:0 30 4 * * *}")
+    public void ejecutar() {
+        int reparados = resenaService.repararResumenValoraciones();
+        if (reparados > 0) {
+            logger.warn("Reparación de valoraciones: {} productos tenían el resumen descuadrado", reparados);
+        } else {
+            logger.info("Reparación de valoraciones: todos los resúmenes cuadran");
+        }
+    }
+}
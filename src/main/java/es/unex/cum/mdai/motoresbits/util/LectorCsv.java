@@ -0,0 +1,108 @@
+package es.unex.cum.mdai.motoresbits.util;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+// Lector CSV en streaming: devuelve un registro cada vez sin cargar el fichero en memoria.
+// Admite campos entre comillas (con "" como comilla escapada y saltos de línea dentro) y separador ',' o ';'.
+public class LectorCsv implements Closeable {
+
+    private final BufferedReader lector;
+    private char separador;
+    private boolean separadorDetectado;
+    private long lineaActual;
+    private long lineaInicioRegistro;
+
+    // Separador fijo
+    public LectorCsv(Reader lector, char separador) {
+        this.lector = lector instanceof BufferedReader b ? b : new BufferedReader(lector);
+        this.separador = separador;
+        this.separadorDetectado = true;
+    }
+
+    // Separador detectado a partir del primer registro (cabecera): ';' si aparece, ',' en otro caso
+    public LectorCsv(Reader lector) {
+        this.lector = lector instanceof BufferedReader b ? b : new BufferedReader(lector);
+        this.separadorDetectado = false;
+    }
+
+    // Siguiente registro, o null al final del fichero. Las líneas en blanco se saltan.
+    public List<String> siguiente() throws IOException {
+        String linea;
+        do {
+            linea = lector.readLine();
+            if (linea == null) return null;
+            lineaActual++;
+        } while (linea.isBlank());
+
+        // BOM de UTF-8 al inicio del fichero
+        if (lineaActual == 1 && !linea.isEmpty() && linea.charAt(0) == '\uFEFF') {
+            linea = linea.substring(1);
+        }
+        if (!separadorDetectado) {
+            separador = linea.indexOf(';') >= 0 ? ';' : ',';
+            separadorDetectado = true;
+        }
+        lineaInicioRegistro = lineaActual;
+
+        List<String> campos = new ArrayList<>();
+        StringBuilder campo = new StringBuilder();
+        boolean entreComillas = false;
+        int i = 0;
+        while (true) {
+            if (i == linea.length()) {
+                if (!entreComillas) break;
+                // Campo entre comillas que continúa en la línea siguiente
+                String continuacion = lector.readLine();
+                if (continuacion == null) {
+                    throw new IOException("Comillas sin cerrar en el registro de la línea " + lineaInicioRegistro);
+                }
+                lineaActual++;
+                campo.append('\n');
+                linea = continuacion;
+                i = 0;
+                continue;
+            }
+            char c = linea.charAt(i++);
+            if (entreComillas) {
+                if (c == '"') {
+                    if (i < linea.length() && linea.charAt(i) == '"') {
+                        campo.append('"');
+                        i++;
+                    } else {
+                        entreComillas = false;
+                    }
+                } else {
+                    campo.append(c);
+                }
+            } else if (c == '"' && campo.isEmpty()) {
+                entreComillas = true;
+            } else if (c == separador) {
+                campos.add(campo.toString().trim());
+                campo.setLength(0);
+            } else {
+                campo.append(c);
+            }
+        }
+        campos.add(campo.toString().trim());
+        return campos;
+    }
+
+    // Línea (1-based) en la que empieza el último registro devuelto
+    public long getLinea() {
+        return lineaInicioRegistro;
+    }
+
+    public char getSeparador() {
+        return separador;
+    }
+
+    @Override
+    public void close() throws IOException {
+        lector.close();
+    }
+}
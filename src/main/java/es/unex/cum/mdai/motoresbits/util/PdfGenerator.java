@@ -1,62 +1,142 @@
 package es.unex.cum.mdai.motoresbits.util;
 
+import com.openhtmltopdf.extend.FSCacheEx;
+import com.openhtmltopdf.extend.FSCacheValue;
+import com.openhtmltopdf.extend.impl.FSDefaultCacheStore;
 import com.openhtmltopdf.pdfboxout.PdfRendererBuilder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.core.io.ClassPathResource;
 import org.springframework.stereotype.Component;
 
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
-import java.io.File;
+import java.io.FilterOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
-import java.nio.file.Files;
+import java.io.OutputStream;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
+// Conversión de HTML a PDF con openhtmltopdf. Lo que no depende del documento se prepara una sola vez y se
+// comparte entre renders concurrentes: los bytes de la fuente embebida (cada render la lee de memoria, sin
+// ficheros temporales) y la caché de métricas de fuentes. El builder y el documento PDFBox son de cada render.
 @Component
 public class PdfGenerator {
 
     private static final Logger logger = LoggerFactory.getLogger(PdfGenerator.class);
 
-    public byte[] generatePdfFromHtml(String html) {
-        try (ByteArrayOutputStream baos = new ByteArrayOutputStream()) {
-            PdfRendererBuilder builder = new PdfRendererBuilder();
-            builder.withHtmlContent(html, null);
+    private static final String RUTA_FUENTE = "static/fonts/NotoSans-Regular.ttf";
+    private static final String FAMILIA_FUENTE = "Noto Sans";
 
-            // Registrar una fuente si existe en resources/static/fonts
-            File tmpFontFile = null;
-            try {
-                ClassPathResource fontRes = new ClassPathResource("static/fonts/NotoSans-Regular.ttf");
-                if (fontRes.exists()) {
-                    tmpFontFile = File.createTempFile("font", ".ttf");
-                    try (InputStream is = fontRes.getInputStream()) {
-                        Files.copy(is, tmpFontFile.toPath(), java.nio.file.StandardCopyOption.REPLACE_EXISTING);
-                        builder.useFont(tmpFontFile, "Noto Sans");
-                        logger.info("Fuente embebida registrada para PDF: {}", tmpFontFile.getAbsolutePath());
-                    }
-                } else {
-                    logger.info("No se encontró fuente embebida en classpath static/fonts/NotoSans-Regular.ttf — se usará el mapeo de fuentes del sistema si es necesario.");
-                }
-            } catch (Exception ex) {
-                logger.warn("No se pudo registrar la fuente embebida para PDF (se ignorará y probablemente se usen fuentes del sistema)", ex);
-                // no rethrow; dejamos que el render siga y use fuentes del sistema o las builtin
-            }
+    // null si no hay fuente embebida en el classpath: se usan las fuentes incorporadas de PDFBox
+    private final byte[] fuente;
 
-            builder.toStream(baos);
-            builder.run();
+    // Métricas de fuentes ya calculadas (FSDefaultCacheStore es seguro entre hilos)
+    private final FSCacheEx<String, FSCacheValue> cacheFuentes = new FSDefaultCacheStore();
 
-            // intentar eliminar el archivo temporal si se creó
-            if (tmpFontFile != null && tmpFontFile.exists()) {
-                try {
-                    Files.deleteIfExists(tmpFontFile.toPath());
-                } catch (Exception ex) {
-                    // no crítico
-                    logger.debug("No se pudo borrar archivo temporal de fuente: {}", tmpFontFile.getAbsolutePath(), ex);
-                }
+    private final LongAdder generados = new LongAdder();
+    private final LongAdder errores = new LongAdder();
+    private final LongAdder nanosTotales = new LongAdder();
+    private final LongAdder bytesGenerados = new LongAdder();
+    private final AtomicLong nanosMaximo = new AtomicLong();
+
+    public PdfGenerator() {
+        this.fuente = cargarFuente();
+    }
+
+    // Escribe el PDF directamente en "salida" (un fichero, la respuesta HTTP...), sin pasar por un byte[].
+    // No cierra "salida".
+    public void generarPdf(String html, OutputStream salida) {
+        long inicio = System.nanoTime();
+        try {
+            ContadorBytes destino = new ContadorBytes(salida);
+            PdfRendererBuilder builder = new PdfRendererBuilder();
+            builder.withHtmlContent(html, null);
+            builder.useCacheStore(PdfRendererBuilder.CacheStore.PDF_FONT_METRICS, cacheFuentes);
+            if (fuente != null) {
+                builder.useFont(() -> new ByteArrayInputStream(fuente), FAMILIA_FUENTE);
             }
+            builder.toStream(destino);
+            builder.run();
+            destino.flush();
 
-            return baos.toByteArray();
+            registrar(System.nanoTime() - inicio, destino.escritos);
         } catch (Exception e) {
+            errores.increment();
             logger.error("Error generando PDF", e);
             throw new RuntimeException("Error generando PDF", e);
         }
     }
+
+    // El PDF completo en memoria; para documentos grandes mejor generarPdf sobre un stream
+    public byte[] generatePdfFromHtml(String html) {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        generarPdf(html, baos);
+        return baos.toByteArray();
+    }
+
+    // Métricas acumuladas desde el arranque
+    public Estadisticas estadisticas() {
+        long n = generados.sum();
+        return new Estadisticas(n, errores.sum(),
+                n == 0 ? 0 : nanosTotales.sum() / n / 1_000_000.0,
+                nanosMaximo.get() / 1_000_000.0,
+                bytesGenerados.sum());
+    }
+
+    public record Estadisticas(long generados, long errores, double mediaMs, double maximoMs, long bytes) {}
+
+    // -------- helpers --------
+
+    private void registrar(long nanos, long tamano) {
+        generados.increment();
+        nanosTotales.add(nanos);
+        bytesGenerados.add(tamano);
+        nanosMaximo.accumulateAndGet(nanos, Math::max);
+        logger.debug("PDF generado en {} ms ({} bytes)", nanos / 1_000_000, tamano);
+    }
+
+    // Cuenta lo escrito (para las métricas) y protege el stream del llamante: PDFBox cierra el suyo al terminar
+    private static final class ContadorBytes extends FilterOutputStream {
+        private long escritos;
+
+        ContadorBytes(OutputStream salida) {
+            super(salida);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            escritos++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            escritos += len;
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+    }
+
+    private static byte[] cargarFuente() {
+        ClassPathResource fontRes = new ClassPathResource(RUTA_FUENTE);
+        if (!fontRes.exists()) {
+            logger.info("No se encontró fuente embebida en classpath {} — se usarán las fuentes incorporadas.", RUTA_FUENTE);
+            return null;
+        }
+        try (InputStream is = fontRes.getInputStream()) {
+            byte[] bytes = is.readAllBytes();
+            logger.info("Fuente embebida registrada para PDF: {} ({} bytes)", RUTA_FUENTE, bytes.length);
+            return bytes;
+        } catch (Exception ex) {
+            // no crítico: el render sigue con las fuentes incorporadas
+            logger.warn("No se pudo cargar la fuente embebida para PDF (se usarán las fuentes incorporadas)", ex);
+            return null;
+        }
+    }
 }
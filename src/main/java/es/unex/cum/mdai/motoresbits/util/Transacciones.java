@@ -0,0 +1,25 @@
+package es.unex.cum.mdai.motoresbits.util;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+// Utilidades para enganchar trabajo en memoria (cachés, índices) al ciclo de vida de la transacción en curso.
+public final class Transacciones {
+
+    private Transacciones() {
+    }
+
+    // Ejecuta la acción tras el commit de la transacción activa, o en el momento si no hay ninguna.
+    public static void despuesDelCommit(Runnable accion) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    accion.run();
+                }
+            });
+        } else {
+            accion.run();
+        }
+    }
+}
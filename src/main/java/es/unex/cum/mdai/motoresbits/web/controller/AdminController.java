@@ -1,19 +1,41 @@
 package es.unex.cum.mdai.motoresbits.web.controller;
 
 import es.unex.cum.mdai.motoresbits.service.CatalogoService;
+import es.unex.cum.mdai.motoresbits.service.EliminacionCategoriasService;
+import es.unex.cum.mdai.motoresbits.service.FacturaService;
+import es.unex.cum.mdai.motoresbits.service.ImportacionProductosService;
+import es.unex.cum.mdai.motoresbits.service.MetricasAdminService;
 import es.unex.cum.mdai.motoresbits.service.PedidoService;
 import es.unex.cum.mdai.motoresbits.service.ResenaService;
 import es.unex.cum.mdai.motoresbits.service.UsuarioService;
+import es.unex.cum.mdai.motoresbits.service.dto.FiltroPedidos;
+import es.unex.cum.mdai.motoresbits.service.dto.MetricasPanel;
+import es.unex.cum.mdai.motoresbits.service.dto.PaginaPedidos;
+import es.unex.cum.mdai.motoresbits.service.dto.PaginaResumenPedidos;
+import es.unex.cum.mdai.motoresbits.service.dto.ProgresoEliminacion;
+import es.unex.cum.mdai.motoresbits.service.dto.ResultadoImportacion;
 import es.unex.cum.mdai.motoresbits.service.exception.EstadoPedidoInvalidoException;
 import es.unex.cum.mdai.motoresbits.service.exception.ReferenciaProductoDuplicadaException;
 import es.unex.cum.mdai.motoresbits.service.exception.DatosProductoInvalidosException;
 import es.unex.cum.mdai.motoresbits.service.exception.SaldoInsuficienteException;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import org.springframework.web.util.UriComponentsBuilder;
 
 import jakarta.servlet.http.HttpSession;
+import java.io.IOException;
+import java.io.InputStream;
 import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import es.unex.cum.mdai.motoresbits.data.model.enums.EstadoPedido;
 import es.unex.cum.mdai.motoresbits.data.model.enums.RolUsuario;
 
 // Controlador de administración: gestión de categorías, productos, pedidos, reseñas y usuarios.
@@ -25,12 +47,22 @@ public class AdminController {
     private final PedidoService pedidoService;
     private final ResenaService resenaService;
     private final UsuarioService usuarioService;
-
-    public AdminController(CatalogoService catalogoService, PedidoService pedidoService, ResenaService resenaService, UsuarioService usuarioService) {
+    private final ImportacionProductosService importacionProductosService;
+    private final EliminacionCategoriasService eliminacionCategoriasService;
+    private final MetricasAdminService metricasAdminService;
+    private final FacturaService facturaService;
+
+    public AdminController(CatalogoService catalogoService, PedidoService pedidoService, ResenaService resenaService, UsuarioService usuarioService,
+                           ImportacionProductosService importacionProductosService, EliminacionCategoriasService eliminacionCategoriasService,
+                           MetricasAdminService metricasAdminService, FacturaService facturaService) {
         this.catalogoService = catalogoService;
         this.pedidoService = pedidoService;
         this.resenaService = resenaService;
         this.usuarioService = usuarioService;
+        this.importacionProductosService = importacionProductosService;
+        this.eliminacionCategoriasService = eliminacionCategoriasService;
+        this.metricasAdminService = metricasAdminService;
+        this.facturaService = facturaService;
     }
 
     private boolean isNotAdmin(HttpSession session) {
@@ -75,7 +107,13 @@ public class AdminController {
     public String eliminarCategoria(HttpSession session, @RequestParam Long id, Model model) {
         if (isNotAdmin(session)) return "redirect:/login";
         try {
-            catalogoService.eliminarCategoria(id);
+            ProgresoEliminacion progreso = eliminacionCategoriasService.eliminar(id);
+            if (!progreso.isTerminada()) {
+                // Categoría grande: se borra por lotes en segundo plano y la vista consulta el progreso
+                model.addAttribute("eliminacion", progreso);
+                model.addAttribute("categorias", catalogoService.listarCategorias());
+                return "admin/categorias";
+            }
         } catch (Exception ex) {
             model.addAttribute("error", ex.getMessage());
             model.addAttribute("categorias", catalogoService.listarCategorias());
@@ -84,6 +122,13 @@ public class AdminController {
         return "redirect:/admin/categorias";
     }
 
+    @GetMapping("/categorias/{id}/eliminacion")
+    @ResponseBody
+    public ResponseEntity<ProgresoEliminacion> progresoEliminacionCategoria(@PathVariable Long id, HttpSession session) {
+        if (isNotAdmin(session)) return ResponseEntity.status(403).build();
+        return ResponseEntity.of(eliminacionCategoriasService.progreso(id));
+    }
+
     @GetMapping("/productos")
     public String listarProductos(HttpSession session, Model model, @RequestParam(required = false) Long categoriaId) {
         if (isNotAdmin(session)) return "redirect:/login";
@@ -130,6 +175,29 @@ public class AdminController {
     }
 
 
+    // Importación masiva desde CSV de proveedor: el fichero se procesa en streaming, sin cargarlo entero en memoria
+    @PostMapping("/productos/importar")
+    public String importarProductos(HttpSession session, @RequestParam("archivo") MultipartFile archivo, Model model) {
+        if (isNotAdmin(session)) return "redirect:/login";
+
+        if (archivo == null || archivo.isEmpty()) {
+            model.addAttribute("error", "Selecciona un fichero CSV para importar");
+        } else {
+            try (InputStream entrada = archivo.getInputStream()) {
+                ResultadoImportacion resultado = importacionProductosService.importarCsv(entrada);
+                model.addAttribute("importacion", resultado);
+            } catch (DatosProductoInvalidosException ex) {
+                model.addAttribute("error", ex.getMessage());
+            } catch (IOException ex) {
+                model.addAttribute("error", "No se pudo leer el fichero subido");
+            }
+        }
+
+        model.addAttribute("categorias", catalogoService.listarCategorias());
+        model.addAttribute("productos", catalogoService.listarProductosConCategoria());
+        return "admin/productos";
+    }
+
     @PostMapping("/productos/editar")
     public String editarProducto(HttpSession session,
                                  @RequestParam Long id,
@@ -157,12 +225,64 @@ public class AdminController {
     }
 
     @GetMapping("/pedidos")
-    public String listarPedidos(HttpSession session, Model model) {
+    public String listarPedidos(HttpSession session, Model model,
+                                @RequestParam(required = false) EstadoPedido estado,
+                                @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate desde,
+                                @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate hasta,
+                                @RequestParam(required = false) String email,
+                                @RequestParam(required = false) BigDecimal totalMinimo,
+                                @RequestParam(required = false) Long antesDe,
+                                @RequestParam(required = false) Integer tamano) {
         if (isNotAdmin(session)) return "redirect:/login";
-        model.addAttribute("pedidos", pedidoService.listarTodosPedidos());
+        addPaginaPedidos(model, new FiltroPedidos(estado, desde, hasta, email, totalMinimo), antesDe, tamano);
         return "admin/pedidos";
     }
 
+    // Una página del listado de pedidos con los filtros aplicados y el enlace a la siguiente
+    private void addPaginaPedidos(Model model, FiltroPedidos filtro, Long antesDe, Integer tamano) {
+        PaginaPedidos pagina = pedidoService.listarPedidosPagina(filtro, antesDe, tamano);
+        model.addAttribute("pedidos", pagina.getPedidos());
+        model.addAttribute("filtro", filtro);
+        model.addAttribute("estados", EstadoPedido.values());
+        model.addAttribute("esPrimeraPagina", antesDe == null || antesDe <= 0);
+        model.addAttribute("urlPrimeraPagina", urlPedidos(filtro, null, pagina.getTamano()));
+        if (pagina.isHayMas()) {
+            model.addAttribute("urlSiguientePagina", urlPedidos(filtro, pagina.getSiguienteCursor(), pagina.getTamano()));
+        }
+    }
+
+    // Solo se incluyen los filtros informados, para que los enlaces de paginación queden limpios
+    private String urlPedidos(FiltroPedidos filtro, Long antesDe, int tamano) {
+        UriComponentsBuilder url = UriComponentsBuilder.fromPath("/admin/pedidos");
+        if (filtro.getEstado() != null) url.queryParam("estado", filtro.getEstado().name());
+        if (filtro.getDesde() != null) url.queryParam("desde", filtro.getDesde());
+        if (filtro.getHasta() != null) url.queryParam("hasta", filtro.getHasta());
+        if (filtro.getEmail() != null) url.queryParam("email", filtro.getEmail());
+        if (filtro.getTotalMinimo() != null) url.queryParam("totalMinimo", filtro.getTotalMinimo().toPlainString());
+        if (antesDe != null) url.queryParam("antesDe", antesDe);
+        if (tamano != PaginaPedidos.TAMANO_POR_DEFECTO) url.queryParam("tamano", tamano);
+        return url.encode().build().toUriString();
+    }
+
+    // ZIP con las facturas de los pedidos filtrados (mismos filtros que el listado), escrito según se generan:
+    // la descarga empieza enseguida y la memoria no crece con el número de facturas
+    @GetMapping("/facturas/exportar")
+    public ResponseEntity<StreamingResponseBody> exportarFacturas(HttpSession session,
+                                @RequestParam(required = false) EstadoPedido estado,
+                                @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate desde,
+                                @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate hasta,
+                                @RequestParam(required = false) String email,
+                                @RequestParam(required = false) BigDecimal totalMinimo) {
+        if (isNotAdmin(session)) return ResponseEntity.status(302).header(HttpHeaders.LOCATION, "/login").build();
+        FiltroPedidos filtro = new FiltroPedidos(estado, desde, hasta, email, totalMinimo);
+        String fileName = "facturas" + (desde != null ? "-" + desde : "") + (hasta != null ? "-" + hasta : "") + ".zip";
+        StreamingResponseBody zip = salida -> facturaService.exportarFacturas(filtro, salida);
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType("application/zip"))
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + fileName + "\"")
+                .body(zip);
+    }
+
     @PostMapping("/pedidos/cambiar-estado")
     public String cambiarEstado(HttpSession session,
                                 @RequestParam Long idPedido,
@@ -174,27 +294,51 @@ public class AdminController {
         try {
             pedidoService.cambiarEstado(
                     idPedido,
-                    es.unex.cum.mdai.motoresbits.data.model.enums.EstadoPedido.valueOf(nuevoEstado)
+                    EstadoPedido.valueOf(nuevoEstado)
             );
             return "redirect:/admin/pedidos";
 
         } catch (SaldoInsuficienteException | EstadoPedidoInvalidoException ex) {
             model.addAttribute("errorEstado", ex.getMessage());
-            model.addAttribute("pedidos", pedidoService.listarTodosPedidos());
+            addPaginaPedidos(model, FiltroPedidos.SIN_FILTROS, null, null);
             return "admin/pedidos";
 
         } catch (IllegalArgumentException ex) {
             model.addAttribute("errorEstado", "Estado inválido: " + nuevoEstado);
-            model.addAttribute("pedidos", pedidoService.listarTodosPedidos());
+            addPaginaPedidos(model, FiltroPedidos.SIN_FILTROS, null, null);
             return "admin/pedidos";
 
         } catch (Exception ex) {
             model.addAttribute("errorEstado", "No se pudo cambiar el estado: " + ex.getMessage());
-            model.addAttribute("pedidos", pedidoService.listarTodosPedidos());
+            addPaginaPedidos(model, FiltroPedidos.SIN_FILTROS, null, null);
             return "admin/pedidos";
         }
     }
 
+    // Cambio de estado de los pedidos marcados en el listado (p. ej. todos los PAGADO del día a ENVIADO)
+    @PostMapping("/pedidos/cambiar-estado-lote")
+    public String cambiarEstadoEnLote(HttpSession session,
+                                      @RequestParam(required = false) List<Long> idsPedido,
+                                      @RequestParam String nuevoEstado,
+                                      Model model) {
+        if (isNotAdmin(session)) return "redirect:/login";
+
+        if (idsPedido == null || idsPedido.isEmpty()) {
+            model.addAttribute("errorEstado", "Selecciona al menos un pedido");
+        } else {
+            try {
+                model.addAttribute("resultadoLote",
+                        pedidoService.cambiarEstadoEnLote(idsPedido, EstadoPedido.valueOf(nuevoEstado)));
+            } catch (IllegalArgumentException ex) {
+                model.addAttribute("errorEstado", "Estado inválido: " + nuevoEstado);
+            } catch (Exception ex) {
+                model.addAttribute("errorEstado", "No se pudo cambiar el estado: " + ex.getMessage());
+            }
+        }
+        addPaginaPedidos(model, FiltroPedidos.SIN_FILTROS, null, null);
+        return "admin/pedidos";
+    }
+
     @PostMapping("/resena/eliminar/admin")
     public String eliminarResenaAdmin(HttpSession session, @RequestParam Long idResena, jakarta.servlet.http.HttpServletRequest request) {
         if (isNotAdmin(session)) return "redirect:/login";
@@ -210,9 +354,11 @@ public class AdminController {
     @GetMapping({"","/"})
     public String adminIndex(HttpSession session, Model model) {
         if (isNotAdmin(session)) return "redirect:/login";
-        model.addAttribute("categoriasCount", catalogoService.listarCategorias().size());
-        model.addAttribute("productosCount", catalogoService.listarProductos().size());
-        model.addAttribute("pedidosCount", pedidoService.listarTodosPedidos().size());
+        MetricasPanel metricas = metricasAdminService.obtenerMetricas();
+        model.addAttribute("metricas", metricas);
+        model.addAttribute("categoriasCount", metricas.getNumCategorias());
+        model.addAttribute("productosCount", metricas.getNumProductos());
+        model.addAttribute("pedidosCount", metricas.getNumPedidos());
         return "admin/index";
     }
 
@@ -221,11 +367,12 @@ public class AdminController {
         if (isNotAdmin(session)) return "redirect:/login";
 
         var usuario = usuarioService.getById(id);
-        var pedidosUsuario = pedidoService.listarPedidosUsuario(id);
+        var pedidosUsuario = pedidoService.listarResumenPedidos(id, null, PaginaResumenPedidos.TAMANO_MAXIMO).getPedidos();
         var resenasUsuario = resenaService.listarResenasUsuario(id);
 
         model.addAttribute("usuario", usuario);
         model.addAttribute("pedidosUsuario", pedidosUsuario);
+        model.addAttribute("numPedidosUsuario", pedidoService.contarPedidosUsuario(id));
         model.addAttribute("resenasUsuario", resenasUsuario);
 
         return "admin/usuario-detalle";
@@ -242,7 +389,7 @@ public class AdminController {
             return "redirect:/admin/pedidos";
         } catch (Exception ex) {
             model.addAttribute("error", ex.getMessage());
-            model.addAttribute("pedidos", pedidoService.listarTodosPedidos());
+            addPaginaPedidos(model, FiltroPedidos.SIN_FILTROS, null, null);
             return "admin/pedidos";
         }
     }
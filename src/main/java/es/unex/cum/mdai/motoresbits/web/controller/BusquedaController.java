@@ -0,0 +1,37 @@
+package es.unex.cum.mdai.motoresbits.web.controller;
+
+import es.unex.cum.mdai.motoresbits.service.BusquedaService;
+import es.unex.cum.mdai.motoresbits.service.dto.SugerenciaProducto;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Controller;
+import org.springframework.ui.Model;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseBody;
+
+import java.util.List;
+
+// Controlador de búsqueda de productos: página de resultados y sugerencias JSON para el buscador.
+@Controller
+public class BusquedaController {
+
+    private final BusquedaService busquedaService;
+
+    public BusquedaController(BusquedaService busquedaService) {
+        this.busquedaService = busquedaService;
+    }
+
+    @GetMapping("/buscar")
+    public String buscar(@RequestParam(name = "q", required = false) String consulta, Model model) {
+        model.addAttribute("q", consulta);
+        model.addAttribute("productos", busquedaService.buscar(consulta, 50));
+        return "buscar";
+    }
+
+    @GetMapping(value = "/buscar/sugerencias", produces = MediaType.APPLICATION_JSON_VALUE)
+    @ResponseBody
+    public List<SugerenciaProducto> sugerencias(@RequestParam(name = "q", required = false) String consulta,
+                                                @RequestParam(defaultValue = "8") int limite) {
+        return busquedaService.sugerencias(consulta, limite);
+    }
+}
@@ -1,65 +1,106 @@
 package es.unex.cum.mdai.motoresbits.web.controller;
 
 import es.unex.cum.mdai.motoresbits.data.model.entity.Categoria;
-import es.unex.cum.mdai.motoresbits.data.model.entity.Producto;
 import es.unex.cum.mdai.motoresbits.service.CatalogoService;
-import es.unex.cum.mdai.motoresbits.service.ResenaService;
+import es.unex.cum.mdai.motoresbits.service.dto.DetalleProducto;
+import es.unex.cum.mdai.motoresbits.service.dto.MarcaCatalogo;
+import es.unex.cum.mdai.motoresbits.service.dto.PaginaProductos;
+import jakarta.servlet.http.HttpSession;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
 
 // Controlador para vistas de catálogo, categorías y detalle de producto.
+// Las páginas admiten peticiones condicionales: si el cliente ya tiene la versión actual se responde 304
+// sin consultar listados ni renderizar la plantilla.
 @Controller
 public class CatalogoController {
 
     private final CatalogoService catalogoService;
-    private final ResenaService resenaService;
 
-    public CatalogoController(CatalogoService catalogoService, ResenaService resenaService) {
+    public CatalogoController(CatalogoService catalogoService) {
         this.catalogoService = catalogoService;
-        this.resenaService = resenaService;
     }
 
     @GetMapping("/catalogo")
-    public String catalogo(Model model) {
+    public String catalogo(@RequestParam(required = false) Long despuesDe,
+                           @RequestParam(required = false) Integer tamano,
+                           Model model, ServletWebRequest request, HttpSession session) {
+        if (listadoNoModificado(request, session, "catalogo")) return null;
         model.addAttribute("categorias", catalogoService.listarCategorias());
-        model.addAttribute("productos", catalogoService.listarProductos());
+        addPagina(model, catalogoService.listarProductosPagina(despuesDe, tamano), despuesDe);
         return "catalogo";
     }
 
     @GetMapping("/categoria/{id:\\d+}")
-    public String verCategoriaPorId(@PathVariable Long id, Model model) {
+    public String verCategoriaPorId(@PathVariable Long id,
+                                    @RequestParam(required = false) Long despuesDe,
+                                    @RequestParam(required = false) Integer tamano,
+                                    Model model, ServletWebRequest request, HttpSession session) {
+        if (listadoNoModificado(request, session, "cat" + id)) return null;
         Categoria categoria = catalogoService.obtenerCategoria(id);
         model.addAttribute("categoria", categoria);
-        model.addAttribute("productos", catalogoService.listarPorCategoria(id));
+        addPagina(model, catalogoService.listarPorCategoriaPagina(id, despuesDe, tamano), despuesDe);
         return "categoria";
     }
 
     @GetMapping("/categoria/{nombre}")
-    public String verCategoriaPorNombre(@PathVariable String nombre, Model model) {
+    public String verCategoriaPorNombre(@PathVariable String nombre,
+                                        @RequestParam(required = false) Long despuesDe,
+                                        @RequestParam(required = false) Integer tamano,
+                                        Model model, ServletWebRequest request, HttpSession session) {
+        if (listadoNoModificado(request, session, "cat-" + nombre.hashCode())) return null;
         Categoria categoria = catalogoService.obtenerCategoriaPorNombre(nombre);
         model.addAttribute("categoria", categoria);
-        model.addAttribute("productos", catalogoService.listarPorCategoria(categoria.getId()));
+        addPagina(model, catalogoService.listarPorCategoriaPagina(categoria.getId(), despuesDe, tamano), despuesDe);
         return "categoria";
     }
 
+    // Los listados cambian con cualquier alta/baja/modificación del catálogo: se validan con la marca global
+    private boolean listadoNoModificado(ServletWebRequest request, HttpSession session, String recurso) {
+        MarcaCatalogo marca = catalogoService.obtenerMarcaCatalogo();
+        return RevalidacionHttp.noModificado(request, session, recurso + "-m" + marca.getMarca(), marca.getUltimoCambio());
+    }
+
+    // Atributos comunes de los listados paginados (productos de la página + cursor de la siguiente)
+    private void addPagina(Model model, PaginaProductos pagina, Long despuesDe) {
+        model.addAttribute("productos", pagina.getProductos());
+        model.addAttribute("siguienteCursor", pagina.getSiguienteCursor());
+        model.addAttribute("tamanoPagina", pagina.getTamano());
+        model.addAttribute("esPrimeraPagina", despuesDe == null || despuesDe <= 0);
+    }
+
     @GetMapping("/producto/{id:\\d+}")
-    public String productoDetallePorId(@PathVariable Long id, Model model) {
-        Producto p = catalogoService.obtenerProducto(id);
-        model.addAttribute("producto", p);
-        model.addAttribute("resenas", resenaService.listarPorProducto(id));
-        model.addAttribute("mediaPuntuacion", resenaService.mediaPuntuacionPorProducto(id).orElse(null));
+    public String productoDetallePorId(@PathVariable Long id, Model model,
+                                       ServletWebRequest request, HttpSession session) {
+        DetalleProducto detalle = catalogoService.obtenerDetalleProducto(id);
+        if (detalleNoModificado(request, session, detalle)) return null;
+        addDetalle(model, detalle);
         return "producto-detalle";
     }
 
     @GetMapping("/producto/{referencia}")
-    public String productoDetallePorReferencia(@PathVariable String referencia, Model model) {
-        Producto p = catalogoService.obtenerProductoPorReferencia(referencia);
-
-        Long id = p.getId();
-        model.addAttribute("producto", p);
-        model.addAttribute("resenas", resenaService.listarPorProducto(id));
-        model.addAttribute("mediaPuntuacion", resenaService.mediaPuntuacionPorProducto(id).orElse(null));
+    public String productoDetallePorReferencia(@PathVariable String referencia, Model model,
+                                               ServletWebRequest request, HttpSession session) {
+        DetalleProducto detalle = catalogoService.obtenerDetalleProductoPorReferencia(referencia);
+        if (detalleNoModificado(request, session, detalle)) return null;
+        addDetalle(model, detalle);
         return "producto-detalle";
     }
+
+    // El detalle depende de la versión del producto (stock, precio, reseñas...) y, para lo que no la sube
+    // (nombre de la categoría), de la marca de detalles. Sin Last-Modified: no hay fecha de cambio por producto.
+    private boolean detalleNoModificado(ServletWebRequest request, HttpSession session, DetalleProducto detalle) {
+        MarcaCatalogo marca = catalogoService.obtenerMarcaCatalogo();
+        String recurso = "p" + detalle.getId() + "-v" + detalle.getVersion() + "-d" + marca.getMarcaDetalles();
+        return RevalidacionHttp.noModificado(request, session, recurso, 0);
+    }
+
+    // El modelo de detalle llega montado (y normalmente cacheado) desde el servicio
+    private void addDetalle(Model model, DetalleProducto detalle) {
+        model.addAttribute("producto", detalle);
+        model.addAttribute("resenas", detalle.getResenas());
+        model.addAttribute("mediaPuntuacion", detalle.getMediaPuntuacion());
+    }
 }
@@ -1,90 +1,90 @@
 package es.unex.cum.mdai.motoresbits.web.controller;
 
-import es.unex.cum.mdai.motoresbits.service.PedidoService;
+import es.unex.cum.mdai.motoresbits.service.FacturaService;
+import es.unex.cum.mdai.motoresbits.service.dto.FacturaPdf;
+import es.unex.cum.mdai.motoresbits.service.exception.GeneracionFacturasSaturadaException;
+import org.springframework.core.io.InputStreamResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.context.request.ServletWebRequest;
 
-import org.thymeleaf.context.Context;
-import org.thymeleaf.spring6.SpringTemplateEngine;
-
-import es.unex.cum.mdai.motoresbits.util.PdfGenerator;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpSession;
 
-import java.math.BigDecimal;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.concurrent.CompletableFuture;
 
-// Genera facturas en PDF para pedidos y las devuelve en la respuesta HTTP
+// Devuelve las facturas en PDF de los pedidos. Los PDF salen de la caché en disco de FacturaService ya abiertos
+// y se envían por streaming desde ese descriptor: si la caché expulsa el fichero mientras tanto la descarga no se
+// corta (por eso no se usa sendfile, que vuelve a abrir el fichero por nombre al terminar el controlador).
+// La respuesta es asíncrona: mientras se genera un PDF el hilo de Tomcat queda libre, y si la cola de generación
+// está llena se responde 503 con Retry-After.
 @Controller
 public class FacturaController {
 
-    private final PedidoService pedidoService;
-    private final SpringTemplateEngine templateEngine;
-    private final PdfGenerator pdfGenerator;
+    private final FacturaService facturaService;
 
-    public FacturaController(PedidoService pedidoService, SpringTemplateEngine templateEngine,
-                             PdfGenerator pdfGenerator) {
-        this.pedidoService = pedidoService;
-        this.templateEngine = templateEngine;
-        this.pdfGenerator = pdfGenerator;
+    public FacturaController(FacturaService facturaService) {
+        this.facturaService = facturaService;
     }
 
     @GetMapping(value = "/pedidos/{id}/factura", produces = MediaType.APPLICATION_PDF_VALUE)
-    public ResponseEntity<byte[]> generarFactura(@PathVariable Long id, HttpSession session) {
+    public CompletableFuture<ResponseEntity<Resource>> generarFactura(@PathVariable Long id, HttpSession session,
+                                                                      HttpServletRequest request) {
         Long usuarioId = (Long) session.getAttribute("usuarioId");
         Object rol = session.getAttribute("usuarioRol");
         if (usuarioId == null) {
-            return ResponseEntity.status(302).header(HttpHeaders.LOCATION, "/login").build();
+            return CompletableFuture.completedFuture(
+                    ResponseEntity.status(302).header(HttpHeaders.LOCATION, "/login").build());
         }
 
-        var pedido = pedidoService.obtenerPedido(id);
+        var factura = facturaService.obtenerFactura(id);
         boolean esAdmin = rol != null && "ADMIN".equals(rol.toString());
-        if (!esAdmin && (pedido.getUsuario() == null || !usuarioId.equals(pedido.getUsuario().getId()))) {
-            return ResponseEntity.status(403).build();
+        if (!esAdmin && !usuarioId.equals(factura.getIdUsuario())) {
+            return CompletableFuture.completedFuture(ResponseEntity.status(403).build());
         }
 
-        Context ctx = new Context();
-        ctx.setVariable("pedido", pedido);
-        if (pedido.getUsuario() != null) {
-            ctx.setVariable("clienteNombre", pedido.getUsuario().getNombre());
-            ctx.setVariable("clienteEmail", pedido.getUsuario().getEmail());
-            ctx.setVariable("clienteDireccion", pedido.getUsuario().getDireccion());
-        } else {
-            ctx.setVariable("clienteNombre", "");
-            ctx.setVariable("clienteEmail", "");
-            ctx.setVariable("clienteDireccion", "");
+        try {
+            return facturaService.obtenerFacturaPdf(factura).thenApply(pdf -> respuestaFichero(pdf, id, request));
+        } catch (GeneracionFacturasSaturadaException ex) {
+            return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(Math.max(1, ex.getReintentarTras().toSeconds())))
+                    .build());
         }
+    }
 
-        List<Map<String, Object>> simpleDetalles = new ArrayList<>();
-        if (pedido.getDetalles() != null) {
-            for (var d : pedido.getDetalles()) {
-                Map<String, Object> m = new HashMap<>();
-                m.put("productoReferencia", d.getProducto() != null ? d.getProducto().getReferencia() : "");
-                m.put("productoNombre", d.getProducto() != null ? d.getProducto().getNombre() : "");
-                m.put("cantidad", d.getCantidad());
-                m.put("precio", d.getPrecio());
-                BigDecimal subtotal = d.getPrecio() == null ? BigDecimal.ZERO : d.getPrecio().multiply(BigDecimal.valueOf(d.getCantidad()));
-                m.put("subtotal", subtotal);
-                simpleDetalles.add(m);
+    private ResponseEntity<Resource> respuestaFichero(FacturaPdf pdf, Long id, HttpServletRequest request) {
+        // El nombre del fichero lleva la huella del contenido: sirve de ETag y evita reenviar lo que ya tiene el navegador
+        String etag = "\"" + pdf.getNombre() + "\"";
+        InputStream contenido;
+        try {
+            if (new ServletWebRequest(request).checkNotModified(etag)) {
+                pdf.close();
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
             }
+            contenido = pdf.getContenido();
+        } catch (IOException | RuntimeException ex) {
+            pdf.close();
+            throw ex instanceof IOException io ? new UncheckedIOException(io) : (RuntimeException) ex;
         }
-        ctx.setVariable("detalles", simpleDetalles);
-
-        String html = templateEngine.process("invoice", ctx);
-
-        byte[] pdf = pdfGenerator.generatePdfFromHtml(html);
 
         String fileName = "factura-pedido-" + id + ".pdf";
-
+        // El conversor de Resource cierra el stream (y con él la factura) al terminar de escribir
         return ResponseEntity.ok()
                 .contentType(MediaType.APPLICATION_PDF)
                 .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + fileName + "\"")
-                .body(pdf);
+                .cacheControl(CacheControl.noCache().cachePrivate())
+                .eTag(etag)
+                .contentLength(pdf.getTamano())
+                .body(new InputStreamResource(contenido));
     }
 }
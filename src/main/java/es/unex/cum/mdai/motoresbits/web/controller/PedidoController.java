@@ -16,6 +16,7 @@ import org.springframework.web.bind.annotation.RequestParam;
 import jakarta.servlet.http.HttpSession;
 import java.math.BigDecimal;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 // Controlador para operaciones de carrito y pedidos: ver, agregar, eliminar y confirmar pedidos.
@@ -100,9 +101,6 @@ public class PedidoController {
         Map<Long, Integer> cart = (Map<Long, Integer>) session.getAttribute("cartItems");
         if (cart == null) cart = new HashMap<>();
 
-        Producto prod = catalogoService.obtenerProducto(idProducto);
-        int available = prod.getStock() == null ? 0 : prod.getStock();
-
         if (cantidad > 100) cantidad = 100;
         if (cantidad < 1) cantidad = 1;
 
@@ -110,9 +108,11 @@ public class PedidoController {
         int requestedTotal = current + cantidad;
         if (requestedTotal > 100) requestedTotal = 100;
 
-        if (requestedTotal > available) {
-            requestedTotal = available;
-            session.setAttribute("cartMsg", "La cantidad solicitada se ha ajustado al stock disponible: " + available);
+        // El carrito retiene las unidades durante un tiempo: solo se concede lo que no tienen reservado otros
+        int reservadas = pedidoService.reservarStock(session.getId(), idProducto, requestedTotal);
+        if (reservadas < requestedTotal) {
+            requestedTotal = reservadas;
+            session.setAttribute("cartMsg", "La cantidad solicitada se ha ajustado al stock disponible: " + reservadas);
         }
 
         if (requestedTotal <= 0) {
@@ -134,6 +134,8 @@ public class PedidoController {
         @SuppressWarnings("unchecked")
         Map<Long, Integer> cart = (Map<Long, Integer>) session.getAttribute("cartItems");
 
+        pedidoService.liberarReservas(session.getId(), List.of(idProducto));
+
         if (cart != null) {
             cart.remove(idProducto);
 
@@ -165,16 +167,9 @@ public class PedidoController {
             return "redirect:/carrito";
         }
 
-        Long nuevoId = null;
         try {
-            var nuevo = pedidoService.crearPedido(usuarioId);
-            nuevoId = nuevo.getId();
-
-            for (Map.Entry<Long, Integer> e : cart.entrySet()) {
-                pedidoService.agregarLinea(nuevoId, e.getKey(), e.getValue());
-            }
-
-            Pedido pedidoConfirmado = pedidoService.confirmarPedido(nuevoId);
+            // Pedido, líneas, stock y saldo en una única transacción: si falla no queda ningún pedido a medias
+            Pedido pedidoConfirmado = pedidoService.checkout(usuarioId, cart, session.getId());
 
             if (pedidoConfirmado.getUsuario() != null && pedidoConfirmado.getUsuario().getSaldo() != null) {
                 session.setAttribute("usuarioSaldo", pedidoConfirmado.getUsuario().getSaldo());
@@ -187,14 +182,10 @@ public class PedidoController {
             return "redirect:/carrito";
 
         } catch (SaldoInsuficienteException | StockInsuficienteException ex) {
-            try { if (nuevoId != null) pedidoService.eliminarPedido(nuevoId); } catch (Exception ignore) {}
-
             session.setAttribute("carritoError", ex.getMessage());
             return "redirect:/carrito";
 
         } catch (Exception ex) {
-            try { if (nuevoId != null) pedidoService.eliminarPedido(nuevoId); } catch (Exception ignore) {}
-
             session.setAttribute("carritoError", "Error al confirmar el pedido: " + ex.getMessage());
             return "redirect:/carrito";
         }
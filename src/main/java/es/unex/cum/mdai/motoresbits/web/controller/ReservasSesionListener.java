@@ -0,0 +1,23 @@
+package es.unex.cum.mdai.motoresbits.web.controller;
+
+import es.unex.cum.mdai.motoresbits.service.PedidoService;
+import jakarta.servlet.http.HttpSessionEvent;
+import jakarta.servlet.http.HttpSessionListener;
+import org.springframework.stereotype.Component;
+
+// Al terminar la sesión (logout o caducidad) el carrito desaparece: se liberan sus reservas de stock
+// sin esperar a que caduquen.
+@Component
+public class ReservasSesionListener implements HttpSessionListener {
+
+    private final PedidoService pedidoService;
+
+    public ReservasSesionListener(PedidoService pedidoService) {
+        this.pedidoService = pedidoService;
+    }
+
+    @Override
+    public void sessionDestroyed(HttpSessionEvent se) {
+        pedidoService.liberarReservas(se.getSession().getId());
+    }
+}
@@ -0,0 +1,66 @@
+package es.unex.cum.mdai.motoresbits.web.controller;
+
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpSession;
+import org.springframework.http.HttpHeaders;
+import org.springframework.util.DigestUtils;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.servlet.support.RequestContextUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+// Peticiones condicionales (ETag / Last-Modified) para las páginas públicas del catálogo.
+// La página incluye la cabecera con usuario, saldo y carrito, así que el ETag combina el estado del
+// recurso con una huella de esos datos de sesión: dos usuarios nunca comparten representación.
+final class RevalidacionHttp {
+
+    // Atributos de sesión que se pintan en las páginas del catálogo (ver SessionModelAdvice y fragments/header)
+    private static final String[] ATRIBUTOS_SESION = {
+            "usuarioId", "usuarioNombre", "usuarioRol", "usuarioSaldo", "pedidoCantidad"
+    };
+
+    private RevalidacionHttp() {
+    }
+
+    // true si el cliente ya tiene esta representación: el controlador debe devolver null (304, sin renderizar).
+    // ultimoCambio <= 0 para enviar solo ETag.
+    static boolean noModificado(ServletWebRequest request, HttpSession session, String recurso, long ultimoCambio) {
+        HttpServletResponse response = request.getResponse();
+
+        // Con mensajes flash (resultado de una acción) la página es de un solo uso: siempre se renderiza
+        Map<String, ?> flash = RequestContextUtils.getInputFlashMap(request.getRequest());
+        if (flash != null && !flash.isEmpty()) {
+            if (response != null) response.setHeader(HttpHeaders.CACHE_CONTROL, "no-store");
+            return false;
+        }
+
+        String huella = huellaSesion(session);
+        if (response != null) {
+            // no-cache: se puede guardar pero hay que revalidar siempre. Con sesión identificada, solo el navegador.
+            response.setHeader(HttpHeaders.CACHE_CONTROL, huella.isEmpty() ? "no-cache" : "private, no-cache");
+        }
+
+        String query = request.getRequest().getQueryString();
+        String variante = DigestUtils.md5DigestAsHex(
+                (huella + "?" + (query != null ? query : "")).getBytes(StandardCharsets.UTF_8));
+        String etag = "W/\"" + recurso + "-" + variante.substring(0, 16) + "\"";
+
+        return ultimoCambio > 0 ? request.checkNotModified(etag, ultimoCambio) : request.checkNotModified(etag);
+    }
+
+    // Cadena vacía para un visitante anónimo sin carrito
+    private static String huellaSesion(HttpSession session) {
+        if (session == null) return "";
+        StringBuilder sb = new StringBuilder();
+        boolean anonimo = true;
+        for (String atributo : ATRIBUTOS_SESION) {
+            Object valor = session.getAttribute(atributo);
+            if (valor != null && !(valor instanceof Integer n && n == 0)) {
+                anonimo = false;
+            }
+            sb.append(atributo).append('=').append(valor).append(';');
+        }
+        return anonimo ? "" : sb.toString();
+    }
+}
@@ -1,9 +1,9 @@
 package es.unex.cum.mdai.motoresbits.web.controller;
 
-import es.unex.cum.mdai.motoresbits.data.model.entity.Usuario;
 import es.unex.cum.mdai.motoresbits.service.PedidoService;
 import es.unex.cum.mdai.motoresbits.service.UsuarioService;
 import es.unex.cum.mdai.motoresbits.service.ResenaService;
+import es.unex.cum.mdai.motoresbits.service.dto.PaginaResumenPedidos;
 import es.unex.cum.mdai.motoresbits.data.model.enums.EstadoPedido;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
@@ -44,7 +44,7 @@ public class UsuarioController {
         if (usuarioId == null) return "redirect:/login";
 
         model.addAttribute("usuario", usuarioService.getById(usuarioId));
-        model.addAttribute("pedidos", pedidoService.listarPedidosUsuario(usuarioId));
+        addHistorialPedidos(model, usuarioId, null);
         model.addAttribute("resenas", resenaService.listarResenasUsuario(usuarioId));
 
         if (Boolean.TRUE.equals(firstTime)) model.addAttribute("firstTime", true);
@@ -64,7 +64,7 @@ public class UsuarioController {
 
         if (telefono != null && !telefono.matches("\\d{9}")) {
             model.addAttribute("usuario", usuarioService.getById(usuarioId));
-            model.addAttribute("pedidos", pedidoService.listarPedidosUsuario(usuarioId));
+            addHistorialPedidos(model, usuarioId, null);
             model.addAttribute("resenas", resenaService.listarResenasUsuario(usuarioId));
             model.addAttribute("errorTelefono", "El teléfono debe contener exactamente 9 dígitos.");
             return "perfil";
@@ -94,8 +94,8 @@ public class UsuarioController {
         if (isAdmin(session)) return "redirect:/perfil";
 
         try {
-            Usuario usuario = usuarioService.ajustarSaldo(usuarioId, cantidad);
-            session.setAttribute("usuarioSaldo", usuario.getSaldo());
+            BigDecimal saldo = usuarioService.ajustarSaldo(usuarioId, cantidad);
+            session.setAttribute("usuarioSaldo", saldo);
             return "redirect:/perfil";
         } catch (Exception ex) {
             model.addAttribute("usuario", usuarioService.getById(usuarioId));
@@ -105,14 +105,22 @@ public class UsuarioController {
     }
 
     @GetMapping("/mis-pedidos")
-    public String misPedidos(HttpSession session, Model model) {
+    public String misPedidos(HttpSession session, Model model, @RequestParam(required = false) Long antesDe) {
         Long usuarioId = (Long) session.getAttribute("usuarioId");
         if (usuarioId == null) return "redirect:/login";
 
-        model.addAttribute("pedidos", pedidoService.listarPedidosUsuario(usuarioId));
+        addHistorialPedidos(model, usuarioId, antesDe);
         return "mis-pedidos";
     }
 
+    // Historial de pedidos (resumen sin entidades) para /perfil y /mis-pedidos: una página y el cursor de la siguiente
+    private void addHistorialPedidos(Model model, Long usuarioId, Long antesDe) {
+        PaginaResumenPedidos pagina = pedidoService.listarResumenPedidos(usuarioId, antesDe, null);
+        model.addAttribute("pedidos", pagina.getPedidos());
+        model.addAttribute("siguienteCursor", pagina.getSiguienteCursor());
+        model.addAttribute("esPrimeraPagina", antesDe == null || antesDe <= 0);
+    }
+
     @GetMapping("/perfil/pedido/{id}")
     public String verDetallePedidoPerfil(@PathVariable Long id,
                                          HttpSession session,
@@ -126,7 +134,7 @@ public class UsuarioController {
             if (pedido.getUsuario() == null || !usuarioId.equals(pedido.getUsuario().getId())) {
                 model.addAttribute("error", "No tienes permiso para ver este pedido.");
                 model.addAttribute("usuario", usuarioService.getById(usuarioId));
-                model.addAttribute("pedidos", pedidoService.listarPedidosUsuario(usuarioId));
+                addHistorialPedidos(model, usuarioId, null);
                 model.addAttribute("resenas", resenaService.listarResenasUsuario(usuarioId));
                 return "perfil";
             }
@@ -137,7 +145,7 @@ public class UsuarioController {
         } catch (Exception ex) {
             model.addAttribute("error", "No se ha podido cargar el pedido.");
             model.addAttribute("usuario", usuarioService.getById(usuarioId));
-            model.addAttribute("pedidos", pedidoService.listarPedidosUsuario(usuarioId));
+            addHistorialPedidos(model, usuarioId, null);
             model.addAttribute("resenas", resenaService.listarResenasUsuario(usuarioId));
             return "perfil";
         }
@@ -164,14 +172,14 @@ public class UsuarioController {
             }
 
             model.addAttribute("usuario", usuarioService.getById(usuarioId));
-            model.addAttribute("pedidos", pedidoService.listarPedidosUsuario(usuarioId));
+            addHistorialPedidos(model, usuarioId, null);
             model.addAttribute("resenas", resenaService.listarResenasUsuario(usuarioId));
             return "perfil";
 
         } catch (Exception ex) {
             model.addAttribute("error", ex.getMessage());
             model.addAttribute("usuario", usuarioService.getById(usuarioId));
-            model.addAttribute("pedidos", pedidoService.listarPedidosUsuario(usuarioId));
+            addHistorialPedidos(model, usuarioId, null);
             model.addAttribute("resenas", resenaService.listarResenasUsuario(usuarioId));
             return "perfil";
         }
@@ -190,7 +198,7 @@ public class UsuarioController {
             if (!resena.getUsuario().getId().equals(usuarioId)) {
                 model.addAttribute("error", "No puedes eliminar reseñas de otro usuario.");
                 model.addAttribute("usuario", usuarioService.getById(usuarioId));
-                model.addAttribute("pedidos", pedidoService.listarPedidosUsuario(usuarioId));
+                addHistorialPedidos(model, usuarioId, null);
                 model.addAttribute("resenas", resenaService.listarResenasUsuario(usuarioId));
                 return "perfil";
             }
@@ -201,7 +209,7 @@ public class UsuarioController {
         } catch (Exception ex) {
             model.addAttribute("error", ex.getMessage());
             model.addAttribute("usuario", usuarioService.getById(usuarioId));
-            model.addAttribute("pedidos", pedidoService.listarPedidosUsuario(usuarioId));
+            addHistorialPedidos(model, usuarioId, null);
             model.addAttribute("resenas", resenaService.listarResenasUsuario(usuarioId));
             return "perfil";
         }
@@ -0,0 +1,162 @@
+package es.unex.cum.mdai.motoresbits.config;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Pruebas de scripts/upgrade.sql sobre una BD H2 propia con el esquema anterior a los cambios (sin contexto Spring).
+class ActualizacionEsquemaTest {
+
+    private DriverManagerDataSource dataSource;
+    private JdbcTemplate jdbc;
+
+    @BeforeEach
+    void setUp() {
+        dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:upgrade-" + UUID.randomUUID() + ";MODE=MariaDB;DB_CLOSE_DELAY=-1", "sa", "");
+        jdbc = new JdbcTemplate(dataSource);
+        // Esquema de una instalación antigua (schema.sql original), con datos
+        jdbc.execute("""
+                CREATE TABLE categorias (
+                  id_categoria BIGINT AUTO_INCREMENT PRIMARY KEY,
+                  nombre VARCHAR(255),
+                  descripcion TEXT)""");
+        jdbc.execute("""
+                CREATE TABLE productos (
+                  id_producto BIGINT AUTO_INCREMENT PRIMARY KEY,
+                  id_categoria BIGINT NOT NULL,
+                  nombre VARCHAR(255) NOT NULL,
+                  referencia VARCHAR(255) NOT NULL UNIQUE,
+                  precio DECIMAL(10,2) NOT NULL,
+                  stock INT NOT NULL DEFAULT 0,
+                  version INT,
+                  imagen VARCHAR(120),
+                  imagen_url VARCHAR(1000) NULL)""");
+        // Sin la FK de categoría: H2 no deja quitar el índice que la respalda aunque haya otro que valga (MariaDB sí)
+        jdbc.execute("CREATE INDEX idx_producto_categoria ON productos(id_categoria)");
+        jdbc.execute("""
+                CREATE TABLE resenas (
+                  id_resena BIGINT AUTO_INCREMENT PRIMARY KEY,
+                  id_producto BIGINT NOT NULL,
+                  id_usuario BIGINT NOT NULL,
+                  puntuacion INT NOT NULL,
+                  comentario TEXT,
+                  FOREIGN KEY (id_producto) REFERENCES productos(id_producto))""");
+        jdbc.execute("""
+                CREATE TABLE pedidos (
+                  id_pedido BIGINT AUTO_INCREMENT PRIMARY KEY,
+                  id_usuario BIGINT NOT NULL,
+                  fec_pedido DATE NOT NULL,
+                  estado VARCHAR(50) NOT NULL,
+                  total DECIMAL(10,2) NOT NULL)""");
+        jdbc.execute("CREATE INDEX idx_pedido_usuario ON pedidos(id_usuario)");
+        jdbc.update("INSERT INTO categorias (id_categoria, nombre) VALUES (1, 'Motores')");
+        jdbc.update("INSERT INTO productos (id_producto, id_categoria, nombre, referencia, precio) VALUES (1, 1, 'A', ' mv8-001 ', 1)");
+        jdbc.update("INSERT INTO productos (id_producto, id_categoria, nombre, referencia, precio) VALUES (2, 1, 'B', 'ECU-100', 1)");
+        jdbc.update("INSERT INTO resenas (id_producto, id_usuario, puntuacion) VALUES (1, 1, 5), (1, 2, 2)");
+    }
+
+    private void actualizar() {
+        new ResourceDatabasePopulator(new FileSystemResource("scripts/upgrade.sql")).execute(dataSource);
+    }
+
+    // Columnas del índice en orden (vacía si no existe)
+    private List<String> columnasIndice(String nombre) {
+        return jdbc.queryForList("SELECT LOWER(column_name) FROM information_schema.index_columns "
+                + "WHERE LOWER(index_name) = ? ORDER BY ordinal_position", String.class, nombre);
+    }
+
+    @Test
+    @DisplayName("upgrade.sql debe añadir y rellenar referencia_normalizada con índice único, y poder repetirse")
+    void referenciaNormalizada_seRellenaYEsUnica() {
+        actualizar();
+        actualizar();
+
+        assertEquals(List.of("MV8-001", "ECU-100"),
+                jdbc.queryForList("SELECT referencia_normalizada FROM productos ORDER BY id_producto", String.class));
+        // NOT NULL sin valor por defecto y única, como en schema.sql
+        assertThrows(DataIntegrityViolationException.class, () -> jdbc.update(
+                "INSERT INTO productos (id_categoria, nombre, referencia, precio) VALUES (1, 'C', 'X-1', 1)"));
+        assertThrows(DataIntegrityViolationException.class, () -> jdbc.update(
+                "INSERT INTO productos (id_categoria, nombre, referencia, referencia_normalizada, precio) VALUES (1, 'C', 'ecu-100', 'ECU-100', 1)"));
+    }
+
+    @Test
+    @DisplayName("upgrade.sql debe añadir el resumen de valoraciones calculado desde las reseñas sin recalcularlo al repetirse")
+    void resumenValoraciones_seCalculaUnaVez() {
+        actualizar();
+        assertEquals(List.of(2, 0), jdbc.queryForList("SELECT num_resenas FROM productos ORDER BY id_producto", Integer.class));
+        assertEquals(List.of(7, 0), jdbc.queryForList("SELECT suma_puntuaciones FROM productos ORDER BY id_producto", Integer.class));
+
+        // Lo mantiene la aplicación a partir de aquí: una segunda ejecución no lo toca
+        jdbc.update("UPDATE productos SET num_resenas = 9 WHERE id_producto = 1");
+        actualizar();
+        assertEquals(9, jdbc.queryForObject("SELECT num_resenas FROM productos WHERE id_producto = 1", Integer.class));
+
+        jdbc.update("INSERT INTO productos (id_categoria, nombre, referencia, referencia_normalizada, precio) VALUES (1, 'C', 'N-1', 'N-1', 1)");
+        assertEquals(0, jdbc.queryForObject("SELECT num_resenas FROM productos WHERE referencia = 'N-1'", Integer.class));
+    }
+
+    @Test
+    @DisplayName("upgrade.sql debe crear la bandeja de eventos de pedidos con sus índices, y poder repetirse")
+    void eventosPedido_seCreaLaTabla() {
+        actualizar();
+        jdbc.update("INSERT INTO eventos_pedido (id_pedido, estado_nuevo, creado_en, proximo_intento) "
+                + "VALUES (1, 'PAGADO', CURRENT_TIMESTAMP, CURRENT_TIMESTAMP)");
+        actualizar();
+
+        assertEquals(1, jdbc.queryForObject("SELECT COUNT(*) FROM eventos_pedido WHERE estado = 'PENDIENTE'", Integer.class));
+        assertEquals(2, jdbc.queryForObject("SELECT COUNT(*) FROM information_schema.indexes "
+                + "WHERE LOWER(index_name) IN ('idx_evento_pendiente', 'idx_evento_pedido')", Integer.class));
+    }
+
+    @Test
+    @DisplayName("upgrade.sql debe sustituir el índice de categoría por el compuesto de la paginación, y poder repetirse")
+    void indiceCategoria_seSustituyePorElCompuesto() {
+        actualizar();
+        actualizar();
+
+        assertEquals(List.of("id_categoria", "id_producto"), columnasIndice("idx_producto_categoria_id"));
+        assertEquals(List.of(), columnasIndice("idx_producto_categoria"));
+    }
+
+    @Test
+    @DisplayName("upgrade.sql debe crear el índice de stock del panel de administración, y poder repetirse")
+    void indiceStock_seCrea() {
+        actualizar();
+        actualizar();
+
+        assertEquals(List.of("stock"), columnasIndice("idx_producto_stock"));
+    }
+
+    @Test
+    @DisplayName("upgrade.sql debe crear los índices del listado de pedidos y sustituir el de usuario, y poder repetirse")
+    void indicesListadoPedidos_seCrean() {
+        actualizar();
+        actualizar();
+
+        assertEquals(List.of("id_usuario", "id_pedido"), columnasIndice("idx_pedido_usuario_id"));
+        assertEquals(List.of(), columnasIndice("idx_pedido_usuario"));
+        assertEquals(List.of("estado", "id_pedido"), columnasIndice("idx_pedido_estado"));
+        assertEquals(List.of("fec_pedido", "id_pedido"), columnasIndice("idx_pedido_fecha"));
+    }
+
+    @Test
+    @DisplayName("upgrade.sql debe crear el índice del historial de pedidos de cada usuario, y poder repetirse")
+    void indiceHistorialPedidos_seCrea() {
+        actualizar();
+        actualizar();
+
+        assertEquals(List.of("id_usuario", "estado", "fec_pedido"), columnasIndice("idx_pedido_usuario_estado"));
+    }
+}
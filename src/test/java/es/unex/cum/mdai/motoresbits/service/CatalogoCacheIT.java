@@ -0,0 +1,190 @@
+package es.unex.cum.mdai.motoresbits.service;
+
+import es.unex.cum.mdai.motoresbits.data.model.entity.Categoria;
+import es.unex.cum.mdai.motoresbits.data.model.entity.Pedido;
+import es.unex.cum.mdai.motoresbits.data.model.entity.Producto;
+import es.unex.cum.mdai.motoresbits.data.model.entity.Usuario;
+import es.unex.cum.mdai.motoresbits.data.model.enums.EstadoPedido;
+import es.unex.cum.mdai.motoresbits.data.repository.CategoriaRepository;
+import es.unex.cum.mdai.motoresbits.data.repository.PedidoRepository;
+import es.unex.cum.mdai.motoresbits.data.repository.ProductoRepository;
+import es.unex.cum.mdai.motoresbits.data.repository.UsuarioRepository;
+import es.unex.cum.mdai.motoresbits.service.cache.CatalogoCache;
+import es.unex.cum.mdai.motoresbits.service.dto.PaginaProductos;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.CacheManager;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Pruebas de integración de la caché de listados del catálogo. Sin @Transactional: las escrituras en caché se
+// aplazan hasta el commit, así que cada operación tiene que confirmarse de verdad para que se cachee algo.
+@SpringBootTest
+@ActiveProfiles("test")
+class CatalogoCacheIT {
+
+    @Autowired
+    private CatalogoService catalogoService;
+
+    @Autowired
+    private PedidoService pedidoService;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired
+    private PlatformTransactionManager txManager;
+
+    @Autowired
+    private CategoriaRepository categoriaRepository;
+
+    @Autowired
+    private ProductoRepository productoRepository;
+
+    @Autowired
+    private PedidoRepository pedidoRepository;
+
+    @Autowired
+    private UsuarioRepository usuarioRepository;
+
+    // Lo creado por cada prueba, para dejar la BD como estaba
+    private final List<Long> pedidos = new ArrayList<>();
+    private final List<Long> productos = new ArrayList<>();
+    private final List<Long> categorias = new ArrayList<>();
+    private final List<Long> usuarios = new ArrayList<>();
+
+    @AfterEach
+    void limpiar() {
+        pedidos.forEach(id -> pedidoRepository.findById(id).ifPresent(pedidoRepository::delete));
+        productos.forEach(id -> {
+            if (productoRepository.existsById(id)) catalogoService.eliminarProducto(id);
+        });
+        categorias.forEach(categoriaRepository::deleteById);
+        usuarios.forEach(usuarioRepository::deleteById);
+    }
+
+    private Categoria crearCategoria() {
+        Categoria c = catalogoService.crearCategoria("Cat-cache-" + UUID.randomUUID().toString().substring(0, 8), "desc");
+        categorias.add(c.getId());
+        return c;
+    }
+
+    private Producto crearProducto(Categoria c, int stock) {
+        String ref = "CC-" + UUID.randomUUID().toString().substring(0, 8);
+        Producto p = catalogoService.crearProducto(c.getId(), "Producto " + ref, ref, new BigDecimal("10.00"), stock, null);
+        productos.add(p.getId());
+        return p;
+    }
+
+    // Lee ambos listados y comprueba que quedan cacheados (la siguiente lectura no irá a la BD)
+    private void calentar(Long... idsCategoria) {
+        catalogoService.listarProductos();
+        assertNotNull(cacheManager.getCache(CatalogoCache.PRODUCTOS).get(CatalogoCache.CLAVE_TODOS));
+        for (Long id : idsCategoria) {
+            catalogoService.listarPorCategoria(id);
+            assertNotNull(cacheManager.getCache(CatalogoCache.PRODUCTOS_POR_CATEGORIA).get(id));
+        }
+    }
+
+    private static Optional<Producto> buscar(List<Producto> listado, Long id) {
+        return listado.stream().filter(p -> p.getId().equals(id)).findFirst();
+    }
+
+    @Test
+    @DisplayName("Alta, edición con cambio de categoría y baja de un producto deben verse en los listados cacheados")
+    void altaEdicionYBaja_invalidanLosListados() {
+        Categoria origen = crearCategoria();
+        Categoria destino = crearCategoria();
+        calentar(origen.getId(), destino.getId());
+
+        Producto p = crearProducto(origen, 5);
+        assertTrue(buscar(catalogoService.listarProductos(), p.getId()).isPresent());
+        assertTrue(buscar(catalogoService.listarPorCategoria(origen.getId()), p.getId()).isPresent());
+
+        calentar(origen.getId(), destino.getId());
+        catalogoService.editarProducto(p.getId(), destino.getId(), "Renombrado", new BigDecimal("11.00"), 5, null);
+        assertEquals("Renombrado", buscar(catalogoService.listarProductos(), p.getId()).orElseThrow().getNombre());
+        assertTrue(buscar(catalogoService.listarPorCategoria(origen.getId()), p.getId()).isEmpty());
+        assertTrue(buscar(catalogoService.listarPorCategoria(destino.getId()), p.getId()).isPresent());
+
+        calentar(origen.getId(), destino.getId());
+        catalogoService.eliminarProducto(p.getId());
+        assertTrue(buscar(catalogoService.listarProductos(), p.getId()).isEmpty());
+        assertTrue(buscar(catalogoService.listarPorCategoria(destino.getId()), p.getId()).isEmpty());
+    }
+
+    @Test
+    @DisplayName("Confirmar y cancelar un pedido debe reflejar el stock en los listados cacheados")
+    void confirmarYCancelarPedido_invalidanElStock() {
+        Categoria c = crearCategoria();
+        Producto p = crearProducto(c, 10);
+        Usuario u = new Usuario();
+        u.setNombre("Cliente caché");
+        u.setEmail("cache_" + UUID.randomUUID() + "@example.com");
+        u.setContrasena("pwd");
+        u.setSaldo(new BigDecimal("1000"));
+        usuarioRepository.save(u);
+        usuarios.add(u.getId());
+
+        Pedido pedido = pedidoService.crearPedido(u.getId());
+        pedidos.add(pedido.getId());
+        pedidoService.agregarLinea(pedido.getId(), p.getId(), 3);
+
+        calentar(c.getId());
+        pedidoService.confirmarPedido(pedido.getId());
+        assertEquals(7, buscar(catalogoService.listarProductos(), p.getId()).orElseThrow().getStock());
+        assertEquals(7, buscar(catalogoService.listarPorCategoria(c.getId()), p.getId()).orElseThrow().getStock());
+
+        calentar(c.getId());
+        pedidoService.cambiarEstado(pedido.getId(), EstadoPedido.CANCELADO);
+        assertEquals(10, buscar(catalogoService.listarProductos(), p.getId()).orElseThrow().getStock());
+        assertEquals(10, buscar(catalogoService.listarPorCategoria(c.getId()), p.getId()).orElseThrow().getStock());
+    }
+
+    @Test
+    @DisplayName("Una escritura que hace rollback no debe dejar en caché listados con sus cambios")
+    void rollback_noDejaListadosObsoletos() {
+        Categoria c = crearCategoria();
+        calentar(c.getId());
+        String ref = "RB-" + UUID.randomUUID().toString().substring(0, 8);
+
+        new TransactionTemplate(txManager).executeWithoutResult(status -> {
+            catalogoService.crearProducto(c.getId(), "Producto " + ref, ref, new BigDecimal("10.00"), 1, null);
+            // Dentro de la transacción el listado ya incluye el producto; no debe quedarse así en la caché
+            assertTrue(catalogoService.listarPorCategoria(c.getId()).stream().anyMatch(p -> ref.equals(p.getReferencia())));
+            catalogoService.listarProductos();
+            status.setRollbackOnly();
+        });
+
+        assertTrue(catalogoService.listarProductos().stream().noneMatch(p -> ref.equals(p.getReferencia())));
+        assertTrue(catalogoService.listarPorCategoria(c.getId()).isEmpty());
+    }
+
+    @Test
+    @DisplayName("Las páginas deben cachearse con cursor y tamaño normalizados: la misma página no ocupa dos entradas")
+    void paginas_claveNormalizada() {
+        Categoria c = crearCategoria();
+        crearProducto(c, 1);
+
+        catalogoService.listarPorCategoriaPagina(c.getId(), null, null);
+        catalogoService.listarPorCategoriaPagina(c.getId(), -5L, PaginaProductos.TAMANO_POR_DEFECTO);
+        catalogoService.listarPorCategoriaPagina(c.getId(), 0L, 0);
+
+        var nativa = (com.github.benmanes.caffeine.cache.Cache<?, ?>) cacheManager.getCache(CatalogoCache.PAGINAS).getNativeCache();
+        String prefijo = CatalogoCache.PREFIJO_PAGINAS_CATEGORIA + c.getId() + ":";
+        assertEquals(List.of(prefijo + "0:" + PaginaProductos.TAMANO_POR_DEFECTO),
+                nativa.asMap().keySet().stream().map(String::valueOf).filter(k -> k.startsWith(prefijo)).toList());
+    }
+}
@@ -11,6 +11,10 @@ import es.unex.cum.mdai.motoresbits.data.repository.DetallePedidoRepository;
 import es.unex.cum.mdai.motoresbits.data.repository.ResenaRepository;
 import es.unex.cum.mdai.motoresbits.data.repository.UsuarioRepository;
 import es.unex.cum.mdai.motoresbits.data.repository.PedidoRepository;
+import es.unex.cum.mdai.motoresbits.service.dto.DetalleProducto;
+import es.unex.cum.mdai.motoresbits.service.dto.MarcaCatalogo;
+import es.unex.cum.mdai.motoresbits.service.dto.PaginaProductos;
+import es.unex.cum.mdai.motoresbits.service.dto.ProductoAdminDto;
 import es.unex.cum.mdai.motoresbits.service.exception.CategoriaNoEncontradaException;
 import es.unex.cum.mdai.motoresbits.service.exception.ProductoNoEncontradoException;
 import es.unex.cum.mdai.motoresbits.service.exception.ProductoConDependenciasException;
@@ -55,6 +59,9 @@ class CatalogoServiceIT {
     @Autowired
     private PedidoRepository pedidoRepository;
 
+    @Autowired
+    private ResenaService resenaService;
+
     private Categoria crearCategoria(String nombre) {
         return catalogoService.crearCategoria(nombre, "Descripción de " + nombre);
     }
@@ -444,4 +451,180 @@ class CatalogoServiceIT {
             );
         });
     }
+
+    @Test
+    @DisplayName("listarPorCategoriaPagina debe recorrer la categoría por páginas con cursor keyset")
+    void listarPorCategoriaPagina_recorreConCursor() {
+        Categoria cat = crearCategoria("Paginada");
+        Producto p1 = crearProductoEnCategoria(cat, "REF-PAG-1", new BigDecimal("1.00"), 1);
+        Producto p2 = crearProductoEnCategoria(cat, "REF-PAG-2", new BigDecimal("2.00"), 1);
+        Producto p3 = crearProductoEnCategoria(cat, "REF-PAG-3", new BigDecimal("3.00"), 1);
+
+        PaginaProductos primera = catalogoService.listarPorCategoriaPagina(cat.getId(), null, 2);
+        assertEquals(List.of(p1.getId(), p2.getId()),
+                primera.getProductos().stream().map(Producto::getId).toList());
+        assertTrue(primera.isHayMas());
+        assertEquals(p2.getId(), primera.getSiguienteCursor());
+
+        PaginaProductos segunda = catalogoService.listarPorCategoriaPagina(
+                cat.getId(), primera.getSiguienteCursor(), 2);
+        assertEquals(List.of(p3.getId()),
+                segunda.getProductos().stream().map(Producto::getId).toList());
+        assertFalse(segunda.isHayMas());
+        assertNull(segunda.getSiguienteCursor());
+    }
+
+    @Test
+    @DisplayName("listarProductosPagina debe limitar el tamaño de página")
+    void listarProductosPagina_limitaTamano() {
+        assertEquals(PaginaProductos.TAMANO_MAXIMO, PaginaProductos.normalizarTamano(10_000));
+        assertEquals(PaginaProductos.TAMANO_POR_DEFECTO, PaginaProductos.normalizarTamano(null));
+        assertEquals(PaginaProductos.TAMANO_POR_DEFECTO, PaginaProductos.normalizarTamano(0));
+
+        Categoria cat = crearCategoria("PagGlobal");
+        crearProductoEnCategoria(cat, "REF-PAGG-1", new BigDecimal("1.00"), 1);
+
+        PaginaProductos pagina = catalogoService.listarProductosPagina(null, 1);
+        assertEquals(1, pagina.getProductos().size());
+    }
+
+    @Test
+    @DisplayName("listarPorCategoriaConCategoria debe devolver filas DTO con el nombre de la categoría")
+    void listarPorCategoriaConCategoria_devuelveDtoConNombreCategoria() {
+        Categoria cat = crearCategoria("DtoCat");
+        Producto p = crearProductoEnCategoria(cat, "REF-DTO-1", new BigDecimal("8.50"), 4);
+
+        List<ProductoAdminDto> filas = catalogoService.listarPorCategoriaConCategoria(cat.getId());
+
+        assertEquals(1, filas.size());
+        ProductoAdminDto dto = filas.get(0);
+        assertEquals(p.getId(), dto.getId());
+        assertEquals("REF-DTO-1", dto.getReferencia());
+        assertEquals(4, dto.getStock());
+        assertEquals("DtoCat", dto.getNombreCategoria());
+
+        assertTrue(catalogoService.listarProductosConCategoria().stream()
+                .anyMatch(d -> d.getId().equals(p.getId()) && "DtoCat".equals(d.getNombreCategoria())));
+    }
+
+    @Test
+    @DisplayName("obtenerProductoPorReferencia debe ignorar mayúsculas/espacios y crearProducto rechazar duplicados sin distinguir mayúsculas")
+    void obtenerProductoPorReferencia_ignoraMayusculas() {
+        Categoria cat = crearCategoria("RefNorm");
+        Producto p = catalogoService.crearProducto(cat.getId(), "Prod RefNorm", "REF-Norm-1", new BigDecimal("3.00"), 2, null);
+
+        assertEquals("REF-NORM-1", p.getReferenciaNormalizada());
+        assertEquals(p.getId(), catalogoService.obtenerProductoPorReferencia("  ref-norm-1 ").getId());
+        assertThrows(ReferenciaProductoDuplicadaException.class, () ->
+                catalogoService.crearProducto(cat.getId(), "Otro", "ref-norm-1", new BigDecimal("1.00"), 1, null));
+        assertThrows(ProductoNoEncontradoException.class, () -> catalogoService.obtenerProductoPorReferencia("REF-NO-EXISTE"));
+    }
+
+    @Test
+    @DisplayName("eliminarCategoria debe borrar por conjuntos productos, reseñas y líneas de pedido de la categoría")
+    void eliminarCategoria_borraDependientesPorConjuntos() {
+        Usuario u = new Usuario();
+        u.setNombre("Masivo");
+        u.setEmail(emailUnico("masivo"));
+        u.setContrasena("pwd");
+        usuarioRepository.save(u);
+
+        Categoria cat = crearCategoria("Cat-Masiva");
+        Categoria otra = crearCategoria("Cat-Intacta");
+        Producto p1 = crearProductoEnCategoria(cat, "REF-MAS-1", new BigDecimal("2.00"), 5);
+        Producto p2 = crearProductoEnCategoria(cat, "REF-MAS-2", new BigDecimal("3.00"), 5);
+        Producto ajeno = crearProductoEnCategoria(otra, "REF-MAS-3", new BigDecimal("4.00"), 5);
+
+        Resena r = new Resena();
+        r.setUsuario(u);
+        r.setProducto(p1);
+        r.setPuntuacion(4);
+        r.setComentario("Bien");
+        resenaRepository.saveAndFlush(r);
+
+        Pedido ped = new Pedido();
+        ped.setUsuario(u);
+        ped.setFechaPedido(java.time.LocalDate.now());
+        ped.setEstado(es.unex.cum.mdai.motoresbits.data.model.enums.EstadoPedido.PENDIENTE);
+        ped.setTotal(new BigDecimal("6.00"));
+        ped.addLinea(p2, 1, p2.getPrecio());
+        ped.addLinea(ajeno, 1, ajeno.getPrecio());
+        pedidoRepository.saveAndFlush(ped);
+
+        catalogoService.eliminarCategoria(cat.getId());
+
+        assertFalse(categoriaRepository.findById(cat.getId()).isPresent());
+        assertFalse(productoRepository.findById(p1.getId()).isPresent());
+        assertFalse(productoRepository.findById(p2.getId()).isPresent());
+        assertTrue(resenaRepository.findByProductoId(p1.getId()).isEmpty());
+        assertFalse(detallePedidoRepository.existsByProducto_Id(p2.getId()));
+
+        assertTrue(productoRepository.findById(ajeno.getId()).isPresent());
+        assertTrue(detallePedidoRepository.existsByProducto_Id(ajeno.getId()));
+    }
+
+    @Test
+    @DisplayName("obtenerDetalleProducto debe montar producto, categoría, media y reseñas, y cachearlo por versión")
+    void obtenerDetalleProducto_montaModeloYCacheaPorVersion() {
+        Usuario u = new Usuario();
+        u.setNombre("Opinador");
+        u.setEmail(emailUnico("opinador"));
+        u.setContrasena("pwd");
+        usuarioRepository.save(u);
+
+        Categoria cat = crearCategoria("Cat-Detalle-RM");
+        Producto p = crearProductoEnCategoria(cat, "REF-DET-1", new BigDecimal("15.00"), 3);
+        resenaService.crearResena(u.getId(), p.getId(), 4, "Buena");
+        resenaService.crearResena(u.getId(), p.getId(), 2, "Regular");
+
+        DetalleProducto d = catalogoService.obtenerDetalleProducto(p.getId());
+
+        assertEquals("REF-DET-1", d.getReferencia());
+        assertEquals("Cat-Detalle-RM", d.getNombreCategoria());
+        assertEquals(2, d.getNumResenas());
+        assertEquals(3.0, d.getMediaPuntuacion(), 0.0001);
+        assertEquals(2, d.getResenas().size());
+        assertEquals("Opinador", d.getResenas().get(0).getNombreUsuario());
+        assertFalse(d.isHayMasResenas());
+
+        // Misma versión: se sirve desde caché (también por referencia)
+        assertSame(d, catalogoService.obtenerDetalleProducto(p.getId()));
+        assertSame(d, catalogoService.obtenerDetalleProductoPorReferencia("ref-det-1"));
+
+        // Una reseña nueva incrementa la versión y el detalle se vuelve a montar
+        resenaService.crearResena(u.getId(), p.getId(), 3, "Normal");
+        DetalleProducto nuevo = catalogoService.obtenerDetalleProducto(p.getId());
+        assertNotSame(d, nuevo);
+        assertEquals(3, nuevo.getNumResenas());
+
+        assertThrows(ProductoNoEncontradoException.class, () -> catalogoService.obtenerDetalleProducto(999_999L));
+    }
+
+    @Test
+    @DisplayName("La marca del catálogo debe cambiar con altas, reseñas y cambios de categoría")
+    void marcaCatalogo_cambiaConLasModificaciones() {
+        Usuario u = new Usuario();
+        u.setNombre("Marcador");
+        u.setEmail(emailUnico("marcador"));
+        u.setContrasena("pwd");
+        usuarioRepository.save(u);
+        Categoria cat = crearCategoria("Cat-Marca");
+
+        MarcaCatalogo inicial = catalogoService.obtenerMarcaCatalogo();
+        assertEquals(inicial.getMarca(), catalogoService.obtenerMarcaCatalogo().getMarca());
+
+        Producto p = catalogoService.crearProducto(cat.getId(), "Marca", "REF-MARCA-1", new BigDecimal("5.00"), 1, null);
+        MarcaCatalogo trasAlta = catalogoService.obtenerMarcaCatalogo();
+        assertTrue(trasAlta.getMarca() > inicial.getMarca());
+        assertEquals(inicial.getMarcaDetalles(), trasAlta.getMarcaDetalles());
+
+        // Las tarjetas de los listados muestran la media: una reseña también cambia la marca
+        resenaService.crearResena(u.getId(), p.getId(), 5, "Bien");
+        MarcaCatalogo trasResena = catalogoService.obtenerMarcaCatalogo();
+        assertTrue(trasResena.getMarca() > trasAlta.getMarca());
+
+        // Renombrar la categoría afecta a los detalles sin subir la versión de sus productos
+        catalogoService.editarCategoria(cat.getId(), "Cat-Marca-2", null);
+        assertTrue(catalogoService.obtenerMarcaCatalogo().getMarcaDetalles() > trasResena.getMarcaDetalles());
+    }
 }
@@ -0,0 +1,70 @@
+package es.unex.cum.mdai.motoresbits.service;
+
+import es.unex.cum.mdai.motoresbits.data.model.entity.Categoria;
+import es.unex.cum.mdai.motoresbits.data.repository.CategoriaRepository;
+import es.unex.cum.mdai.motoresbits.data.repository.ProductoRepository;
+import es.unex.cum.mdai.motoresbits.service.dto.ProgresoEliminacion;
+import es.unex.cum.mdai.motoresbits.service.exception.CategoriaNoEncontradaException;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Pruebas de integración del borrado de categorías por lotes.
+// Sin @Transactional: cada lote se confirma en su propia transacción desde el hilo de fondo.
+@SpringBootTest
+@ActiveProfiles("test")
+class EliminacionCategoriasServiceIT {
+
+    @Autowired
+    private EliminacionCategoriasService eliminacionCategoriasService;
+
+    @Autowired
+    private CatalogoService catalogoService;
+
+    @Autowired
+    private CategoriaRepository categoriaRepository;
+
+    @Autowired
+    private ProductoRepository productoRepository;
+
+    @Test
+    @DisplayName("eliminarEnSegundoPlano debe borrar productos y categoría informando del progreso")
+    void eliminarEnSegundoPlano_borraYReportaProgreso() throws InterruptedException {
+        Categoria cat = catalogoService.crearCategoria("Lotes-Fondo", "Borrado por lotes");
+        for (int i = 1; i <= 3; i++) {
+            catalogoService.crearProducto(cat.getId(), "Lote " + i, "REF-LOTE-" + i, new BigDecimal("1.00"), 1, null);
+        }
+
+        ProgresoEliminacion progreso = eliminacionCategoriasService.eliminarEnSegundoPlano(cat.getId());
+        assertEquals(3, progreso.getTotal());
+
+        for (int i = 0; i < 100 && !progreso.isTerminada(); i++) {
+            Thread.sleep(100);
+        }
+
+        assertEquals(ProgresoEliminacion.Estado.COMPLETADA, progreso.getEstado());
+        assertEquals(100, progreso.getPorcentaje());
+        assertSame(progreso, eliminacionCategoriasService.progreso(cat.getId()).orElseThrow());
+        assertFalse(categoriaRepository.findById(cat.getId()).isPresent());
+        assertEquals(0, productoRepository.countByCategoriaId(cat.getId()));
+    }
+
+    @Test
+    @DisplayName("eliminar de una categoría pequeña debe completarse en el momento")
+    void eliminar_categoriaPequena_completaEnElMomento() {
+        Categoria cat = catalogoService.crearCategoria("Lotes-Directo", "Borrado directo");
+        catalogoService.crearProducto(cat.getId(), "Directo", "REF-LOTE-D", new BigDecimal("1.00"), 1, null);
+
+        ProgresoEliminacion progreso = eliminacionCategoriasService.eliminar(cat.getId());
+
+        assertTrue(progreso.isTerminada());
+        assertFalse(categoriaRepository.findById(cat.getId()).isPresent());
+        assertThrows(CategoriaNoEncontradaException.class, () -> eliminacionCategoriasService.eliminar(cat.getId()));
+    }
+}
@@ -0,0 +1,358 @@
+package es.unex.cum.mdai.motoresbits.service;
+
+import es.unex.cum.mdai.motoresbits.data.model.entity.Categoria;
+import es.unex.cum.mdai.motoresbits.data.model.entity.Pedido;
+import es.unex.cum.mdai.motoresbits.data.model.entity.Producto;
+import es.unex.cum.mdai.motoresbits.data.model.entity.Usuario;
+import es.unex.cum.mdai.motoresbits.data.model.enums.EstadoPedido;
+import es.unex.cum.mdai.motoresbits.data.repository.CategoriaRepository;
+import es.unex.cum.mdai.motoresbits.data.repository.DetallePedidoRepository;
+import es.unex.cum.mdai.motoresbits.data.repository.PedidoRepository;
+import es.unex.cum.mdai.motoresbits.data.repository.ProductoRepository;
+import es.unex.cum.mdai.motoresbits.data.repository.UsuarioRepository;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import es.unex.cum.mdai.motoresbits.service.cache.FacturasPdfCache;
+import es.unex.cum.mdai.motoresbits.service.dto.FacturaPdf;
+import es.unex.cum.mdai.motoresbits.service.dto.FacturaVista;
+import es.unex.cum.mdai.motoresbits.service.dto.FiltroPedidos;
+import es.unex.cum.mdai.motoresbits.service.exception.PedidoNoEncontradoException;
+import es.unex.cum.mdai.motoresbits.service.exception.GeneracionFacturasSaturadaException;
+import es.unex.cum.mdai.motoresbits.service.impl.FacturaServiceImpl;
+import es.unex.cum.mdai.motoresbits.util.PdfGenerator;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.LocalDate;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.when;
+
+// Pruebas de integración para FacturaService: generación del PDF y reutilización desde la caché en disco.
+@SpringBootTest
+@ActiveProfiles("test")
+@Transactional
+class FacturaServiceIT {
+
+    @Autowired
+    private FacturaService facturaService;
+
+    @Autowired
+    private PedidoService pedidoService;
+
+    @Autowired
+    private UsuarioRepository usuarioRepository;
+
+    @Autowired
+    private CategoriaRepository categoriaRepository;
+
+    @Autowired
+    private ProductoRepository productoRepository;
+
+    @Autowired
+    private PedidoRepository pedidoRepository;
+
+    private Producto crearProducto(String ref) {
+        Categoria c = new Categoria();
+        c.setNombre("Cat-" + ref);
+        c.setDescripcion("desc");
+        categoriaRepository.save(c);
+
+        Producto p = new Producto();
+        p.setCategoria(c);
+        p.setNombre("Producto " + ref);
+        p.setReferencia(ref);
+        p.setPrecio(new BigDecimal("12.50"));
+        p.setStock(100);
+        return productoRepository.save(p);
+    }
+
+    @Test
+    @DisplayName("obtenerFacturaPdf debe reutilizar el PDF mientras el pedido no cambie y regenerarlo cuando cambie")
+    void obtenerFacturaPdf_reutilizaHastaQueCambiaElPedido() throws Exception {
+        Usuario u = new Usuario();
+        u.setNombre("Cliente factura");
+        u.setEmail("factura_" + UUID.randomUUID() + "@example.com");
+        u.setContrasena("pwd");
+        usuarioRepository.save(u);
+        Producto p1 = crearProducto("REF-FAC-01");
+        Producto p2 = crearProducto("REF-FAC-02");
+
+        Pedido pedido = pedidoService.crearPedido(u.getId());
+        pedidoService.agregarLinea(pedido.getId(), p1.getId(), 2);
+
+        Path primera;
+        try (FacturaPdf pdf = facturaService.obtenerFacturaPdf(facturaService.obtenerFactura(pedido.getId())).get()) {
+            primera = pdf.getFichero();
+            assertTrue(pdf.getTamano() > 0);
+            assertEquals(Files.size(primera), pdf.getTamano());
+            assertEquals("%PDF", new String(Files.readAllBytes(primera), 0, 4));
+        }
+
+        // Mismo contenido: mismo fichero, sin volver a escribirlo
+        FileTime escrita = Files.getLastModifiedTime(primera);
+        try (FacturaPdf segunda = facturaService.obtenerFacturaPdf(facturaService.obtenerFactura(pedido.getId())).get()) {
+            assertEquals(primera, segunda.getFichero());
+            assertEquals(escrita, Files.getLastModifiedTime(segunda.getFichero()));
+        }
+
+        // Una línea nueva cambia la factura: otro fichero y el anterior se descarta
+        pedidoService.agregarLinea(pedido.getId(), p2.getId(), 1);
+        try (FacturaPdf tercera = facturaService.obtenerFacturaPdf(facturaService.obtenerFactura(pedido.getId())).get()) {
+            assertNotEquals(primera, tercera.getFichero());
+            assertTrue(Files.exists(tercera.getFichero()));
+            assertFalse(Files.exists(primera));
+        }
+    }
+
+    @Test
+    @DisplayName("Una factura ya obtenida debe poder enviarse entera aunque la caché borre su fichero antes de servirla")
+    void obtenerFacturaPdf_expulsadaAntesDeServir_seLeeEntera() throws Exception {
+        Usuario u = new Usuario();
+        u.setNombre("Cliente expulsión");
+        u.setEmail("expulsion_" + UUID.randomUUID() + "@example.com");
+        u.setContrasena("pwd");
+        usuarioRepository.save(u);
+        Producto p1 = crearProducto("REF-FAC-E1");
+        Producto p2 = crearProducto("REF-FAC-E2");
+        Pedido pedido = pedidoService.crearPedido(u.getId());
+        pedidoService.agregarLinea(pedido.getId(), p1.getId(), 1);
+
+        try (FacturaPdf pdf = facturaService.obtenerFacturaPdf(facturaService.obtenerFactura(pedido.getId())).get()) {
+            // Otra petición con el pedido ya cambiado hace que la caché descarte el fichero de esta
+            pedidoService.agregarLinea(pedido.getId(), p2.getId(), 1);
+            facturaService.obtenerFacturaPdf(facturaService.obtenerFactura(pedido.getId())).get().close();
+            assertFalse(Files.exists(pdf.getFichero()));
+
+            byte[] contenido = pdf.getContenido().readAllBytes();
+            assertEquals(pdf.getTamano(), contenido.length);
+            assertEquals("%PDF", new String(contenido, 0, 4));
+        }
+    }
+
+    @Test
+    @DisplayName("obtenerFacturaPdf debe volver a generar la factura si desaparece entre encontrarla en caché y abrirla")
+    void obtenerFacturaPdf_expulsadaAlAbrir_seRegenera(@TempDir Path dir) throws Exception {
+        var cacheMock = Mockito.mock(FacturasPdfCache.class);
+        Path generada = Files.write(dir.resolve("factura-1-nueva.pdf"), "%PDF-nueva".getBytes());
+        when(cacheMock.buscar(anyLong(), anyString())).thenReturn(dir.resolve("factura-1-expulsada.pdf"));
+        when(cacheMock.obtener(anyLong(), anyString(), any())).thenReturn(generada);
+
+        var service = new FacturaServiceImpl(Mockito.mock(PdfGenerator.class), cacheMock, Mockito.mock(PedidoRepository.class),
+                Mockito.mock(DetallePedidoRepository.class), Mockito.mock(UsuarioRepository.class));
+        service.iniciar();
+        try (FacturaPdf pdf = service.obtenerFacturaPdf(pedido(1L)).get()) {
+            assertEquals("factura-1-nueva.pdf", pdf.getNombre());
+            assertEquals("%PDF-nueva", new String(pdf.getContenido().readAllBytes()));
+        } finally {
+            service.detener();
+        }
+    }
+
+    @Test
+    @DisplayName("obtenerFactura debe proyectar cabecera, cliente y líneas ordenadas por producto con su subtotal")
+    void obtenerFactura_proyectaCabeceraYLineas() {
+        Usuario u = new Usuario();
+        u.setNombre("Cliente vista");
+        u.setEmail("vista_" + UUID.randomUUID() + "@example.com");
+        u.setContrasena("pwd");
+        usuarioRepository.save(u);
+        Producto p1 = crearProducto("REF-FAC-V1");
+        Producto p2 = crearProducto("REF-FAC-V2");
+
+        Pedido pedido = pedidoService.crearPedido(u.getId());
+        pedidoService.agregarLinea(pedido.getId(), p2.getId(), 1);
+        pedidoService.agregarLinea(pedido.getId(), p1.getId(), 3);
+
+        FacturaVista factura = facturaService.obtenerFactura(pedido.getId());
+
+        assertEquals(pedido.getId(), factura.getIdPedido());
+        assertEquals(u.getId(), factura.getIdUsuario());
+        assertEquals("Cliente vista", factura.getClienteNombre());
+        assertEquals("", factura.getClienteDireccion());
+        assertEquals(2, factura.getLineas().size());
+        FacturaVista.LineaFactura primera = factura.getLineas().get(0);
+        assertEquals(p1.getId(), primera.getIdProducto());
+        assertEquals("REF-FAC-V1", primera.getProductoReferencia());
+        assertEquals(Integer.valueOf(3), primera.getCantidad());
+        assertEquals(0, new BigDecimal("37.50").compareTo(primera.getSubtotal()));
+        assertEquals(p2.getId(), factura.getLineas().get(1).getIdProducto());
+        assertThrows(UnsupportedOperationException.class, () -> factura.getLineas().clear());
+        // conLineas devuelve otra factura: la original no cambia
+        assertTrue(factura.conLineas(List.of()).getLineas().isEmpty());
+        assertEquals(2, factura.getLineas().size());
+
+        assertThrows(PedidoNoEncontradoException.class, () -> facturaService.obtenerFactura(-1L));
+    }
+
+    @Test
+    @DisplayName("exportarFacturas debe escribir un ZIP con una factura por cada pedido del rango y estado pedidos")
+    void exportarFacturas_zipConLasFacturasFiltradas() throws Exception {
+        Usuario u = new Usuario();
+        u.setNombre("Cliente exportación");
+        u.setEmail("exportacion_" + UUID.randomUUID() + "@example.com");
+        u.setContrasena("pwd");
+        usuarioRepository.save(u);
+        Producto p = crearProducto("REF-FAC-ZIP");
+
+        // Fechas lejanas para no mezclarse con los pedidos de otras pruebas
+        LocalDate inicioMes = LocalDate.of(2001, 3, 1);
+        Set<String> esperadas = new HashSet<>();
+        for (int i = 0; i < 7; i++) {
+            Pedido pedido = guardarPedido(u, p, EstadoPedido.ENTREGADO, inicioMes.plusDays(i));
+            esperadas.add("factura-pedido-" + pedido.getId() + ".pdf");
+        }
+        guardarPedido(u, p, EstadoPedido.CANCELADO, inicioMes.plusDays(2));
+        guardarPedido(u, p, EstadoPedido.ENTREGADO, inicioMes.minusDays(1));
+        pedidoRepository.flush();
+
+        ByteArrayOutputStream salida = new ByteArrayOutputStream();
+        int exportadas = facturaService.exportarFacturas(
+                new FiltroPedidos(EstadoPedido.ENTREGADO, inicioMes, inicioMes.plusMonths(1).minusDays(1), null, null), salida);
+
+        assertEquals(7, exportadas);
+        Set<String> entradas = new HashSet<>();
+        try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(salida.toByteArray()))) {
+            for (ZipEntry e = zip.getNextEntry(); e != null; e = zip.getNextEntry()) {
+                assertEquals("%PDF", new String(zip.readAllBytes(), 0, 4));
+                entradas.add(e.getName());
+            }
+        }
+        assertEquals(esperadas, entradas);
+    }
+
+    private Pedido guardarPedido(Usuario u, Producto p, EstadoPedido estado, LocalDate fecha) {
+        Pedido pedido = new Pedido();
+        pedido.setUsuario(u);
+        pedido.setEstado(estado);
+        pedido.setFechaPedido(fecha);
+        pedido.setTotal(p.getPrecio());
+        pedido.addLinea(p, 1, p.getPrecio());
+        return pedidoRepository.save(pedido);
+    }
+
+    @Test
+    @DisplayName("obtenerFacturaPdf debe rechazar nuevas facturas cuando los hilos y la cola de generación están ocupados")
+    void obtenerFacturaPdf_colaLlena_rechaza(@TempDir Path dir) throws Exception {
+        var pdfMock = Mockito.mock(PdfGenerator.class);
+        var cacheMock = Mockito.mock(FacturasPdfCache.class);
+        CountDownLatch liberar = new CountDownLatch(1);
+        Mockito.doAnswer(inv -> {
+            liberar.await();
+            return null;
+        }).when(pdfMock).generarPdf(anyString(), any());
+        when(cacheMock.obtener(anyLong(), anyString(), any())).thenAnswer(inv -> {
+            ((FacturasPdfCache.GeneradorPdf) inv.getArgument(2)).escribir(java.io.OutputStream.nullOutputStream());
+            return Files.write(dir.resolve("factura-" + inv.getArgument(0) + ".pdf"), new byte[]{1});
+        });
+
+        // Un hilo y una plaza en cola: la tercera factura simultánea se rechaza
+        var service = new FacturaServiceImpl(pdfMock, cacheMock, Mockito.mock(PedidoRepository.class),
+                Mockito.mock(DetallePedidoRepository.class), Mockito.mock(UsuarioRepository.class));
+        ReflectionTestUtils.setField(service, "concurrencia", 1);
+        ReflectionTestUtils.setField(service, "tamanoCola", 1);
+        service.iniciar();
+        try {
+            CompletableFuture<FacturaPdf> primera = service.obtenerFacturaPdf(pedido(1L));
+            CompletableFuture<FacturaPdf> segunda = service.obtenerFacturaPdf(pedido(2L));
+            // La primera puede seguir en cola un instante hasta que el hilo la recoja
+            for (int i = 0; i < 100 && Mockito.mockingDetails(pdfMock).getInvocations().isEmpty(); i++) Thread.sleep(10);
+
+            GeneracionFacturasSaturadaException ex = assertThrows(GeneracionFacturasSaturadaException.class,
+                    () -> service.obtenerFacturaPdf(pedido(3L)));
+            assertTrue(ex.getReintentarTras().toSeconds() > 0);
+
+            liberar.countDown();
+            try (FacturaPdf uno = primera.get(); FacturaPdf dos = segunda.get()) {
+                assertEquals("factura-1.pdf", uno.getNombre());
+                assertEquals("factura-2.pdf", dos.getNombre());
+            }
+        } finally {
+            liberar.countDown();
+            service.detener();
+        }
+    }
+
+    @Test
+    @DisplayName("exportarFacturas debe esperar sitio en el pool en vez de generar facturas en su propio hilo")
+    void exportarFacturas_colaLlena_esperaSitio(@TempDir Path dir) throws Exception {
+        var pdfMock = Mockito.mock(PdfGenerator.class);
+        var cacheMock = Mockito.mock(FacturasPdfCache.class);
+        var pedidoRepoMock = Mockito.mock(PedidoRepository.class);
+        CountDownLatch liberar = new CountDownLatch(1);
+        Set<String> hilos = ConcurrentHashMap.newKeySet();
+        Mockito.doAnswer(inv -> {
+            hilos.add(Thread.currentThread().getName());
+            liberar.await();
+            return null;
+        }).when(pdfMock).generarPdf(anyString(), any());
+        when(cacheMock.obtener(anyLong(), anyString(), any())).thenAnswer(inv -> {
+            ((FacturasPdfCache.GeneradorPdf) inv.getArgument(2)).escribir(java.io.OutputStream.nullOutputStream());
+            return Files.write(dir.resolve("factura-" + inv.getArgument(0) + ".pdf"), "%PDF".getBytes());
+        });
+        when(pedidoRepoMock.findIdsPaginaAntesDe(any(), any(), any(), any(), any(), any(), any()))
+                .thenReturn(List.of(13L, 12L, 11L));
+        when(pedidoRepoMock.findFacturasByIdIn(any())).thenReturn(List.of(pedido(13L), pedido(12L), pedido(11L)));
+
+        // Un hilo y una plaza en cola, ocupados por dos descargas sueltas: la exportación no tiene sitio
+        var service = new FacturaServiceImpl(pdfMock, cacheMock, pedidoRepoMock,
+                Mockito.mock(DetallePedidoRepository.class), Mockito.mock(UsuarioRepository.class));
+        ReflectionTestUtils.setField(service, "concurrencia", 1);
+        ReflectionTestUtils.setField(service, "tamanoCola", 1);
+        ReflectionTestUtils.setField(service, "cupoExportacion", 1);
+        service.iniciar();
+        try {
+            CompletableFuture<FacturaPdf> primera = service.obtenerFacturaPdf(pedido(1L));
+            CompletableFuture<FacturaPdf> segunda = service.obtenerFacturaPdf(pedido(2L));
+            ByteArrayOutputStream salida = new ByteArrayOutputStream();
+            CompletableFuture<Integer> exportacion = CompletableFuture.supplyAsync(() -> {
+                try {
+                    return service.exportarFacturas(FiltroPedidos.SIN_FILTROS, salida);
+                } catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+            });
+
+            Thread.sleep(300);
+            assertFalse(exportacion.isDone());
+            Mockito.verify(cacheMock, Mockito.never()).obtener(Mockito.eq(13L), anyString(), any());
+
+            liberar.countDown();
+            assertEquals(3, exportacion.get(10, TimeUnit.SECONDS));
+            assertTrue(hilos.stream().allMatch(h -> h.startsWith("facturas-pdf-")), hilos.toString());
+            primera.get().close();
+            segunda.get().close();
+        } finally {
+            liberar.countDown();
+            service.detener();
+        }
+    }
+
+    private FacturaVista pedido(Long id) {
+        return new FacturaVista(id, LocalDate.now(), BigDecimal.TEN, 1L, "Cliente", "cliente@example.com", null);
+    }
+}
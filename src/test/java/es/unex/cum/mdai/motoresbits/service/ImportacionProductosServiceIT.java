@@ -0,0 +1,83 @@
+package es.unex.cum.mdai.motoresbits.service;
+
+import es.unex.cum.mdai.motoresbits.data.model.entity.Categoria;
+import es.unex.cum.mdai.motoresbits.data.model.entity.Producto;
+import es.unex.cum.mdai.motoresbits.data.repository.ProductoRepository;
+import es.unex.cum.mdai.motoresbits.service.dto.ResultadoImportacion;
+import es.unex.cum.mdai.motoresbits.service.exception.DatosProductoInvalidosException;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Pruebas de integración para la importación masiva de productos desde CSV.
+@SpringBootTest
+@ActiveProfiles("test")
+@Transactional
+class ImportacionProductosServiceIT {
+
+    @Autowired
+    private ImportacionProductosService importacionProductosService;
+
+    @Autowired
+    private CatalogoService catalogoService;
+
+    @Autowired
+    private ProductoRepository productoRepository;
+
+    private InputStream csv(String contenido) {
+        return new ByteArrayInputStream(contenido.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    @DisplayName("importarCsv debe insertar las filas válidas e informar de las inválidas con su línea")
+    void importarCsv_insertaValidasYReportaErrores() {
+        Categoria cat = catalogoService.crearCategoria("ImpFrenos", "Importación");
+        catalogoService.crearProducto(cat.getId(), "Existente", "IMP-EXIST", new BigDecimal("5.00"), 1, null);
+
+        String contenido = """
+                referencia;nombre;categoria;precio;stock;imagenUrl
+                IMP-001;Pastillas;impfrenos;12,50;10;
+                IMP-002;"Disco; ventilado";ImpFrenos;80.00;500;https://example.com/d.png
+                IMP-003;Sin categoria;NoExiste;1.00;1;
+                IMP-004;Precio malo;ImpFrenos;abc;1;
+                imp-001;Repetida;ImpFrenos;1.00;1;
+                imp-exist;Ya existe;ImpFrenos;1.00;1;
+                """;
+
+        ResultadoImportacion r = importacionProductosService.importarCsv(csv(contenido));
+
+        assertEquals(6, r.getFilasLeidas());
+        assertEquals(2, r.getImportadas());
+        assertEquals(4, r.getConErrores());
+        assertEquals(4, r.getErrores().get(0).getLinea());
+        assertEquals("IMP-003", r.getErrores().get(0).getReferencia());
+
+        Producto p1 = productoRepository.findByReferenciaNormalizada("IMP-001").orElseThrow();
+        assertEquals(0, new BigDecimal("12.50").compareTo(p1.getPrecio()));
+        assertEquals(cat.getId(), p1.getCategoria().getId());
+
+        Producto p2 = productoRepository.findByReferenciaNormalizada("IMP-002").orElseThrow();
+        assertEquals("Disco; ventilado", p2.getNombre());
+        assertEquals(100, p2.getStock());
+        assertEquals("https://example.com/d.png", p2.getImagenUrl());
+    }
+
+    @Test
+    @DisplayName("importarCsv debe rechazar un fichero sin las columnas obligatorias")
+    void importarCsv_sinCabeceraObligatoria_lanzaExcepcion() {
+        assertThrows(DatosProductoInvalidosException.class,
+                () -> importacionProductosService.importarCsv(csv("referencia,nombre\nX,Y\n")));
+        assertThrows(DatosProductoInvalidosException.class,
+                () -> importacionProductosService.importarCsv(csv("")));
+    }
+}
@@ -0,0 +1,138 @@
+package es.unex.cum.mdai.motoresbits.service;
+
+import es.unex.cum.mdai.motoresbits.data.model.entity.Categoria;
+import es.unex.cum.mdai.motoresbits.data.model.entity.Pedido;
+import es.unex.cum.mdai.motoresbits.data.model.entity.Producto;
+import es.unex.cum.mdai.motoresbits.data.model.entity.Usuario;
+import es.unex.cum.mdai.motoresbits.data.model.enums.EstadoPedido;
+import es.unex.cum.mdai.motoresbits.data.repository.CategoriaRepository;
+import es.unex.cum.mdai.motoresbits.data.repository.PedidoRepository;
+import es.unex.cum.mdai.motoresbits.data.repository.ProductoRepository;
+import es.unex.cum.mdai.motoresbits.data.repository.UsuarioRepository;
+import es.unex.cum.mdai.motoresbits.service.cache.CatalogoCache;
+import es.unex.cum.mdai.motoresbits.service.dto.MetricasPanel;
+import es.unex.cum.mdai.motoresbits.util.PdfGenerator;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Pruebas de integración para MetricasAdminService: recuentos y agregados del panel de administración.
+@SpringBootTest
+@ActiveProfiles("test")
+@Transactional
+class MetricasAdminServiceIT {
+
+    @Autowired
+    private MetricasAdminService metricasAdminService;
+
+    @Autowired
+    private UsuarioRepository usuarioRepository;
+
+    @Autowired
+    private CategoriaRepository categoriaRepository;
+
+    @Autowired
+    private ProductoRepository productoRepository;
+
+    @Autowired
+    private PedidoRepository pedidoRepository;
+
+    @Autowired
+    private PdfGenerator pdfGenerator;
+
+    @Autowired
+    private CatalogoService catalogoService;
+
+    private Pedido crearPedido(Usuario u, Producto p, EstadoPedido estado, String total, LocalDate fecha) {
+        Pedido pedido = new Pedido();
+        pedido.setUsuario(u);
+        pedido.setEstado(estado);
+        pedido.setFechaPedido(fecha);
+        pedido.setTotal(new BigDecimal(total));
+        pedido.addLinea(p, 1, new BigDecimal(total));
+        return pedidoRepository.save(pedido);
+    }
+
+    @Test
+    @DisplayName("obtenerMetricas debe reflejar categorías, productos, pedidos por estado, ingresos de hoy y stock bajo")
+    void obtenerMetricas_reflejaLosCambios() {
+        MetricasPanel antes = metricasAdminService.obtenerMetricas();
+
+        Usuario u = new Usuario();
+        u.setNombre("Cliente métricas");
+        u.setEmail("metricas_" + UUID.randomUUID() + "@example.com");
+        u.setContrasena("pwd");
+        usuarioRepository.save(u);
+
+        Categoria c = new Categoria();
+        c.setNombre("Cat-metricas");
+        c.setDescripcion("desc");
+        categoriaRepository.save(c);
+
+        Producto p = new Producto();
+        p.setCategoria(c);
+        p.setNombre("Producto métricas");
+        p.setReferencia("REF-MET-PANEL");
+        p.setPrecio(new BigDecimal("10.00"));
+        p.setStock(antes.getUmbralStockBajo());
+        productoRepository.save(p);
+
+        LocalDate hoy = LocalDate.now();
+        crearPedido(u, p, EstadoPedido.PAGADO, "25.00", hoy);
+        crearPedido(u, p, EstadoPedido.ENTREGADO, "5.50", hoy);
+        crearPedido(u, p, EstadoPedido.CANCELADO, "100.00", hoy);
+        crearPedido(u, p, EstadoPedido.PAGADO, "40.00", hoy.minusDays(1));
+        pedidoRepository.flush();
+
+        MetricasPanel despues = metricasAdminService.obtenerMetricas();
+
+        assertEquals(antes.getNumCategorias() + 1, despues.getNumCategorias());
+        assertEquals(antes.getNumProductos() + 1, despues.getNumProductos());
+        assertEquals(antes.getNumPedidos() + 4, despues.getNumPedidos());
+        assertEquals(antes.getPedidosPorEstado().get(EstadoPedido.PAGADO) + 2,
+                despues.getPedidosPorEstado().get(EstadoPedido.PAGADO));
+        assertEquals(antes.getPedidosPorEstado().get(EstadoPedido.CANCELADO) + 1,
+                despues.getPedidosPorEstado().get(EstadoPedido.CANCELADO));
+        assertEquals(EstadoPedido.values().length, despues.getPedidosPorEstado().size());
+
+        // Solo cuentan los pedidos cobrados con fecha de hoy
+        assertEquals(0, antes.getIngresosHoy().add(new BigDecimal("30.50")).compareTo(despues.getIngresosHoy()));
+        assertEquals(antes.getProductosStockBajo() + 1, despues.getProductosStockBajo());
+    }
+
+    @Test
+    @DisplayName("obtenerMetricas debe incluir las estadísticas de generación de facturas PDF")
+    void obtenerMetricas_incluyeLasFacturasPdf() {
+        PdfGenerator.Estadisticas antes = metricasAdminService.obtenerMetricas().getFacturasPdf();
+
+        byte[] pdf = pdfGenerator.generatePdfFromHtml("<html><body><p>Factura</p></body></html>");
+
+        PdfGenerator.Estadisticas despues = metricasAdminService.obtenerMetricas().getFacturasPdf();
+        assertEquals(antes.generados() + 1, despues.generados());
+        assertEquals(antes.bytes() + pdf.length, despues.bytes());
+        assertTrue(despues.maximoMs() > 0);
+    }
+
+    @Test
+    @DisplayName("obtenerMetricas debe incluir las estadísticas de las cachés del catálogo")
+    void obtenerMetricas_incluyeLasCachesDelCatalogo() {
+        long antes = metricasAdminService.obtenerMetricas().getCachesCatalogo().get(CatalogoCache.PRODUCTOS).requestCount();
+
+        catalogoService.listarProductos();
+        catalogoService.listarProductos();
+
+        MetricasPanel despues = metricasAdminService.obtenerMetricas();
+        assertEquals(java.util.List.of(CatalogoCache.CATEGORIAS, CatalogoCache.PRODUCTOS, CatalogoCache.PRODUCTOS_POR_CATEGORIA,
+                CatalogoCache.PAGINAS, CatalogoCache.DETALLES), java.util.List.copyOf(despues.getCachesCatalogo().keySet()));
+        assertEquals(antes + 2, despues.getCachesCatalogo().get(CatalogoCache.PRODUCTOS).requestCount());
+    }
+}
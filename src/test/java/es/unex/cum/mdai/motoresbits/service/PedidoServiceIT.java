@@ -1,9 +1,15 @@
 package es.unex.cum.mdai.motoresbits.service;
 
 import es.unex.cum.mdai.motoresbits.data.model.entity.*;
+import es.unex.cum.mdai.motoresbits.data.model.enums.EstadoEventoPedido;
 import es.unex.cum.mdai.motoresbits.data.model.enums.EstadoPedido;
 import es.unex.cum.mdai.motoresbits.data.model.enums.RolUsuario;
 import es.unex.cum.mdai.motoresbits.data.repository.*;
+import es.unex.cum.mdai.motoresbits.service.dto.FiltroPedidos;
+import es.unex.cum.mdai.motoresbits.service.dto.PaginaPedidos;
+import es.unex.cum.mdai.motoresbits.service.dto.PaginaResumenPedidos;
+import es.unex.cum.mdai.motoresbits.service.dto.ResultadoCambioEstado;
+import es.unex.cum.mdai.motoresbits.service.dto.ResumenPedido;
 import es.unex.cum.mdai.motoresbits.service.exception.*;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -50,6 +56,9 @@ class PedidoServiceIT {
     @Autowired
     private CategoriaRepository categoriaRepository;
 
+    @Autowired
+    private EventoPedidoRepository eventoPedidoRepository;
+
     private String emailUnico(String prefijo) {
         return prefijo + "_" + UUID.randomUUID() + "@example.com";
     }
@@ -273,6 +282,33 @@ class PedidoServiceIT {
         assertEquals(EstadoPedido.ENTREGADO, pedido.getEstado());
     }
 
+    @Test
+    @DisplayName("Cada cambio de estado debe dejar su evento PENDIENTE en la bandeja de salida, en orden")
+    void cambiarEstado_registraEventosEnBandejaDeSalida() {
+        Usuario u = crearUsuarioCliente(emailUnico("estado_eventos"));
+        u.setSaldo(new BigDecimal("100.00"));
+        usuarioRepository.saveAndFlush(u);
+        Producto p = crearProducto("REF-EVT-01", new BigDecimal("10.00"));
+        Pedido comprado = pedidoService.checkout(u.getId(), java.util.Map.of(p.getId(), 1));
+        Pedido pedido = pedidoService.crearPedido(u.getId());
+        pedidoService.cambiarEstado(pedido.getId(), EstadoPedido.PENDIENTE);
+        pedidoService.cambiarEstado(pedido.getId(), EstadoPedido.CANCELADO);
+
+        java.util.List<EventoPedido> checkout = eventoPedidoRepository.findByIdPedidoOrderByIdAsc(comprado.getId());
+        assertEquals(1, checkout.size());
+        assertNull(checkout.get(0).getEstadoAnterior());
+        assertEquals(EstadoPedido.PAGADO, checkout.get(0).getEstadoNuevo());
+
+        java.util.List<EventoPedido> eventos = eventoPedidoRepository.findByIdPedidoOrderByIdAsc(pedido.getId());
+        assertEquals(2, eventos.size());
+        assertEquals(EstadoPedido.CREADO, eventos.get(0).getEstadoAnterior());
+        assertEquals(EstadoPedido.PENDIENTE, eventos.get(0).getEstadoNuevo());
+        assertEquals(EstadoPedido.PENDIENTE, eventos.get(1).getEstadoAnterior());
+        assertEquals(EstadoPedido.CANCELADO, eventos.get(1).getEstadoNuevo());
+        assertTrue(eventos.stream().allMatch(e -> e.getEstado() == EstadoEventoPedido.PENDIENTE
+                && u.getId().equals(e.getIdUsuario())));
+    }
+
     @Test
     @DisplayName("cambiarEstado debe rechazar transiciones inválidas (ej. CREADO->ENVIADO, ENVIADO->CANCELADO)")
     void cambiarEstado_transicionesInvalidas() {
@@ -393,6 +429,290 @@ class PedidoServiceIT {
                 () -> pedidoService.confirmarPedido(pedidoId));
     }
 
+    @Test
+    @DisplayName("checkout debe crear el pedido PAGADO con sus líneas, descontar stock y cobrar el saldo")
+    void checkout_creaPedidoPagado_descuentaStockYSaldo() {
+        Usuario u = crearUsuarioCliente(emailUnico("checkout_user"));
+        u.setSaldo(new BigDecimal("100.00"));
+        usuarioRepository.saveAndFlush(u);
+
+        Producto p1 = crearProducto("REF-CHK-1", new BigDecimal("10.00"));
+        Producto p2 = crearProducto("REF-CHK-2", new BigDecimal("2.50"));
+
+        Pedido pedido = pedidoService.checkout(u.getId(), java.util.Map.of(p2.getId(), 4, p1.getId(), 3));
+
+        assertEquals(EstadoPedido.PAGADO, pedido.getEstado());
+        assertEquals(0, new BigDecimal("40.00").compareTo(pedido.getTotal()));
+        assertEquals(0, new BigDecimal("60.00").compareTo(pedido.getUsuario().getSaldo()));
+
+        Pedido guardado = pedidoService.obtenerPedido(pedido.getId());
+        assertEquals(2, guardado.getDetalles().size());
+        assertEquals(97, productoRepository.findById(p1.getId()).orElseThrow().getStock());
+        assertEquals(96, productoRepository.findById(p2.getId()).orElseThrow().getStock());
+        assertEquals(0, new BigDecimal("60.00").compareTo(usuarioRepository.findById(u.getId()).orElseThrow().getSaldo()));
+    }
+
+    @Test
+    @DisplayName("checkout debe lanzar StockInsuficienteException si alguna línea supera el stock")
+    void checkout_stockInsuficiente_lanzaExcepcion() {
+        Usuario u = crearUsuarioCliente(emailUnico("checkout_stock"));
+        u.setSaldo(new BigDecimal("1000.00"));
+        usuarioRepository.saveAndFlush(u);
+
+        Producto p = crearProducto("REF-CHK-STOCK", new BigDecimal("1.00"));
+
+        assertThrows(StockInsuficienteException.class,
+                () -> pedidoService.checkout(u.getId(), java.util.Map.of(p.getId(), 101)));
+        assertThrows(IllegalArgumentException.class,
+                () -> pedidoService.checkout(u.getId(), java.util.Map.of()));
+    }
+
+    @Test
+    @DisplayName("checkout debe informar de todas las líneas sin stock y no descontar ninguna")
+    void checkout_variasLineasSinStock_informaDeCadaUna() {
+        Usuario u = crearUsuarioCliente(emailUnico("checkout_lineas"));
+        u.setSaldo(new BigDecimal("10000.00"));
+        usuarioRepository.saveAndFlush(u);
+
+        Producto conStock = crearProducto("REF-CHK-L1", new BigDecimal("1.00"));
+        Producto corto1 = crearProducto("REF-CHK-L2", new BigDecimal("1.00"));
+        Producto corto2 = crearProducto("REF-CHK-L3", new BigDecimal("1.00"));
+        corto1.setStock(1);
+        corto2.setStock(2);
+        productoRepository.saveAndFlush(corto1);
+        productoRepository.saveAndFlush(corto2);
+
+        // Sin pasar por la comprobación previa en memoria: directamente contra el lote del repositorio
+        var sinStock = productoRepository.descontarStockEnLote(java.util.Map.of(
+                conStock.getId(), 5, corto1.getId(), 3, corto2.getId(), 4));
+        assertEquals(java.util.Map.of(corto1.getId(), 1, corto2.getId(), 2), sinStock);
+        assertEquals(100, productoRepository.findById(conStock.getId()).orElseThrow().getStock());
+
+        StockInsuficienteException ex = assertThrows(StockInsuficienteException.class,
+                () -> pedidoService.checkout(u.getId(), java.util.Map.of(conStock.getId(), 5, corto1.getId(), 3)));
+        assertEquals(1, ex.getLineas().size());
+        assertEquals(corto1.getId(), ex.getLineas().get(0).idProducto());
+
+        // Con stock suficiente se aplican todas y sube la versión
+        Integer versionAntes = productoRepository.findById(conStock.getId()).orElseThrow().getVersion();
+        assertTrue(productoRepository.descontarStockEnLote(java.util.Map.of(conStock.getId(), 5, corto1.getId(), 1)).isEmpty());
+        Producto tras = productoRepository.findById(conStock.getId()).orElseThrow();
+        assertEquals(95, tras.getStock());
+        assertEquals(versionAntes + 1, tras.getVersion());
+        assertEquals(0, productoRepository.findById(corto1.getId()).orElseThrow().getStock());
+    }
+
+    @Test
+    @DisplayName("checkout sin saldo suficiente no debe dejar pedido ni stock descontado")
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    void checkout_saldoInsuficiente_noDejaNadaAMedias() {
+        Usuario u = crearUsuarioCliente(emailUnico("checkout_saldo"));
+        u.setSaldo(new BigDecimal("5.00"));
+        usuarioRepository.saveAndFlush(u);
+
+        Producto p = crearProducto("REF-CHK-SALDO", new BigDecimal("10.00"));
+
+        assertThrows(SaldoInsuficienteException.class,
+                () -> pedidoService.checkout(u.getId(), java.util.Map.of(p.getId(), 1)));
+
+        assertEquals(100, productoRepository.findById(p.getId()).orElseThrow().getStock());
+        assertTrue(pedidoRepository.findByUsuarioId(u.getId()).isEmpty());
+        assertEquals(0, new BigDecimal("5.00").compareTo(usuarioRepository.findById(u.getId()).orElseThrow().getSaldo()));
+    }
+
+    @Test
+    @DisplayName("checkout debe respetar las reservas de otros carritos y liberar las propias")
+    void checkout_respetaReservasDeOtrosCarritos() {
+        Usuario u = crearUsuarioCliente(emailUnico("checkout_reservas"));
+        u.setSaldo(new BigDecimal("1000.00"));
+        usuarioRepository.saveAndFlush(u);
+
+        Producto p = crearProducto("REF-CHK-RES", new BigDecimal("1.00"));
+        p.setStock(5);
+        productoRepository.saveAndFlush(p);
+
+        String otro = "carrito-" + UUID.randomUUID();
+        String propio = "carrito-" + UUID.randomUUID();
+        assertEquals(4, pedidoService.reservarStock(otro, p.getId(), 4));
+        assertEquals(1, pedidoService.reservarStock(propio, p.getId(), 3));
+
+        // Sin reserva no se puede comprar lo que retiene otro carrito
+        assertThrows(StockInsuficienteException.class,
+                () -> pedidoService.checkout(u.getId(), java.util.Map.of(p.getId(), 2), propio));
+
+        Pedido pedido = pedidoService.checkout(u.getId(), java.util.Map.of(p.getId(), 1), propio);
+        assertEquals(EstadoPedido.PAGADO, pedido.getEstado());
+        assertEquals(4, productoRepository.findById(p.getId()).orElseThrow().getStock());
+
+        pedidoService.liberarReservas(otro);
+        pedidoService.liberarReservas(propio);
+    }
+
+    private Pedido guardarPedido(Usuario u, EstadoPedido estado, String total, LocalDate fecha, Producto producto) {
+        Pedido pedido = new Pedido();
+        pedido.setUsuario(u);
+        pedido.setEstado(estado);
+        pedido.setFechaPedido(fecha);
+        pedido.setTotal(new BigDecimal(total));
+        pedido.addLinea(producto, 1, new BigDecimal(total));
+        return pedidoRepository.save(pedido);
+    }
+
+    @Test
+    @DisplayName("listarPedidosPagina debe paginar por clave (más recientes primero) y aplicar los filtros")
+    void listarPedidosPagina_keysetYFiltros() {
+        String email = emailUnico("pagina_admin");
+        Usuario u = crearUsuarioCliente(email);
+        Producto p = crearProducto("REF-PAG-ADM", new BigDecimal("10.00"));
+        LocalDate hoy = LocalDate.now();
+        Pedido viejo = guardarPedido(u, EstadoPedido.PAGADO, "10.00", hoy.minusDays(10), p);
+        Pedido medio = guardarPedido(u, EstadoPedido.PAGADO, "50.00", hoy.minusDays(5), p);
+        Pedido nuevo = guardarPedido(u, EstadoPedido.ENVIADO, "80.00", hoy, p);
+        pedidoRepository.flush();
+
+        // Filtro por email (sin distinguir mayúsculas) en páginas de 2
+        FiltroPedidos porEmail = new FiltroPedidos(null, null, null, " " + email.toUpperCase() + " ", null);
+        PaginaPedidos primera = pedidoService.listarPedidosPagina(porEmail, null, 2);
+        assertEquals(java.util.List.of(nuevo.getId(), medio.getId()),
+                primera.getPedidos().stream().map(Pedido::getId).toList());
+        assertEquals(medio.getId(), primera.getSiguienteCursor());
+        assertEquals(1, primera.getPedidos().get(0).getDetalles().size());
+
+        PaginaPedidos segunda = pedidoService.listarPedidosPagina(porEmail, primera.getSiguienteCursor(), 2);
+        assertEquals(java.util.List.of(viejo.getId()), segunda.getPedidos().stream().map(Pedido::getId).toList());
+        assertFalse(segunda.isHayMas());
+
+        // Estado + total mínimo + rango de fechas
+        PaginaPedidos pagados = pedidoService.listarPedidosPagina(
+                new FiltroPedidos(EstadoPedido.PAGADO, hoy.minusDays(7), hoy, email, new BigDecimal("20")), null, null);
+        assertEquals(java.util.List.of(medio.getId()), pagados.getPedidos().stream().map(Pedido::getId).toList());
+
+        // Email sin usuario: página vacía
+        PaginaPedidos vacia = pedidoService.listarPedidosPagina(
+                new FiltroPedidos(null, null, null, emailUnico("nadie"), null), null, null);
+        assertTrue(vacia.getPedidos().isEmpty());
+        assertNull(vacia.getSiguienteCursor());
+    }
+
+    @Test
+    @DisplayName("listarPedidosPagina con rango de fechas debe paginar por fecha e id sin repetir ni saltarse pedidos")
+    void listarPedidosPagina_porFechas_cursorFechaEId() {
+        Usuario u = crearUsuarioCliente(emailUnico("pagina_fechas"));
+        Producto p = crearProducto("REF-PAG-FEC", new BigDecimal("10.00"));
+        // Fechas lejanas para no mezclarse con otras pruebas, y sin seguir el orden de los ids
+        LocalDate dia = LocalDate.of(2002, 6, 10);
+        Pedido a = guardarPedido(u, EstadoPedido.PAGADO, "10.00", dia.plusDays(2), p);
+        Pedido b = guardarPedido(u, EstadoPedido.PAGADO, "10.00", dia, p);
+        Pedido c = guardarPedido(u, EstadoPedido.ENVIADO, "10.00", dia.plusDays(2), p);
+        Pedido d = guardarPedido(u, EstadoPedido.PAGADO, "10.00", dia.plusDays(1), p);
+        guardarPedido(u, EstadoPedido.PAGADO, "10.00", dia.plusDays(3), p);
+        pedidoRepository.flush();
+
+        FiltroPedidos rango = new FiltroPedidos(null, dia, dia.plusDays(2), null, null);
+        java.util.List<Long> vistos = new java.util.ArrayList<>();
+        Long cursor = null;
+        do {
+            PaginaPedidos pagina = pedidoService.listarPedidosPagina(rango, cursor, 1);
+            pagina.getPedidos().forEach(pedido -> vistos.add(pedido.getId()));
+            cursor = pagina.getSiguienteCursor();
+        } while (cursor != null);
+        assertEquals(java.util.List.of(c.getId(), a.getId(), d.getId(), b.getId()), vistos);
+
+        // Con más filtros el orden es el mismo
+        PaginaPedidos pagados = pedidoService.listarPedidosPagina(
+                new FiltroPedidos(EstadoPedido.PAGADO, dia, dia.plusDays(2), null, null), a.getId(), null);
+        assertEquals(java.util.List.of(d.getId(), b.getId()), pagados.getPedidos().stream().map(Pedido::getId).toList());
+    }
+
+    @Test
+    @DisplayName("cambiarEstadoEnLote debe aplicar las transiciones válidas e informar de cada pedido que no cambia")
+    void cambiarEstadoEnLote_resultadoPorPedido() {
+        Usuario u = crearUsuarioCliente(emailUnico("lote_envio"));
+        Producto p = crearProducto("REF-LOTE-ENV", new BigDecimal("10.00"));
+        LocalDate hoy = LocalDate.now();
+        Pedido pagado = guardarPedido(u, EstadoPedido.PAGADO, "10.00", hoy, p);
+        Pedido enviado = guardarPedido(u, EstadoPedido.ENVIADO, "10.00", hoy, p);
+        Pedido entregado = guardarPedido(u, EstadoPedido.ENTREGADO, "10.00", hoy, p);
+        Long inexistente = entregado.getId() + 1000;
+        pedidoRepository.flush();
+
+        ResultadoCambioEstado resultado = pedidoService.cambiarEstadoEnLote(
+                java.util.List.of(entregado.getId(), pagado.getId(), inexistente, enviado.getId()), EstadoPedido.ENVIADO);
+
+        assertEquals(2, resultado.getAplicados());
+        assertEquals(2, resultado.getFallidos());
+        assertEquals(java.util.List.of(pagado.getId(), enviado.getId(), entregado.getId(), inexistente),
+                resultado.getResultados().stream().map(ResultadoCambioEstado.ResultadoPedido::getIdPedido).toList());
+        assertFalse(resultado.getResultados().get(2).isAplicado());
+        assertNull(resultado.getResultados().get(3).getEstadoAnterior());
+
+        assertEquals(EstadoPedido.ENVIADO, pedidoRepository.findById(pagado.getId()).orElseThrow().getEstado());
+        assertEquals(EstadoPedido.ENTREGADO, pedidoRepository.findById(entregado.getId()).orElseThrow().getEstado());
+
+        // Solo el pedido que cambia de verdad genera evento
+        assertEquals(1, eventoPedidoRepository.findByIdPedidoOrderByIdAsc(pagado.getId()).size());
+        assertTrue(eventoPedidoRepository.findByIdPedidoOrderByIdAsc(enviado.getId()).isEmpty());
+    }
+
+    @Test
+    @DisplayName("cambiarEstadoEnLote a CANCELADO debe abonar los pagados y reponer el stock de todo el lote")
+    void cambiarEstadoEnLote_cancelacion_abonaYRepone() {
+        Usuario u = crearUsuarioCliente(emailUnico("lote_cancel"));
+        u.setSaldo(BigDecimal.ZERO);
+        usuarioRepository.saveAndFlush(u);
+        Producto p = crearProducto("REF-LOTE-CAN", new BigDecimal("10.00"));
+        LocalDate hoy = LocalDate.now();
+        Pedido pagado1 = guardarPedido(u, EstadoPedido.PAGADO, "10.00", hoy, p);
+        Pedido pagado2 = guardarPedido(u, EstadoPedido.PAGADO, "15.00", hoy, p);
+        Pedido pendiente = guardarPedido(u, EstadoPedido.PENDIENTE, "20.00", hoy, p);
+        Pedido creado = guardarPedido(u, EstadoPedido.CREADO, "30.00", hoy, p);
+        pedidoRepository.flush();
+
+        ResultadoCambioEstado resultado = pedidoService.cambiarEstadoEnLote(
+                Set.of(pagado1.getId(), pagado2.getId(), pendiente.getId(), creado.getId()), EstadoPedido.CANCELADO);
+
+        assertEquals(4, resultado.getAplicados());
+        // Solo se devuelve lo cobrado y solo se repone lo que se había descontado (PENDIENTE/PAGADO)
+        assertEquals(0, new BigDecimal("25.00").compareTo(usuarioRepository.findById(u.getId()).orElseThrow().getSaldo()));
+        assertEquals(103, productoRepository.findById(p.getId()).orElseThrow().getStock());
+        for (Pedido pedido : java.util.List.of(pagado1, pagado2, pendiente, creado)) {
+            assertEquals(EstadoPedido.CANCELADO, pedidoRepository.findById(pedido.getId()).orElseThrow().getEstado());
+        }
+    }
+
+    @Test
+    @DisplayName("listarResumenPedidos debe devolver el historial sin el carrito, con nº de líneas, y reflejar los cambios de estado")
+    void listarResumenPedidos_historialEInvalidacion() {
+        Usuario u = crearUsuarioCliente(emailUnico("historial"));
+        Producto p1 = crearProducto("REF-HIST-1", new BigDecimal("10.00"));
+        Producto p2 = crearProducto("REF-HIST-2", new BigDecimal("5.00"));
+        LocalDate hoy = LocalDate.now();
+        Pedido pagado = guardarPedido(u, EstadoPedido.PAGADO, "10.00", hoy.minusDays(1), p1);
+        pagado.addLinea(p2, 1, new BigDecimal("5.00"));
+        pedidoRepository.save(pagado);
+        Pedido enviado = guardarPedido(u, EstadoPedido.ENVIADO, "5.00", hoy, p2);
+        guardarPedido(u, EstadoPedido.CREADO, "10.00", hoy, p1);
+        pedidoRepository.flush();
+
+        PaginaResumenPedidos pagina = pedidoService.listarResumenPedidos(u.getId(), null, null);
+        assertEquals(java.util.List.of(enviado.getId(), pagado.getId()),
+                pagina.getPedidos().stream().map(ResumenPedido::getId).toList());
+        assertEquals(2, pagina.getPedidos().get(1).getNumLineas());
+        assertFalse(pagina.isHayMas());
+        assertEquals(2, pedidoService.contarPedidosUsuario(u.getId()));
+
+        // Páginas de 1: el cursor lleva al pedido anterior
+        PaginaResumenPedidos primera = pedidoService.listarResumenPedidos(u.getId(), null, 1);
+        assertEquals(enviado.getId(), primera.getSiguienteCursor());
+        assertEquals(pagado.getId(),
+                pedidoService.listarResumenPedidos(u.getId(), primera.getSiguienteCursor(), 1).getPedidos().get(0).getId());
+
+        // La primera página está cacheada; el cambio de estado la invalida
+        pedidoService.cambiarEstado(enviado.getId(), EstadoPedido.ENTREGADO);
+        assertEquals(EstadoPedido.ENTREGADO,
+                pedidoService.listarResumenPedidos(u.getId(), null, null).getPedidos().get(0).getEstado());
+    }
+
     private static Stream<Object[]> invalidTransitionsProvider() {
         return Stream.of(
                 new Object[]{EstadoPedido.CREADO, EstadoPedido.ENVIADO},
@@ -413,9 +733,14 @@ class PedidoServiceIT {
         var usuarioRepoMock = Mockito.mock(UsuarioRepository.class);
         var productoRepoMock = Mockito.mock(ProductoRepository.class);
         var detalleRepoMock = Mockito.mock(DetallePedidoRepository.class);
+        var catalogoCacheMock = Mockito.mock(es.unex.cum.mdai.motoresbits.service.cache.CatalogoCache.class);
+        var reservasMock = Mockito.mock(es.unex.cum.mdai.motoresbits.service.stock.ReservasStock.class);
+        var historialMock = Mockito.mock(es.unex.cum.mdai.motoresbits.service.cache.HistorialPedidosCache.class);
+        var eventoRepoMock = Mockito.mock(EventoPedidoRepository.class);
 
         var service = new es.unex.cum.mdai.motoresbits.service.impl.PedidoServiceImpl(
-                pedidoRepoMock, usuarioRepoMock, productoRepoMock, detalleRepoMock);
+                pedidoRepoMock, usuarioRepoMock, productoRepoMock, detalleRepoMock, catalogoCacheMock, reservasMock,
+                historialMock, eventoRepoMock);
 
         Pedido p = new Pedido();
         p.setId(999L);
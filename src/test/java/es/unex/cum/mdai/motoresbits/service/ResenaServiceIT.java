@@ -203,4 +203,58 @@ class ResenaServiceIT {
         assertTrue(avg.isEmpty(), "Si no hay reseñas, la media debe venir vacía");
     }
 
+    @Test
+    @DisplayName("crear/editar/eliminar reseñas debe mantener el resumen de valoraciones del producto")
+    void resumenValoraciones_seMantieneIncrementalmente() {
+        Usuario u1 = crearUsuario("agg1@example.com");
+        Usuario u2 = crearUsuario("agg2@example.com");
+        Categoria c = crearCategoria("CatAgg");
+        Producto p = crearProducto(c, "REF-AGG");
+
+        Resena r1 = resenaService.crearResena(u1.getId(), p.getId(), 5, "A");
+        resenaService.crearResena(u2.getId(), p.getId(), 2, "B");
+
+        Producto enBD = productoRepository.findById(p.getId()).orElseThrow();
+        assertEquals(2, enBD.getNumResenas());
+        assertEquals(7, enBD.getSumaPuntuaciones());
+
+        resenaService.editarResena(r1.getId(), 3, "A editada");
+        enBD = productoRepository.findById(p.getId()).orElseThrow();
+        assertEquals(2, enBD.getNumResenas());
+        assertEquals(5, enBD.getSumaPuntuaciones());
+        assertEquals(2.5, resenaService.mediaPuntuacionPorProducto(p.getId()).orElseThrow());
+
+        resenaService.eliminarResena(r1.getId());
+        enBD = productoRepository.findById(p.getId()).orElseThrow();
+        assertEquals(1, enBD.getNumResenas());
+        assertEquals(2, enBD.getSumaPuntuaciones());
+
+        resenaService.eliminarResenasDeProducto(p.getId());
+        enBD = productoRepository.findById(p.getId()).orElseThrow();
+        assertEquals(0, enBD.getNumResenas());
+        assertTrue(resenaService.mediaPuntuacionPorProducto(p.getId()).isEmpty());
+    }
+
+    @Test
+    @DisplayName("repararResumenValoraciones debe reconstruir los resúmenes descuadrados desde RESENAS")
+    void repararResumenValoraciones_reconstruyeDesdeResenas() {
+        Usuario u = crearUsuario("rep@example.com");
+        Categoria c = crearCategoria("CatRep");
+        Producto p = crearProducto(c, "REF-REP");
+
+        // Reseña insertada por fuera del servicio: el resumen del producto no se entera
+        Resena r = new Resena();
+        r.setUsuario(u);
+        r.setProducto(p);
+        r.setPuntuacion(4);
+        r.setComentario("Directa");
+        resenaRepository.saveAndFlush(r);
+
+        assertTrue(resenaService.repararResumenValoraciones() >= 1);
+
+        Producto enBD = productoRepository.findById(p.getId()).orElseThrow();
+        assertEquals(1, enBD.getNumResenas());
+        assertEquals(4, enBD.getSumaPuntuaciones());
+        assertEquals(0, resenaService.repararResumenValoraciones());
+    }
 }
@@ -14,6 +14,7 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
@@ -21,6 +22,7 @@ import java.time.LocalDate;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -203,4 +205,58 @@ class UsuarioServiceIT {
             ex.shutdownNow();
         }
     }
+
+    @Test
+    @DisplayName("ajustarSaldo debe devolver el saldo resultante y no dejarlo en negativo")
+    void ajustarSaldo_devuelveSaldoResultante() {
+        Usuario u = usuarioService.registrarCliente("Saldo", "saldo_ajuste@mail.com", "pwd");
+
+        assertEquals(0, new BigDecimal("50.00").compareTo(usuarioService.ajustarSaldo(u.getId(), new BigDecimal("50.00"))));
+        assertEquals(0, new BigDecimal("30.00").compareTo(usuarioService.ajustarSaldo(u.getId(), new BigDecimal("-20.00"))));
+
+        assertThrows(IllegalArgumentException.class,
+                () -> usuarioService.ajustarSaldo(u.getId(), new BigDecimal("-30.01")));
+        assertThrows(UsuarioNoEncontradoException.class,
+                () -> usuarioService.ajustarSaldo(999_999L, BigDecimal.TEN));
+        assertEquals(0, new BigDecimal("30.00").compareTo(usuarioRepository.findSaldoById(u.getId()).orElseThrow()));
+    }
+
+    @Test
+    @DisplayName("cargos y abonos concurrentes no deben perder actualizaciones")
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    void ajustarSaldo_concurrente_noPierdeActualizaciones() throws InterruptedException {
+        Usuario u = usuarioService.registrarCliente("Concurrente", "saldo_conc_" + System.nanoTime() + "@mail.com", "pwd");
+        usuarioService.ajustarSaldo(u.getId(), new BigDecimal("100.00"));
+
+        int hilos = 8;
+        int operaciones = 20;
+        ExecutorService ex = Executors.newFixedThreadPool(hilos);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            CountDownLatch done = new CountDownLatch(hilos);
+            for (int i = 0; i < hilos; i++) {
+                // La mitad de los hilos abona y la otra mitad carga: el saldo final debe volver a 100
+                BigDecimal delta = i % 2 == 0 ? new BigDecimal("1.00") : new BigDecimal("-1.00");
+                ex.submit(() -> {
+                    try {
+                        start.await();
+                        for (int j = 0; j < operaciones; j++) {
+                            usuarioService.ajustarSaldo(u.getId(), delta);
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    } finally {
+                        done.countDown();
+                    }
+                });
+            }
+            start.countDown();
+            assertTrue(done.await(30, TimeUnit.SECONDS));
+        } finally {
+            ex.shutdownNow();
+        }
+
+        assertEquals(0, new BigDecimal("100.00").compareTo(usuarioRepository.findSaldoById(u.getId()).orElseThrow()));
+        usuarioService.eliminarUsuario(u.getId());
+    }
 }
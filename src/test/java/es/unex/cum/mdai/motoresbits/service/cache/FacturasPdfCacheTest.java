@@ -0,0 +1,108 @@
+package es.unex.cum.mdai.motoresbits.service.cache;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Pruebas unitarias de la caché en disco de facturas (sin contexto Spring).
+class FacturasPdfCacheTest {
+
+    @TempDir
+    Path directorio;
+
+    private FacturasPdfCache cache;
+    private final AtomicInteger generadas = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() {
+        cache = nuevaCache(DataSize.ofBytes(250));
+    }
+
+    private FacturasPdfCache nuevaCache(DataSize maximo) {
+        FacturasPdfCache c = new FacturasPdfCache();
+        ReflectionTestUtils.setField(c, "directorio", directorio.toString());
+        ReflectionTestUtils.setField(c, "tamanoMaximo", maximo);
+        c.inicializar();
+        return c;
+    }
+
+    private FacturasPdfCache.GeneradorPdf pdf(int tamano) {
+        return salida -> {
+            generadas.incrementAndGet();
+            salida.write(new byte[tamano]);
+        };
+    }
+
+    @Test
+    @DisplayName("obtener debe generar una sola vez por huella y sustituir la versión anterior del pedido")
+    void obtener_generaUnaVezYSustituyeVersiones() throws IOException {
+        Path v1 = cache.obtener(1L, "aaaa", pdf(100));
+        assertEquals(v1, cache.obtener(1L, "aaaa", pdf(100)));
+        assertEquals(1, generadas.get());
+        assertEquals(100, Files.size(v1));
+
+        // El pedido ha cambiado: nueva huella, nuevo fichero y el anterior desaparece
+        Path v2 = cache.obtener(1L, "bbbb", pdf(120));
+        assertEquals(2, generadas.get());
+        assertNotEquals(v1, v2);
+        assertFalse(Files.exists(v1));
+        assertEquals(1, cache.getNumFicheros());
+        assertEquals(120, cache.getTamanoTotal());
+    }
+
+    @Test
+    @DisplayName("obtener debe expulsar las facturas menos usadas al superar el tamaño máximo")
+    void obtener_expulsaLaMenosUsada() {
+        Path f1 = cache.obtener(1L, "h1", pdf(100));
+        Path f2 = cache.obtener(2L, "h2", pdf(100));
+        // Usar la 1 la convierte en la más reciente: al entrar la 3 sale la 2
+        cache.obtener(1L, "h1", pdf(100));
+        Path f3 = cache.obtener(3L, "h3", pdf(100));
+
+        assertTrue(Files.exists(f1));
+        assertFalse(Files.exists(f2));
+        assertTrue(Files.exists(f3));
+        assertEquals(200, cache.getTamanoTotal());
+        assertEquals(3, generadas.get());
+    }
+
+    @Test
+    @DisplayName("obtener no debe dejar nada en disco si la generación falla a medias")
+    void obtener_falloAlGenerar_noDejaFichero() throws IOException {
+        assertThrows(IllegalStateException.class, () -> cache.obtener(1L, "h1", salida -> {
+            salida.write(new byte[10]);
+            throw new IllegalStateException("render roto");
+        }));
+
+        assertEquals(0, cache.getNumFicheros());
+        try (var ficheros = Files.list(directorio)) {
+            assertEquals(0, ficheros.count());
+        }
+    }
+
+    @Test
+    @DisplayName("inicializar debe reconstruir el índice desde disco y limpiar escrituras a medias")
+    void inicializar_reconstruyeIndice() throws IOException {
+        cache.obtener(1L, "h1", pdf(100));
+        cache.obtener(2L, "h2", pdf(50));
+        Files.write(directorio.resolve("tmp-123.pdf"), new byte[10]);
+
+        FacturasPdfCache reiniciada = nuevaCache(DataSize.ofBytes(250));
+
+        assertEquals(2, reiniciada.getNumFicheros());
+        assertEquals(150, reiniciada.getTamanoTotal());
+        assertFalse(Files.exists(directorio.resolve("tmp-123.pdf")));
+        reiniciada.obtener(2L, "h2", pdf(50));
+        assertEquals(2, generadas.get());
+    }
+}
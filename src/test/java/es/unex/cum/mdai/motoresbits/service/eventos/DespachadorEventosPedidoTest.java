@@ -0,0 +1,119 @@
+package es.unex.cum.mdai.motoresbits.service.eventos;
+
+import es.unex.cum.mdai.motoresbits.data.model.entity.EventoPedido;
+import es.unex.cum.mdai.motoresbits.data.model.enums.EstadoEventoPedido;
+import es.unex.cum.mdai.motoresbits.data.model.enums.EstadoPedido;
+import es.unex.cum.mdai.motoresbits.data.repository.EventoPedidoRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+// Pruebas unitarias del despachador de la bandeja de salida (repositorio simulado, sin contexto Spring).
+class DespachadorEventosPedidoTest {
+
+    private EventoPedidoRepository repositorio;
+    private Set<Long> entregados;
+    private DespachadorEventosPedido despachador;
+
+    @BeforeEach
+    void setUp() {
+        repositorio = Mockito.mock(EventoPedidoRepository.class);
+        entregados = ConcurrentHashMap.newKeySet();
+        // El pedido 2 siempre falla, el 4 se queda colgado y el 5 se interrumpe; el resto se entrega
+        ManejadorEventoPedido manejador = evento -> {
+            if (evento.getIdPedido() == 2L) throw new IllegalStateException("servicio caído");
+            if (evento.getIdPedido() == 4L) Thread.sleep(60_000);
+            if (evento.getIdPedido() == 5L) throw new InterruptedException();
+            entregados.add(evento.getId());
+        };
+        despachador = new DespachadorEventosPedido(repositorio, List.of(manejador));
+    }
+
+    @AfterEach
+    void tearDown() {
+        despachador.detener();
+    }
+
+    private EventoPedido evento(long id, long idPedido, int intentos) {
+        EventoPedido e = new EventoPedido(idPedido, 10L, EstadoPedido.PENDIENTE, EstadoPedido.PAGADO);
+        e.setId(id);
+        e.setIntentos(intentos);
+        return e;
+    }
+
+    @Test
+    @DisplayName("despachar debe marcar como procesados los entregados y aplazar los fallidos con espera creciente")
+    @SuppressWarnings("unchecked")
+    void despachar_marcaEntregadosYReprogramaFallidos() {
+        when(repositorio.findPendientes(any(), any())).thenReturn(List.of(evento(1, 1, 0), evento(2, 2, 1), evento(3, 3, 0)));
+        LocalDateTime antes = LocalDateTime.now();
+
+        assertEquals(2, despachador.despachar());
+        assertEquals(Set.of(1L, 3L), entregados);
+
+        ArgumentCaptor<Collection<Long>> ids = ArgumentCaptor.forClass(Collection.class);
+        verify(repositorio).marcarProcesados(ids.capture(), any());
+        assertEquals(Set.of(1L, 3L), Set.copyOf(ids.getValue()));
+
+        // Segundo intento: la espera base (10 s) se duplica
+        ArgumentCaptor<LocalDateTime> proximo = ArgumentCaptor.forClass(LocalDateTime.class);
+        verify(repositorio).marcarFallo(eq(2L), eq(EstadoEventoPedido.PENDIENTE), eq(2), proximo.capture(),
+                contains("servicio caído"));
+        assertFalse(proximo.getValue().isBefore(antes.plusSeconds(20)));
+    }
+
+    @Test
+    @DisplayName("despachar debe dejar FALLIDO el evento que agota los intentos")
+    void despachar_agotaIntentos_quedaFallido() {
+        when(repositorio.findPendientes(any(), any())).thenReturn(new ArrayList<>(List.of(evento(7, 2, 4))));
+
+        assertEquals(0, despachador.despachar());
+
+        verify(repositorio).marcarFallo(eq(7L), eq(EstadoEventoPedido.FALLIDO), eq(5), any(), anyString());
+        verify(repositorio, never()).marcarProcesados(any(), any());
+    }
+
+    @Test
+    @DisplayName("despachar sin eventos pendientes no debe tocar la tabla")
+    void despachar_sinPendientes() {
+        when(repositorio.findPendientes(any(), any())).thenReturn(List.of());
+
+        assertEquals(0, despachador.despachar());
+        verify(repositorio, only()).findPendientes(any(), any());
+    }
+
+    @Test
+    @DisplayName("despachar debe contar como intento fallido el evento cuyo manejador no termina a tiempo o se interrumpe")
+    @SuppressWarnings("unchecked")
+    void despachar_sinTerminarATiempo_cuentaComoFallo() {
+        ReflectionTestUtils.setField(despachador, "esperaMaxima", Duration.ofMillis(200));
+        when(repositorio.findPendientes(any(), any())).thenReturn(List.of(evento(1, 1, 0), evento(4, 4, 0), evento(5, 5, 4)));
+
+        long inicio = System.nanoTime();
+        assertEquals(1, despachador.despachar());
+        assertTrue(Duration.ofNanos(System.nanoTime() - inicio).toSeconds() < 10);
+
+        ArgumentCaptor<Collection<Long>> ids = ArgumentCaptor.forClass(Collection.class);
+        verify(repositorio).marcarProcesados(ids.capture(), any());
+        assertEquals(List.of(1L), List.copyOf(ids.getValue()));
+        verify(repositorio).marcarFallo(eq(4L), eq(EstadoEventoPedido.PENDIENTE), eq(1), any(), contains("TimeoutException"));
+        // Sin excepción propia, el interrumpido también gasta su intento (era el último: queda FALLIDO)
+        verify(repositorio).marcarFallo(eq(5L), eq(EstadoEventoPedido.FALLIDO), eq(5), any(), anyString());
+    }
+}
@@ -0,0 +1,80 @@
+package es.unex.cum.mdai.motoresbits.service.search;
+
+import es.unex.cum.mdai.motoresbits.data.model.entity.Categoria;
+import es.unex.cum.mdai.motoresbits.data.model.entity.Producto;
+import es.unex.cum.mdai.motoresbits.data.repository.ProductoRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Pruebas unitarias del índice invertido de productos (sin contexto Spring).
+class IndiceProductosTest {
+
+    private IndiceProductos indice;
+
+    @BeforeEach
+    void setUp() {
+        indice = new IndiceProductos(Mockito.mock(ProductoRepository.class));
+    }
+
+    private Producto producto(Long id, String nombre, String referencia, Long idCat, String nombreCat) {
+        Categoria c = new Categoria();
+        c.setId(idCat);
+        c.setNombre(nombreCat);
+        Producto p = new Producto();
+        p.setId(id);
+        p.setNombre(nombre);
+        p.setReferencia(referencia);
+        p.setCategoria(c);
+        return p;
+    }
+
+    private List<Long> ids(String consulta) {
+        return indice.buscar(consulta, 10).stream().map(IndiceProductos.Documento::id).toList();
+    }
+
+    @Test
+    @DisplayName("tokenizar debe pasar a minúsculas, quitar tildes y partir por separadores")
+    void tokenizar_normaliza() {
+        assertEquals(List.of("sensor", "de", "oxigeno", "sox", "050"),
+                IndiceProductos.tokenizar("Sensor de Oxígeno SOX-050"));
+        assertTrue(IndiceProductos.tokenizar("  ").isEmpty());
+    }
+
+    @Test
+    @DisplayName("buscar debe casar prefijos de nombre, referencia y categoría e intersectar términos")
+    void buscar_prefijos() {
+        indice.indexar(producto(1L, "Motor V8 5.0L", "MV8-001", 1L, "Motores"));
+        indice.indexar(producto(2L, "Sensor de Oxígeno", "SOX-050", 2L, "Electrónica"));
+        indice.indexar(producto(3L, "ECU Controlador", "ECU-100", 2L, "Electrónica"));
+
+        assertEquals(List.of(1L), ids("mot v8"));
+        assertEquals(List.of(2L), ids("oxig"));
+        assertEquals(List.of(1L), ids("mv8001"));
+        assertEquals(List.of(3L, 2L), ids("electronica"));
+        assertTrue(ids("motor ecu").isEmpty());
+    }
+
+    @Test
+    @DisplayName("el índice debe reflejar ediciones, bajas y cambios de nombre de categoría")
+    void mantenimientoIncremental() {
+        indice.indexar(producto(1L, "Filtro de Aceite", "FA-300", 4L, "Accesorios"));
+        indice.indexar(producto(1L, "Filtro de Aire", "FA-300", 4L, "Accesorios"));
+
+        assertTrue(ids("aceite").isEmpty());
+        assertEquals(List.of(1L), ids("aire"));
+
+        indice.renombrarCategoria(4L, "Recambios");
+        assertTrue(ids("accesorios").isEmpty());
+        assertEquals(List.of(1L), ids("recamb"));
+
+        indice.eliminar(1L);
+        assertTrue(ids("filtro").isEmpty());
+        assertEquals(0, indice.tamano());
+    }
+}
@@ -0,0 +1,93 @@
+package es.unex.cum.mdai.motoresbits.service.stock;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Pruebas unitarias del libro de reservas de stock (sin contexto Spring).
+class ReservasStockTest {
+
+    private ReservasStock reservas;
+
+    @BeforeEach
+    void setUp() {
+        reservas = new ReservasStock();
+    }
+
+    @Test
+    @DisplayName("reservar debe conceder solo lo que no tienen retenido otros carritos")
+    void reservar_respetaLoRetenidoPorOtros() {
+        assertEquals(3, reservas.reservar("a", 1L, 3, 5));
+        assertEquals(2, reservas.reservar("b", 1L, 4, 5));
+        assertEquals(5, reservas.retenidas(1L));
+
+        // Lo propio cuenta como disponible para su titular; lo ajeno no
+        assertEquals(3, reservas.disponiblePara("a", 1L, 5));
+        assertEquals(2, reservas.disponiblePara("b", 1L, 5));
+        assertEquals(0, reservas.disponiblePara(null, 1L, 5));
+
+        // Reducir y liberar devuelven unidades al stock libre
+        assertEquals(1, reservas.reservar("a", 1L, 1, 5));
+        assertEquals(4, reservas.disponiblePara("b", 1L, 5));
+        reservas.liberar("b", List.of(1L));
+        assertEquals(1, reservas.retenidas(1L));
+        reservas.liberarTodo("a");
+        assertEquals(0, reservas.retenidas(1L));
+    }
+
+    @Test
+    @DisplayName("purgarCaducadas debe liberar las reservas vencidas")
+    void purgarCaducadas_liberaVencidas() {
+        ReflectionTestUtils.setField(reservas, "ttl", Duration.ZERO);
+        reservas.reservar("a", 1L, 2, 10);
+        reservas.reservar("a", 2L, 1, 10);
+
+        assertEquals(2, reservas.purgarCaducadas());
+        assertEquals(0, reservas.retenidas(1L));
+        assertEquals(0, reservas.retenidas(2L));
+        assertEquals(10, reservas.disponiblePara(null, 1L, 10));
+    }
+
+    @Test
+    @DisplayName("Reservas concurrentes de muchos carritos no deben superar el stock")
+    void reservar_concurrente_noSuperaStock() throws InterruptedException {
+        int carritos = 50;
+        ExecutorService ex = Executors.newFixedThreadPool(8);
+        CountDownLatch inicio = new CountDownLatch(1);
+        CountDownLatch fin = new CountDownLatch(carritos);
+        AtomicInteger concedidas = new AtomicInteger();
+        try {
+            for (int i = 0; i < carritos; i++) {
+                String titular = "c" + i;
+                ex.submit(() -> {
+                    try {
+                        inicio.await();
+                        concedidas.addAndGet(reservas.reservar(titular, 7L, 1, 20));
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    } finally {
+                        fin.countDown();
+                    }
+                });
+            }
+            inicio.countDown();
+            assertTrue(fin.await(5, TimeUnit.SECONDS));
+        } finally {
+            ex.shutdownNow();
+        }
+
+        assertEquals(20, concedidas.get());
+        assertEquals(20, reservas.retenidas(7L));
+    }
+}
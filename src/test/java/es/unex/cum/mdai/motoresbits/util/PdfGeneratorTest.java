@@ -0,0 +1,44 @@
+package es.unex.cum.mdai.motoresbits.util;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Pruebas unitarias del generador de PDF (sin contexto Spring).
+class PdfGeneratorTest {
+
+    private static final String HTML = """
+            <html><body><h1>Factura</h1><p>Pedido 42 — 12,50 €</p></body></html>
+            """;
+
+    @Test
+    @DisplayName("generatePdfFromHtml debe admitir renders concurrentes con el mismo generador y contarlos")
+    void generatePdfFromHtml_concurrenteYConMetricas() throws Exception {
+        PdfGenerator generador = new PdfGenerator();
+
+        List<Future<byte[]>> pdfs = new ArrayList<>();
+        try (ExecutorService pool = Executors.newFixedThreadPool(4)) {
+            for (int i = 0; i < 8; i++) {
+                pdfs.add(pool.submit(() -> generador.generatePdfFromHtml(HTML)));
+            }
+        }
+        for (Future<byte[]> pdf : pdfs) {
+            assertEquals("%PDF", new String(pdf.get(), 0, 4, StandardCharsets.US_ASCII));
+        }
+
+        PdfGenerator.Estadisticas stats = generador.estadisticas();
+        assertEquals(8, stats.generados());
+        assertEquals(0, stats.errores());
+        assertTrue(stats.mediaMs() > 0);
+        assertTrue(stats.maximoMs() >= stats.mediaMs());
+        assertTrue(stats.bytes() > 0);
+    }
+}